@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
@@ -23,6 +24,9 @@ public class DocumentServiceClient {
     @Value("${services.document.url}")
     private String documentServiceUrl;
     
+    @Value("${services.document.streaming-upload:true}")
+    private boolean streamingUpload;
+    
     private final RestTemplate restTemplate;
     
     public DocumentServiceClient(RestTemplate restTemplate) {
@@ -37,12 +41,7 @@ public class DocumentServiceClient {
             headers.setContentType(MediaType.MULTIPART_FORM_DATA);
             
             MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            });
+            body.add("file", toResource(file));
             body.add("userId", userId);
             
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
@@ -54,7 +53,7 @@ public class DocumentServiceClient {
                 Map.class
             );
             
-            if (response.getStatusCode() == HttpStatus.OK) {
+            if (response.getStatusCode().is2xxSuccessful()) {
                 logger.info("Document uploaded successfully to document-service");
                 return response.getBody();
             } else {
@@ -70,6 +69,23 @@ public class DocumentServiceClient {
         }
     }
     
+    /**
+     * Wrap the uploaded file for the outbound multipart request. In streaming mode the
+     * multipart input stream is piped straight into the request body; otherwise the
+     * whole file is read onto the heap first.
+     */
+    private Resource toResource(MultipartFile file) throws IOException {
+        if (streamingUpload) {
+            return new MultipartFileResource(file);
+        }
+        return new ByteArrayResource(file.getBytes()) {
+            @Override
+            public String getFilename() {
+                return file.getOriginalFilename();
+            }
+        };
+    }
+    
     public Map<String, Object> getDocumentById(String documentId) {
         try {
             String url = documentServiceUrl + "/api/documents/" + documentId;
@@ -0,0 +1,46 @@
+package com.learningassistant.chat.client;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resource view over an uploaded multipart file that streams its content
+ * instead of loading it into memory. Size and filename come from the
+ * multipart metadata, so the outbound request reads the stream only once.
+ */
+class MultipartFileResource extends AbstractResource {
+
+    private final MultipartFile file;
+
+    MultipartFileResource(MultipartFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return file.getInputStream();
+    }
+
+    @Override
+    public String getFilename() {
+        return file.getOriginalFilename();
+    }
+
+    @Override
+    public long contentLength() {
+        return file.getSize();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Multipart file [" + file.getOriginalFilename() + "]";
+    }
+}
@@ -1,14 +1,20 @@
 package com.learningassistant.chat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
     
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${services.http.chunk-size:65536}") int chunkSize) {
+        // Request bodies without a known length are sent with chunked transfer
+        // encoding, so proxied uploads are never buffered whole in memory
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setChunkSize(chunkSize);
+        return new RestTemplate(requestFactory);
     }
 }
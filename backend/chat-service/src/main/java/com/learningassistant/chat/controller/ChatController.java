@@ -8,6 +8,7 @@ import com.learningassistant.chat.service.ChatService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -57,6 +58,10 @@ public class ChatController {
         } catch (IllegalArgumentException e) {
             logger.error("Invalid request: {}", e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Message conflicted with concurrent turns: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Session is busy with other messages, please retry");
         } catch (Exception e) {
             logger.error("Error processing message: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
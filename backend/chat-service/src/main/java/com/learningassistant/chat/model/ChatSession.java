@@ -1,6 +1,9 @@
 package com.learningassistant.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -14,9 +17,19 @@ public class ChatSession {
     private String userId;
     private List<String> documentIds;
     private String title;
+    private long messageCount;
+    private Message lastMessage;
+    // Messages of the last append, kept until they are known to be in their buckets
+    private List<Message> pendingMessages;
+    // Stored in chat_message_buckets; only filled in when a single session is read
+    @Transient
     private List<Message> messages;
+    private ConversationWindow contextWindow;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // Bumped by every append, so a turn only commits against the state it was built from
+    @Version
+    private Long version;
     
     // Constructors
     public ChatSession() {
@@ -84,12 +97,40 @@ public class ChatSession {
         this.messages = messages;
     }
     
-    public void addMessage(Message message) {
-        if (this.messages == null) {
-            this.messages = new ArrayList<>();
-        }
-        this.messages.add(message);
-        this.updatedAt = LocalDateTime.now();
+    public long getMessageCount() {
+        return messageCount;
+    }
+    
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+    
+    public Message getLastMessage() {
+        return lastMessage;
+    }
+    
+    public void setLastMessage(Message lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+    
+    // Write-ahead copy of an append, not part of the API
+    @JsonIgnore
+    public List<Message> getPendingMessages() {
+        return pendingMessages;
+    }
+    
+    public void setPendingMessages(List<Message> pendingMessages) {
+        this.pendingMessages = pendingMessages;
+    }
+    
+    // Server-side prompt cache, not part of the API
+    @JsonIgnore
+    public ConversationWindow getContextWindow() {
+        return contextWindow;
+    }
+    
+    public void setContextWindow(ConversationWindow contextWindow) {
+        this.contextWindow = contextWindow;
     }
     
     public LocalDateTime getCreatedAt() {
@@ -107,4 +148,12 @@ public class ChatSession {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.learningassistant.chat.model;
+
+import org.springframework.data.annotation.Transient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rendered tail of a conversation that fits the context token budget. Stored on the session
+ * so each turn only appends its new lines and drops the oldest ones, instead of rendering
+ * the whole history again.
+ */
+public class ConversationWindow {
+    
+    private List<String> lines;
+    private List<Integer> lineTokens;
+    private int tokens;
+    private int tokenBudget;
+    private long messageCount;
+    
+    // What changed since the window was read, so saving it can send only the new lines
+    @Transient
+    private int appendedLines;
+    @Transient
+    private boolean rebuilt;
+    
+    // Constructors
+    public ConversationWindow() {
+        this.lines = new ArrayList<>();
+        this.lineTokens = new ArrayList<>();
+    }
+    
+    public ConversationWindow(int tokenBudget) {
+        this();
+        this.tokenBudget = tokenBudget;
+    }
+    
+    // Getters and Setters
+    public List<String> getLines() {
+        return lines;
+    }
+    
+    public void setLines(List<String> lines) {
+        this.lines = lines;
+    }
+    
+    public List<Integer> getLineTokens() {
+        return lineTokens;
+    }
+    
+    public void setLineTokens(List<Integer> lineTokens) {
+        this.lineTokens = lineTokens;
+    }
+    
+    public int getTokens() {
+        return tokens;
+    }
+    
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+    
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+    
+    public void setTokenBudget(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+    
+    /**
+     * Number of session messages the window has seen, whether or not they still fit in it
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+    
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+    
+    public int getAppendedLines() {
+        return appendedLines;
+    }
+    
+    public void setAppendedLines(int appendedLines) {
+        this.appendedLines = appendedLines;
+    }
+    
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+    
+    public void setRebuilt(boolean rebuilt) {
+        this.rebuilt = rebuilt;
+    }
+}
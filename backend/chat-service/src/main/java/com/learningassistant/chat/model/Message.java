@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 public class Message {
     
     private String id;
+    private Long sequence;
     private String role;
     private String content;
     private LocalDateTime timestamp;
@@ -30,6 +31,17 @@ public class Message {
         this.id = id;
     }
     
+    /**
+     * Position of the message in its session, starting at 0
+     */
+    public Long getSequence() {
+        return sequence;
+    }
+    
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+    
     public String getRole() {
         return role;
     }
@@ -0,0 +1,89 @@
+package com.learningassistant.chat.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed-size run of a session's messages. Bucket n holds the messages with sequence
+ * numbers n * bucketSize up to (n + 1) * bucketSize - 1, so no document grows without bound
+ * and appends only touch the newest bucket. (sessionId, bucket) is unique; the index is
+ * created by MessageBucketMigration.
+ */
+@Document(collection = "chat_message_buckets")
+public class MessageBucket {
+    
+    @Id
+    private String id;
+    private String sessionId;
+    private long bucket;
+    private List<Message> messages;
+    private int count;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public MessageBucket() {
+        this.messages = new ArrayList<>();
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
+    public long getBucket() {
+        return bucket;
+    }
+    
+    public void setBucket(long bucket) {
+        this.bucket = bucket;
+    }
+    
+    public List<Message> getMessages() {
+        return messages;
+    }
+    
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public void setCount(int count) {
+        this.count = count;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,14 @@
+package com.learningassistant.chat.repository;
+
+import com.learningassistant.chat.model.MessageBucket;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MessageBucketRepository extends MongoRepository<MessageBucket, String> {
+    List<MessageBucket> findBySessionIdOrderByBucketAsc(String sessionId);
+    Optional<MessageBucket> findFirstBySessionIdAndBucketLessThanOrderByBucketDesc(String sessionId, long bucket);
+    void deleteBySessionId(String sessionId);
+}
@@ -0,0 +1,363 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.ChatSession;
+import com.learningassistant.chat.model.ConversationWindow;
+import com.learningassistant.chat.model.Message;
+import com.learningassistant.chat.model.MessageBucket;
+import com.learningassistant.chat.repository.MessageBucketRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Stores chat messages in {@link MessageBucket}s rather than inside the session document.
+ * Appending bumps the session's message count, summary fields and version in one update
+ * conditioned on the version the turn was built from, which also fixes the messages'
+ * sequence numbers and keeps a copy of them on the session, then $pushes the messages
+ * into their bucket and drops the copy. Until then readers may not see the messages;
+ * {@link #completePendingAppend} pushes a copy left behind by a failed push.
+ * Sessions written before buckets existed keep their messages embedded until
+ * {@link MessageBucketMigration} or the first access moves them out.
+ */
+@Component
+public class ChatMessageStore {
+    
+    static final String SESSIONS_COLLECTION = "chat_sessions";
+    
+    private static final long APPEND_BACKOFF_MS = 5;
+    
+    private final MongoTemplate mongoTemplate;
+    private final MessageBucketRepository bucketRepository;
+    private final int bucketSize;
+    
+    private volatile boolean legacyMessagesMigrated;
+    
+    public ChatMessageStore(MongoTemplate mongoTemplate,
+                            MessageBucketRepository bucketRepository,
+                            @Value("${chat-messages.bucket-size:100}") int bucketSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.bucketRepository = bucketRepository;
+        this.bucketSize = bucketSize;
+    }
+    
+    /**
+     * Append messages if the session is still at the version it was read at. Only the new
+     * messages, the summary fields and the lines added to the context window are sent.
+     * <p>
+     * The session update fixes the messages' sequence numbers through its version check and
+     * carries a copy of them as pendingMessages. If the bucket push after it fails, the next
+     * append or read finds them there and pushes them again; the push skips sequences a
+     * bucket already holds, so this neither loses messages nor stores them twice.
+     * @return false if another turn updated the session first, in which case nothing is written
+     */
+    public boolean tryAppend(ChatSession session, List<Message> messages) {
+        // This update replaces pendingMessages, so the previous append must be out first
+        completePendingAppend(session);
+        
+        long sequence = session.getMessageCount();
+        for (Message message : messages) {
+            message.setSequence(sequence++);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        Query current = Query.query(Criteria.where("_id").is(session.getId())
+                .and("version").is(session.getVersion()));
+        Update update = new Update()
+                .inc("messageCount", messages.size())
+                .inc("version", 1)
+                .set("lastMessage", messages.get(messages.size() - 1))
+                .set("pendingMessages", messages)
+                .set("updatedAt", now);
+        applyWindowChanges(update, session.getContextWindow());
+        
+        if (mongoTemplate.updateFirst(current, update, ChatSession.class).getMatchedCount() == 0) {
+            return false;
+        }
+        
+        pushToBuckets(session.getId(), messages, now);
+        clearPending(session.getId(), messages);
+        
+        session.setMessageCount(session.getMessageCount() + messages.size());
+        session.setVersion(session.getVersion() != null ? session.getVersion() + 1 : 1);
+        session.setLastMessage(messages.get(messages.size() - 1));
+        session.setUpdatedAt(now);
+        if (session.getContextWindow() != null) {
+            session.getContextWindow().setAppendedLines(0);
+            session.getContextWindow().setRebuilt(false);
+        }
+        return true;
+    }
+    
+    /**
+     * Append messages, making at most maxAttempts version-checked attempts in all. After a
+     * conflict the session is read again, refit fits the messages onto it (such as
+     * rebuilding its context window), and the next attempt follows a jittered back-off.
+     * @throws OptimisticLockingFailureException if another turn committed before every attempt
+     * @throws IllegalArgumentException if the session no longer exists
+     */
+    public void append(ChatSession session, List<Message> messages, int maxAttempts, Consumer<ChatSession> refit) {
+        ChatSession current = session;
+        for (int attempt = 1; !tryAppend(current, messages); attempt++) {
+            if (attempt >= maxAttempts) {
+                throw new OptimisticLockingFailureException(
+                    "Session " + session.getId() + " kept changing after " + attempt + " append attempts");
+            }
+            backOff(attempt);
+            current = mongoTemplate.findById(session.getId(), ChatSession.class);
+            if (current == null) {
+                throw new IllegalArgumentException("Session not found: " + session.getId());
+            }
+            completePendingAppend(current);
+            refit.accept(current);
+        }
+    }
+    
+    /**
+     * Write out the messages of an append that committed to the session but may not have
+     * reached its buckets, such as when the process died in between. Safe to repeat.
+     */
+    public void completePendingAppend(ChatSession session) {
+        List<Message> pending = session.getPendingMessages();
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        pushToBuckets(session.getId(), pending, session.getUpdatedAt() != null ? session.getUpdatedAt() : LocalDateTime.now());
+        clearPending(session.getId(), pending);
+        session.setPendingMessages(null);
+    }
+    
+    /**
+     * All messages of a session in sequence order
+     */
+    public List<Message> findAll(String sessionId) {
+        List<Message> messages = new ArrayList<>();
+        for (MessageBucket bucket : bucketRepository.findBySessionIdOrderByBucketAsc(sessionId)) {
+            messages.addAll(sortedBySequence(bucket));
+        }
+        return messages;
+    }
+    
+    /**
+     * Messages of a session from newest to oldest, reading one bucket at a time as the
+     * caller walks back through the history
+     */
+    public Iterator<Message> newestFirst(String sessionId) {
+        return new Iterator<>() {
+            private long nextBucket = Long.MAX_VALUE;
+            private Iterator<Message> current = Collections.emptyIterator();
+            
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && nextBucket > 0) {
+                    Optional<MessageBucket> bucket = bucketRepository
+                            .findFirstBySessionIdAndBucketLessThanOrderByBucketDesc(sessionId, nextBucket);
+                    if (bucket.isEmpty()) {
+                        nextBucket = 0;
+                        break;
+                    }
+                    nextBucket = bucket.get().getBucket();
+                    List<Message> messages = sortedBySequence(bucket.get());
+                    Collections.reverse(messages);
+                    current = messages.iterator();
+                }
+                return current.hasNext();
+            }
+            
+            @Override
+            public Message next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+    
+    /**
+     * Move messages still embedded in a session document into buckets. The array is removed
+     * and the message count raised in one atomic update, so of concurrent callers only one
+     * moves the messages, and appends made afterwards are numbered after them.
+     * @return whether this call moved any messages
+     */
+    public boolean migrateLegacyMessages(String sessionId) {
+        Query legacy = Query.query(Criteria.where("_id").is(sessionId).and("messages").exists(true));
+        legacy.fields().include("messages").include("messageCount").include("updatedAt");
+        org.bson.Document raw = mongoTemplate.findOne(legacy, org.bson.Document.class, SESSIONS_COLLECTION);
+        if (raw == null) {
+            return false;
+        }
+        
+        List<Message> messages = new ArrayList<>();
+        for (Object element : raw.getList("messages", Object.class, List.of())) {
+            if (element instanceof org.bson.Document document) {
+                messages.add(mongoTemplate.getConverter().read(Message.class, document));
+            }
+        }
+        
+        // Numbered after what the session held when read; the claim only applies if that
+        // still holds, so the numbers can travel with it as pendingMessages
+        Number messageCount = raw.get("messageCount", Number.class);
+        long sequence = messageCount != null ? messageCount.longValue() : 0;
+        for (Message message : messages) {
+            message.setSequence(sequence++);
+        }
+        
+        Update claim = new Update().unset("messages").inc("messageCount", messages.size()).inc("version", 1);
+        if (!messages.isEmpty()) {
+            claim.set("lastMessage", messages.get(messages.size() - 1)).set("pendingMessages", messages);
+        }
+        Query unclaimed = Query.query(Criteria.where("_id").is(sessionId).and("messages").exists(true)
+                .and("messageCount").is(messageCount));
+        if (mongoTemplate.updateFirst(unclaimed, claim, ChatSession.class).getMatchedCount() == 0
+                || messages.isEmpty()) {
+            return false;
+        }
+        
+        LocalDateTime updatedAt = raw.get("updatedAt") instanceof Date date
+                ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault())
+                : LocalDateTime.now();
+        pushToBuckets(sessionId, messages, updatedAt);
+        clearPending(sessionId, messages);
+        return true;
+    }
+    
+    /**
+     * Migrate a session on access until the startup migration has been through all of them
+     */
+    public void migrateLegacyMessagesIfPending(String sessionId) {
+        if (!legacyMessagesMigrated) {
+            migrateLegacyMessages(sessionId);
+        }
+    }
+    
+    boolean isLegacyMigrationPending() {
+        return !legacyMessagesMigrated;
+    }
+    
+    void markLegacyMessagesMigrated() {
+        legacyMessagesMigrated = true;
+    }
+    
+    /**
+     * Remove a deleted session's buckets. An append still pushing when the session went
+     * removes what it wrote itself, see {@link #clearPending}. Known gap: if the process
+     * dies between deleting the session and its buckets, those buckets stay behind.
+     */
+    public void deleteSession(String sessionId) {
+        bucketRepository.deleteBySessionId(sessionId);
+    }
+    
+    public void deleteAll() {
+        bucketRepository.deleteAll();
+    }
+    
+    private static void backOff(int attempt) {
+        long maxDelay = APPEND_BACKOFF_MS << Math.min(attempt, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay / 2, maxDelay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimisticLockingFailureException("Interrupted while retrying an append", e);
+        }
+    }
+    
+    private long bucketOf(long sequence) {
+        return sequence / bucketSize;
+    }
+    
+    /**
+     * Push messages into their buckets. A bucket that already holds any of the sequence
+     * numbers is left alone, since the messages of one append reach a bucket in one update.
+     */
+    private void pushToBuckets(String sessionId, List<Message> messages, LocalDateTime now) {
+        Map<Long, List<Message>> byBucket = new LinkedHashMap<>();
+        for (Message message : messages) {
+            byBucket.computeIfAbsent(bucketOf(message.getSequence()), bucket -> new ArrayList<>()).add(message);
+        }
+        for (Map.Entry<Long, List<Message>> entry : byBucket.entrySet()) {
+            List<Long> sequences = entry.getValue().stream().map(Message::getSequence).toList();
+            Query query = Query.query(Criteria.where("sessionId").is(sessionId).and("bucket").is(entry.getKey())
+                    .and("messages.sequence").nin(sequences));
+            Update update = new Update()
+                    .push("messages").each(entry.getValue().toArray())
+                    .inc("count", entry.getValue().size())
+                    .set("updatedAt", now)
+                    .setOnInsert("createdAt", now);
+            if (mongoTemplate.updateFirst(query, update, MessageBucket.class).getMatchedCount() > 0) {
+                continue;
+            }
+            try {
+                mongoTemplate.upsert(query, update, MessageBucket.class);
+            } catch (DuplicateKeyException e) {
+                // The bucket exists: a concurrent append created it first, or it already
+                // holds these messages and the update below matches nothing
+                mongoTemplate.updateFirst(query, update, MessageBucket.class);
+            }
+        }
+    }
+    
+    /**
+     * Drop the write-ahead copy unless a later append has replaced it. If the session was
+     * deleted while the messages were pushed, the delete may have run before the push, so
+     * the buckets are removed again here rather than left behind.
+     */
+    private void clearPending(String sessionId, List<Message> messages) {
+        long cleared = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(sessionId)
+                        .and("pendingMessages.0.sequence").is(messages.get(0).getSequence())),
+                new Update().unset("pendingMessages"),
+                ChatSession.class).getMatchedCount();
+        if (cleared == 0 && !mongoTemplate.exists(Query.query(Criteria.where("_id").is(sessionId)), ChatSession.class)) {
+            bucketRepository.deleteBySessionId(sessionId);
+        }
+    }
+    
+    /**
+     * A window that was only appended to is saved as a $push of its new lines, sliced to the
+     * lines it kept. The version check guarantees the stored window is the one it started from.
+     */
+    private static void applyWindowChanges(Update update, ConversationWindow window) {
+        if (window == null) {
+            return;
+        }
+        if (window.isRebuilt()) {
+            update.set("contextWindow", window);
+            return;
+        }
+        int kept = window.getLines().size();
+        int added = Math.min(window.getAppendedLines(), kept);
+        update.push("contextWindow.lines").slice(-kept)
+                .each(window.getLines().subList(kept - added, kept).toArray());
+        update.push("contextWindow.lineTokens").slice(-kept)
+                .each(window.getLineTokens().subList(kept - added, kept).toArray());
+        update.set("contextWindow.tokens", window.getTokens())
+                .set("contextWindow.messageCount", window.getMessageCount());
+    }
+    
+    // Concurrent appends can interleave their pushes within a bucket
+    private static List<Message> sortedBySequence(MessageBucket bucket) {
+        List<Message> messages = new ArrayList<>(bucket.getMessages());
+        messages.sort(Comparator.comparing(Message::getSequence, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return messages;
+    }
+}
@@ -11,12 +11,12 @@ import com.learningassistant.chat.repository.ChatDocumentRepository;
 import com.learningassistant.chat.repository.ChatSessionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
@@ -26,13 +26,22 @@ public class ChatService {
     private final ChatSessionRepository sessionRepository;
     private final ChatDocumentRepository documentRepository;
     private final RagQueryClient ragQueryClient;
+    private final ConversationContextBuilder contextBuilder;
+    private final ChatMessageStore messageStore;
+    
+    @Value("${chat-messages.max-append-attempts:5}")
+    private int maxAppendAttempts;
     
     public ChatService(ChatSessionRepository sessionRepository,
                       ChatDocumentRepository documentRepository,
-                      RagQueryClient ragQueryClient) {
+                      RagQueryClient ragQueryClient,
+                      ConversationContextBuilder contextBuilder,
+                      ChatMessageStore messageStore) {
         this.sessionRepository = sessionRepository;
         this.documentRepository = documentRepository;
         this.ragQueryClient = ragQueryClient;
+        this.contextBuilder = contextBuilder;
+        this.messageStore = messageStore;
     }
     
     public ChatSession createSession(CreateSessionRequest request) {
@@ -79,6 +88,8 @@ public class ChatService {
     }
     
     public ChatMessageResponse sendMessage(ChatMessageRequest request, String userId) {
+        messageStore.migrateLegacyMessagesIfPending(request.getSessionId());
+        
         // Get session
         Optional<ChatSession> sessionOpt = sessionRepository.findByIdAndUserId(request.getSessionId(), userId);
         if (sessionOpt.isEmpty()) {
@@ -86,13 +97,14 @@ public class ChatService {
         }
         
         ChatSession session = sessionOpt.get();
+        messageStore.completePendingAppend(session);
         
         // Create user message
         Message userMessage = new Message("user", request.getMessage());
-        session.addMessage(userMessage);
         
-        // Build conversation history
-        String conversationHistory = buildConversationHistory(session.getMessages());
+        // Build conversation history, newest messages first within the token budget
+        String conversationHistory = contextBuilder.build(
+            session, List.of(userMessage), () -> messageStore.newestFirst(session.getId()));
         
         // For now, we'll query the RAG service with the first document
         // In a more advanced implementation, we could query multiple documents
@@ -106,10 +118,13 @@ public class ChatService {
         
         // Create assistant message
         Message assistantMessage = new Message("assistant", answer);
-        session.addMessage(assistantMessage);
+        contextBuilder.append(session, assistantMessage);
         
-        // Save session
-        sessionRepository.save(session);
+        // Append both messages to the buckets and update the session summary. A turn that
+        // conflicts with another on the same session is fitted onto the newer version.
+        List<Message> turn = List.of(userMessage, assistantMessage);
+        messageStore.append(session, turn, maxAppendAttempts,
+            reloaded -> contextBuilder.build(reloaded, turn, () -> messageStore.newestFirst(reloaded.getId())));
         
         logger.info("Processed message in session: {}", session.getId());
         
@@ -117,17 +132,37 @@ public class ChatService {
     }
     
     public List<ChatSession> getUserSessions(String userId) {
-        return sessionRepository.findByUserId(userId);
+        List<ChatSession> sessions = sessionRepository.findByUserId(userId);
+        // Legacy sessions get their summary fields when migrated, so move any the startup
+        // migration has not reached yet rather than list them without a last message
+        if (messageStore.isLegacyMigrationPending()) {
+            boolean migrated = false;
+            for (ChatSession session : sessions) {
+                migrated |= messageStore.migrateLegacyMessages(session.getId());
+            }
+            if (migrated) {
+                sessions = sessionRepository.findByUserId(userId);
+            }
+        }
+        return sessions;
     }
     
     public Optional<ChatSession> getSessionById(String sessionId, String userId) {
-        return sessionRepository.findByIdAndUserId(sessionId, userId);
+        messageStore.migrateLegacyMessagesIfPending(sessionId);
+        Optional<ChatSession> session = sessionRepository.findByIdAndUserId(sessionId, userId);
+        session.ifPresent(found -> {
+            messageStore.completePendingAppend(found);
+            found.setMessages(messageStore.findAll(found.getId()));
+        });
+        return session;
     }
     
     public void deleteSession(String sessionId, String userId) {
         Optional<ChatSession> session = sessionRepository.findByIdAndUserId(sessionId, userId);
         if (session.isPresent()) {
-            sessionRepository.delete(session.get());
+            // By id, as a versioned delete would fail if a turn just landed
+            sessionRepository.deleteById(sessionId);
+            messageStore.deleteSession(sessionId);
             logger.info("Deleted session: {}", sessionId);
         } else {
             throw new IllegalArgumentException("Session not found or access denied");
@@ -138,6 +173,7 @@ public class ChatService {
     public void clearAllData() {
         try {
             sessionRepository.deleteAll();
+            messageStore.deleteAll();
             documentRepository.deleteAll();
             logger.info("All chat data cleared successfully");
         } catch (Exception e) {
@@ -145,11 +181,4 @@ public class ChatService {
             throw e;
         }
     }
-    
-    private String buildConversationHistory(List<Message> messages) {
-        // Build a formatted conversation history for context
-        return messages.stream()
-            .map(msg -> msg.getRole() + ": " + msg.getContent())
-            .collect(Collectors.joining("\n"));
-    }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.ChatSession;
+import com.learningassistant.chat.model.ConversationWindow;
+import com.learningassistant.chat.model.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Builds the conversation history sent along with each question, keeping only the newest
+ * messages that fit in the token budget. The window is cached on the session: a turn appends
+ * its new messages and drops the oldest lines, so the work per turn depends on the size of
+ * the new messages and not on the length of the session.
+ */
+@Component
+public class ConversationContextBuilder {
+    
+    private final int maxTokens;
+    
+    public ConversationContextBuilder(@Value("${chat-context.max-tokens:3000}") int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+    
+    /**
+     * Bring the session's window up to date with messages about to be appended and render it.
+     * The stored history is only read when the window has to be rebuilt, newest message first.
+     */
+    public String build(ChatSession session, List<Message> newMessages,
+                        Supplier<Iterator<Message>> historyNewestFirst) {
+        ConversationWindow window = session.getContextWindow();
+        long messageCount = session.getMessageCount() + newMessages.size();
+        
+        if (window == null || window.getTokenBudget() != maxTokens
+                || window.getMessageCount() != session.getMessageCount()) {
+            List<Message> newestNew = new ArrayList<>(newMessages);
+            Collections.reverse(newestNew);
+            Iterator<Message> newestFirst = Stream.concat(
+                    newestNew.stream(),
+                    StreamSupport.stream(Spliterators.spliteratorUnknownSize(historyNewestFirst.get(), 0), false))
+                .iterator();
+            window = rebuild(newestFirst, messageCount);
+            session.setContextWindow(window);
+        } else {
+            for (Message message : newMessages) {
+                append(window, render(message));
+            }
+            window.setMessageCount(messageCount);
+        }
+        return String.join("\n", window.getLines());
+    }
+    
+    /**
+     * Add a message to a window that is already up to date, such as the reply to the
+     * question the window was just built for
+     */
+    public void append(ChatSession session, Message message) {
+        ConversationWindow window = session.getContextWindow();
+        append(window, render(message));
+        window.setMessageCount(window.getMessageCount() + 1);
+    }
+    
+    /**
+     * Walk the history newest-first, stopping at the first message that no longer fits
+     */
+    ConversationWindow rebuild(Iterator<Message> newestFirst, long messageCount) {
+        Deque<String> lines = new ArrayDeque<>();
+        Deque<Integer> lineTokens = new ArrayDeque<>();
+        int tokens = 0;
+        while (newestFirst.hasNext()) {
+            String line = render(newestFirst.next());
+            int cost = TokenEstimator.estimate(line);
+            if (tokens + cost > maxTokens) {
+                break;
+            }
+            lines.addFirst(line);
+            lineTokens.addFirst(cost);
+            tokens += cost;
+        }
+        
+        ConversationWindow window = new ConversationWindow(maxTokens);
+        window.setLines(new ArrayList<>(lines));
+        window.setLineTokens(new ArrayList<>(lineTokens));
+        window.setTokens(tokens);
+        window.setMessageCount(messageCount);
+        window.setRebuilt(true);
+        return window;
+    }
+    
+    private void append(ConversationWindow window, String line) {
+        int cost = TokenEstimator.estimate(line);
+        if (cost > maxTokens) {
+            // Nothing older can follow a message that does not fit on its own
+            window.getLines().clear();
+            window.getLineTokens().clear();
+            window.setTokens(0);
+            window.setRebuilt(true);
+            return;
+        }
+        window.getLines().add(line);
+        window.getLineTokens().add(cost);
+        window.setAppendedLines(window.getAppendedLines() + 1);
+        int tokens = window.getTokens() + cost;
+        
+        int dropped = 0;
+        while (tokens > maxTokens) {
+            tokens -= window.getLineTokens().get(dropped);
+            dropped++;
+        }
+        if (dropped > 0) {
+            window.getLines().subList(0, dropped).clear();
+            window.getLineTokens().subList(0, dropped).clear();
+        }
+        window.setTokens(tokens);
+    }
+    
+    private static String render(Message message) {
+        return message.getRole() + ": " + message.getContent();
+    }
+}
@@ -0,0 +1,91 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.MessageBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Moves messages embedded in chat_sessions documents by earlier versions into
+ * chat_message_buckets. Sessions are streamed by id, so memory holds one session's
+ * messages at a time; a session used before the migration reaches it is moved on access.
+ * <p>
+ * Before the web server starts it also creates the unique (sessionId, bucket) index that
+ * concurrent appends rely on to share a bucket. Cosmos DB's API for MongoDB only builds a
+ * unique index on an empty collection, so the index is created here, before any bucket is
+ * written, rather than by index auto-creation on first use of the mapping. A deployment
+ * whose bucket collection already holds documents without the index has to create it on a
+ * new collection and copy the buckets over; startup fails until then.
+ */
+@Component
+public class MessageBucketMigration implements SmartInitializingSingleton, ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MessageBucketMigration.class);
+    
+    static final String SESSION_BUCKET_INDEX = "session_bucket";
+    
+    private final MongoTemplate mongoTemplate;
+    private final ChatMessageStore messageStore;
+    
+    public MessageBucketMigration(MongoTemplate mongoTemplate, ChatMessageStore messageStore) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageStore = messageStore;
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        IndexOperations indexes = mongoTemplate.indexOps(MessageBucket.class);
+        if (indexes.getIndexInfo().stream().anyMatch(index -> SESSION_BUCKET_INDEX.equals(index.getName()))) {
+            return;
+        }
+        try {
+            indexes.ensureIndex(new Index()
+                    .on("sessionId", Sort.Direction.ASC)
+                    .on("bucket", Sort.Direction.ASC)
+                    .unique()
+                    .named(SESSION_BUCKET_INDEX));
+            logger.info("Created unique index {} on message buckets", SESSION_BUCKET_INDEX);
+        } catch (DataAccessException e) {
+            long buckets = mongoTemplate.estimatedCount(MessageBucket.class);
+            throw new IllegalStateException("Could not create unique index " + SESSION_BUCKET_INDEX
+                    + " on a message bucket collection holding " + buckets + " documents: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            Query legacy = Query.query(Criteria.where("messages").exists(true));
+            legacy.fields().include("_id");
+            
+            long migrated = 0;
+            try (Stream<org.bson.Document> sessions = mongoTemplate.stream(
+                    legacy, org.bson.Document.class, ChatMessageStore.SESSIONS_COLLECTION)) {
+                for (org.bson.Document session : (Iterable<org.bson.Document>) sessions::iterator) {
+                    if (messageStore.migrateLegacyMessages(session.get("_id").toString())) {
+                        migrated++;
+                    }
+                }
+            }
+            messageStore.markLegacyMessagesMigrated();
+            if (migrated > 0) {
+                logger.info("Moved messages of {} chat sessions into message buckets", migrated);
+            }
+        } catch (Exception e) {
+            // Sessions left behind are still migrated when they are next used
+            logger.error("Message bucket migration failed: {}", e.getMessage(), e);
+        }
+    }
+}
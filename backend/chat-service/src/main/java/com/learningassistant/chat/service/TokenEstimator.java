@@ -0,0 +1,40 @@
+package com.learningassistant.chat.service;
+
+/**
+ * Cheap approximation of how many tokens a BPE tokenizer produces for a piece of text,
+ * good enough to keep prompts under a budget without loading a real vocabulary.
+ * Words count as one token per four characters (rounded up), every other
+ * non-whitespace character counts as a token of its own.
+ */
+public final class TokenEstimator {
+    
+    private static final int CHARS_PER_TOKEN = 4;
+    
+    private TokenEstimator() {
+    }
+    
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                continue;
+            }
+            tokens += wordTokens(wordLength);
+            wordLength = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(wordLength);
+    }
+    
+    private static int wordTokens(int length) {
+        return (length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,149 @@
+package com.learningassistant.chat.client;
+
+import com.learningassistant.chat.config.RestTemplateConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentServiceClientTest {
+
+    private HttpServer server;
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private DocumentServiceClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/documents/upload", exchange -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream body = exchange.getRequestBody()) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    bytesReceived.addAndGet(read);
+                }
+            }
+            byte[] response = "{\"documentId\":\"doc-1\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(201, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        client = new DocumentServiceClient(new RestTemplateConfig().restTemplate(64 * 1024));
+        ReflectionTestUtils.setField(client, "documentServiceUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "streamingUpload", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void uploadDocument_streamsFileLargerThanHeap() {
+        // The surefire fork runs with a small heap, so buffering the file would fail
+        long fileSize = Runtime.getRuntime().maxMemory() * 4;
+        MultipartFile file = new GeneratedMultipartFile("lecture.pdf", fileSize);
+
+        Map<String, Object> response = client.uploadDocument(file, "user-1");
+
+        assertNotNull(response);
+        assertEquals("doc-1", response.get("documentId"));
+        // The multipart envelope adds boundaries and part headers on top of the file
+        assertTrue(bytesReceived.get() > fileSize);
+    }
+
+    /**
+     * Multipart file whose content is generated on the fly and refuses to be
+     * materialised as a byte array.
+     */
+    private static class GeneratedMultipartFile implements MultipartFile {
+
+        private final String name;
+        private final long size;
+
+        GeneratedMultipartFile(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return name;
+        }
+
+        @Override
+        public String getContentType() {
+            return "application/pdf";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            throw new UnsupportedOperationException("File must not be buffered");
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private long remaining = size;
+
+                @Override
+                public int read() {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    remaining--;
+                    return 'x';
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = (int) Math.min(len, remaining);
+                    Arrays.fill(b, off, off + n, (byte) 'x');
+                    remaining -= n;
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void transferTo(File dest) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
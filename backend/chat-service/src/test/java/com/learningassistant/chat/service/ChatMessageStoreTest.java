@@ -0,0 +1,275 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.ChatSession;
+import com.learningassistant.chat.model.Message;
+import com.learningassistant.chat.model.MessageBucket;
+import com.learningassistant.chat.repository.MessageBucketRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Version-checked appends and write-ahead recovery, against a MongoTemplate stand-in that
+ * applies the store's update conditions to one session and its buckets the way MongoDB
+ * would, including the duplicate key error of an upsert into an existing bucket.
+ */
+class ChatMessageStoreTest {
+
+    private static final String SESSION_ID = "session-1";
+    private static final int BUCKET_SIZE = 3;
+
+    // Stored state of the session document
+    private long version;
+    private long messageCount;
+    private List<Message> pendingMessages;
+
+    // Sequence numbers held by each bucket, in push order
+    private final Map<Long, List<Long>> buckets = new TreeMap<>();
+
+    private Runnable beforeNextBucketPush;
+    private boolean failNextBucketPush;
+    private boolean otherTurnsKeepCommitting;
+    private int sessionUpdates;
+    private boolean sessionDeleted;
+
+    private MessageBucketRepository bucketRepository;
+    private ChatMessageStore store;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class, this::answer);
+        bucketRepository = mock(MessageBucketRepository.class);
+        store = new ChatMessageStore(mongoTemplate, bucketRepository, BUCKET_SIZE);
+    }
+
+    @Test
+    void interleavedAppendsStoreEveryMessageOnceInOrder() {
+        ChatSession first = readSession();
+        ChatSession second = readSession();
+        List<Message> firstTurn = turn("first");
+        List<Message> secondTurn = turn("second");
+        List<Boolean> secondAttempts = new ArrayList<>();
+
+        // The second turn runs between the first one's session update and its bucket push
+        beforeNextBucketPush = () -> {
+            secondAttempts.add(store.tryAppend(second, secondTurn));
+            ChatSession reloaded = readSession();
+            assertEquals(List.of(0L, 1L), sequences(reloaded.getPendingMessages()));
+            secondAttempts.add(store.tryAppend(reloaded, secondTurn));
+        };
+
+        assertTrue(store.tryAppend(first, firstTurn));
+
+        assertEquals(List.of(false, true), secondAttempts);
+        assertEquals(List.of(0L, 1L), sequences(firstTurn));
+        assertEquals(List.of(2L, 3L), sequences(secondTurn));
+        assertEquals(Map.of(0L, List.of(0L, 1L, 2L), 1L, List.of(3L)), buckets);
+        assertEquals(4, messageCount);
+        assertEquals(2, version);
+        assertNull(pendingMessages);
+    }
+
+    @Test
+    void failedBucketPushIsCompletedOnceFromThePendingCopy() {
+        List<Message> lost = turn("lost");
+        failNextBucketPush = true;
+
+        assertThrows(DataAccessResourceFailureException.class, () -> store.tryAppend(readSession(), lost));
+        // The session committed the turn and kept a copy, but no bucket holds it yet
+        assertEquals(2, messageCount);
+        assertEquals(List.of(0L, 1L), sequences(pendingMessages));
+        assertTrue(buckets.isEmpty());
+
+        ChatSession reloaded = readSession();
+        ChatSession stale = readSession();
+        store.completePendingAppend(reloaded);
+        assertNull(reloaded.getPendingMessages());
+        assertNull(pendingMessages);
+        assertEquals(Map.of(0L, List.of(0L, 1L)), buckets);
+
+        // A reader still holding the old copy pushes it again; the bucket keeps one of each
+        store.completePendingAppend(stale);
+        assertEquals(Map.of(0L, List.of(0L, 1L)), buckets);
+
+        // The next turn is numbered after the recovered one
+        assertTrue(store.tryAppend(readSession(), turn("next")));
+        assertEquals(Map.of(0L, List.of(0L, 1L, 2L), 1L, List.of(3L)), buckets);
+        assertNull(pendingMessages);
+    }
+
+    @Test
+    void appendGivesUpAfterItsAttemptsInAll() {
+        otherTurnsKeepCommitting = true;
+        List<ChatSession> refitted = new ArrayList<>();
+
+        assertThrows(OptimisticLockingFailureException.class,
+            () -> store.append(readSession(), turn("busy"), 3, refitted::add));
+
+        assertEquals(3, sessionUpdates);
+        assertEquals(2, refitted.size());
+        assertEquals(0, messageCount);
+        assertTrue(buckets.isEmpty());
+    }
+
+    @Test
+    void appendRetriesOntoTheLatestVersion() {
+        ChatSession stale = readSession();
+        assertTrue(store.tryAppend(readSession(), turn("first")));
+
+        List<Message> retried = turn("retried");
+        List<Long> refittedAt = new ArrayList<>();
+        store.append(stale, retried, 3, reloaded -> refittedAt.add(reloaded.getVersion()));
+
+        assertEquals(List.of(1L), refittedAt);
+        assertEquals(List.of(2L, 3L), sequences(retried));
+        assertEquals(Map.of(0L, List.of(0L, 1L, 2L), 1L, List.of(3L)), buckets);
+    }
+
+    @Test
+    void appendToASessionDeletedMidPushRemovesItsBuckets() {
+        beforeNextBucketPush = () -> sessionDeleted = true;
+
+        assertTrue(store.tryAppend(readSession(), turn("late")));
+
+        verify(bucketRepository).deleteBySessionId(SESSION_ID);
+    }
+
+    private Object answer(InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+            case "findById":
+                return sessionDeleted ? null : readSession();
+            case "exists":
+                return !sessionDeleted;
+            case "updateFirst":
+            case "upsert":
+                Query query = (Query) args[0];
+                Update update = (Update) args[1];
+                boolean upsert = invocation.getMethod().getName().equals("upsert");
+                if (args[2] == ChatSession.class) {
+                    return updateSession(query.getQueryObject(), update.getUpdateObject());
+                }
+                if (args[2] == MessageBucket.class) {
+                    return pushToBucket(query.getQueryObject(), upsert);
+                }
+                throw new UnsupportedOperationException("Unexpected entity " + args[2]);
+            default:
+                return Answers.RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private UpdateResult updateSession(Document query, Document update) {
+        if (sessionDeleted) {
+            return matched(0);
+        }
+        if (query.containsKey("version")) {
+            sessionUpdates++;
+            if (otherTurnsKeepCommitting) {
+                version++;
+            }
+            if (!Objects.equals(query.get("version"), version)) {
+                return matched(0);
+            }
+            Document inc = (Document) update.get("$inc");
+            messageCount += ((Number) inc.get("messageCount")).longValue();
+            version += ((Number) inc.get("version")).longValue();
+            pendingMessages = copies((List<Message>) ((Document) update.get("$set")).get("pendingMessages"));
+            return matched(1);
+        }
+        if (query.containsKey("pendingMessages.0.sequence")) {
+            if (pendingMessages == null
+                    || !Objects.equals(pendingMessages.get(0).getSequence(), query.get("pendingMessages.0.sequence"))) {
+                return matched(0);
+            }
+            pendingMessages = null;
+            return matched(1);
+        }
+        throw new UnsupportedOperationException("Unexpected session update " + query.toJson());
+    }
+
+    private UpdateResult pushToBucket(Document query, boolean upsert) {
+        if (beforeNextBucketPush != null) {
+            Runnable hook = beforeNextBucketPush;
+            beforeNextBucketPush = null;
+            hook.run();
+        }
+        if (failNextBucketPush) {
+            failNextBucketPush = false;
+            throw new DataAccessResourceFailureException("Simulated write failure");
+        }
+
+        long bucket = ((Number) query.get("bucket")).longValue();
+        List<?> sequences = (List<?>) ((Document) query.get("messages.sequence")).get("$nin");
+        List<Long> stored = buckets.get(bucket);
+        boolean holdsAny = stored != null && sequences.stream().anyMatch(stored::contains);
+        if (holdsAny || (stored == null && !upsert)) {
+            if (holdsAny && upsert) {
+                // The query misses the existing bucket, so the upsert inserts a duplicate
+                throw new DuplicateKeyException("Duplicate bucket " + bucket);
+            }
+            return matched(0);
+        }
+        List<Long> target = buckets.computeIfAbsent(bucket, key -> new ArrayList<>());
+        for (Object sequence : sequences) {
+            target.add(((Number) sequence).longValue());
+        }
+        return matched(1);
+    }
+
+    private ChatSession readSession() {
+        ChatSession session = new ChatSession();
+        session.setId(SESSION_ID);
+        session.setVersion(version);
+        session.setMessageCount(messageCount);
+        session.setPendingMessages(copies(pendingMessages));
+        return session;
+    }
+
+    private static List<Message> turn(String name) {
+        return List.of(new Message("user", name + " question"), new Message("assistant", name + " answer"));
+    }
+
+    private static List<Message> copies(List<Message> messages) {
+        if (messages == null) {
+            return null;
+        }
+        List<Message> copies = new ArrayList<>();
+        for (Message message : messages) {
+            Message copy = new Message(message.getRole(), message.getContent());
+            copy.setSequence(message.getSequence());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static List<Long> sequences(List<Message> messages) {
+        return messages.stream().map(Message::getSequence).toList();
+    }
+
+    private static UpdateResult matched(long count) {
+        return UpdateResult.acknowledged(count, count, null);
+    }
+}
@@ -0,0 +1,154 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.ChatSession;
+import com.learningassistant.chat.model.Message;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays sessions of 10, 100 and 1000 turns, building the conversation history on every turn
+ * the way sendMessage does, and compares joining the full history with the cached window.
+ */
+class ConversationContextBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationContextBenchmarkTest.class);
+
+    private static final int MAX_TOKENS = 3000;
+    private static final int[] TURNS = {10, 100, 1000};
+
+    @Test
+    void windowMatchesNewestFirstRebuildEveryTurn() {
+        ConversationContextBuilder builder = new ConversationContextBuilder(MAX_TOKENS);
+        Conversation conversation = new Conversation(builder);
+        for (int turn = 0; turn < 200; turn++) {
+            String incremental = conversation.ask(question(turn));
+            String rebuilt = String.join("\n", builder.rebuild(conversation.newestFirst(), 0).getLines());
+            assertEquals(rebuilt, incremental);
+            assertTrue(TokenEstimator.estimate(incremental) <= MAX_TOKENS);
+            conversation.reply(answer(turn));
+        }
+    }
+
+    @Test
+    void windowEqualsFullHistoryWhileUnderBudget() {
+        ConversationContextBuilder builder = new ConversationContextBuilder(MAX_TOKENS);
+        Conversation conversation = new Conversation(builder);
+        for (int turn = 0; turn < 5; turn++) {
+            String window = conversation.ask(question(turn));
+            assertEquals(joinAll(conversation.history), window);
+            conversation.reply(answer(turn));
+        }
+    }
+
+    @Test
+    void contextCostPerSessionLength() {
+        // Warm up both paths so the first measured size does not pay for JIT compilation
+        replayFullHistory(200);
+        replayWindow(200);
+
+        for (int turns : TURNS) {
+            long start = System.nanoTime();
+            long fullChars = replayFullHistory(turns);
+            long fullNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long windowChars = replayWindow(turns);
+            long windowNanos = System.nanoTime() - start;
+
+            logger.info("{} turns: full join {} ms, {} chars; window {} ms, {} chars", turns,
+                    String.format("%.2f", fullNanos / 1e6), fullChars,
+                    String.format("%.2f", windowNanos / 1e6), windowChars);
+
+            // The window is capped by the budget, so it never sends more than the full history,
+            // and long sessions send a small fraction of it
+            assertTrue(windowChars <= fullChars);
+            if (turns >= 1000) {
+                assertTrue(windowChars * 10 < fullChars, windowChars + " vs " + fullChars + " chars");
+            }
+        }
+    }
+
+    private static long replayFullHistory(int turns) {
+        List<Message> history = new ArrayList<>();
+        long chars = 0;
+        for (int turn = 0; turn < turns; turn++) {
+            history.add(new Message("user", question(turn)));
+            chars += joinAll(history).length();
+            history.add(new Message("assistant", answer(turn)));
+        }
+        return chars;
+    }
+
+    private static long replayWindow(int turns) {
+        Conversation conversation = new Conversation(new ConversationContextBuilder(MAX_TOKENS));
+        long chars = 0;
+        for (int turn = 0; turn < turns; turn++) {
+            chars += conversation.ask(question(turn)).length();
+            conversation.reply(answer(turn));
+        }
+        return chars;
+    }
+
+    private static String joinAll(List<Message> messages) {
+        return messages.stream()
+                .map(msg -> msg.getRole() + ": " + msg.getContent())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String question(int turn) {
+        return "Question " + turn + ": how does the chapter on distributed consensus explain leader election?";
+    }
+
+    private static String answer(int turn) {
+        return ("Answer " + turn + ": the chapter describes how nodes time out, request votes, and accept the "
+                + "candidate with the most up-to-date log, which keeps committed entries from being lost. ").repeat(3);
+    }
+
+    /**
+     * Session whose messages live in a list, standing in for the message buckets
+     */
+    private static class Conversation {
+
+        private final ConversationContextBuilder builder;
+        private final ChatSession session = new ChatSession("user-1", List.of("doc-1"), "Benchmark");
+        private final List<Message> history = new ArrayList<>();
+
+        Conversation(ConversationContextBuilder builder) {
+            this.builder = builder;
+        }
+
+        String ask(String question) {
+            Message message = new Message("user", question);
+            String window = builder.build(session, List.of(message), this::newestFirst);
+            store(message);
+            return window;
+        }
+
+        void reply(String answer) {
+            Message message = new Message("assistant", answer);
+            builder.append(session, message);
+            store(message);
+        }
+
+        Iterator<Message> newestFirst() {
+            List<Message> reversed = new ArrayList<>(history);
+            Collections.reverse(reversed);
+            return reversed.iterator();
+        }
+
+        private void store(Message message) {
+            history.add(message);
+            session.setMessageCount(history.size());
+        }
+    }
+}
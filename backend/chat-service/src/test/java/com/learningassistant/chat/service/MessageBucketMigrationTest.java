@@ -0,0 +1,76 @@
+package com.learningassistant.chat.service;
+
+import com.learningassistant.chat.model.MessageBucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The unique bucket index is created explicitly at startup, since Cosmos DB only builds
+ * unique indexes on empty collections.
+ */
+class MessageBucketMigrationTest {
+
+    private MongoTemplate mongoTemplate;
+    private IndexOperations indexes;
+    private MessageBucketMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        indexes = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(MessageBucket.class)).thenReturn(indexes);
+        migration = new MessageBucketMigration(mongoTemplate, mock(ChatMessageStore.class));
+    }
+
+    @Test
+    void createsUniqueSessionBucketIndex() {
+        when(indexes.getIndexInfo()).thenReturn(List.of());
+
+        migration.afterSingletonsInstantiated();
+
+        ArgumentCaptor<Index> created = ArgumentCaptor.forClass(Index.class);
+        verify(indexes).ensureIndex(created.capture());
+        assertEquals(MessageBucketMigration.SESSION_BUCKET_INDEX, created.getValue().getIndexOptions().get("name"));
+        assertEquals(true, created.getValue().getIndexOptions().get("unique"));
+        assertEquals(List.of("sessionId", "bucket"), List.copyOf(created.getValue().getIndexKeys().keySet()));
+    }
+
+    @Test
+    void leavesAnExistingIndexAlone() {
+        IndexInfo existing = mock(IndexInfo.class);
+        when(existing.getName()).thenReturn(MessageBucketMigration.SESSION_BUCKET_INDEX);
+        when(indexes.getIndexInfo()).thenReturn(List.of(existing));
+
+        migration.afterSingletonsInstantiated();
+
+        verify(indexes, never()).ensureIndex(any());
+    }
+
+    @Test
+    void refusesToStartWithoutTheIndex() {
+        when(indexes.getIndexInfo()).thenReturn(List.of());
+        when(indexes.ensureIndex(any())).thenThrow(new DataIntegrityViolationException("collection is not empty"));
+        when(mongoTemplate.estimatedCount(MessageBucket.class)).thenReturn(12L);
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+            migration::afterSingletonsInstantiated);
+        assertTrue(failure.getMessage().contains("holding 12 documents"));
+    }
+}
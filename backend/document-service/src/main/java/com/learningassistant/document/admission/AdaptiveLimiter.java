@@ -0,0 +1,259 @@
+package com.learningassistant.document.admission;
+
+import com.learningassistant.document.exception.OverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit for one pipeline stage, adjusted by AIMD on observed latency.
+ * <p>
+ * Each call holding a permit counts against the limit. While calls finish under the
+ * latency target and the stage is busy, the limit grows by about one per limit's worth of
+ * calls; a call over the target cuts it by the backoff ratio, at most once per target
+ * interval. Callers beyond the limit
+ * wait in a bounded queue for a bounded time, and are rejected with
+ * {@link OverloadedException} when the queue is full or the wait runs out.
+ * <p>
+ * A stage whose calls move whole files sets a reference size: a call that moves more is
+ * judged by its latency scaled down to that size, so a large file that transfers at a
+ * normal rate does not read as congestion.
+ */
+public class AdaptiveLimiter {
+    
+    private final String stage;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final long referenceBytes;
+    private final LongSupplier nanoClock;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    // Moving average of call latency, used to estimate Retry-After
+    private double averageLatencyNanos;
+    private long lastDecreaseNanos;
+    
+    private final Timer latency;
+    private final Counter admitted;
+    private final Counter rejected;
+    private final Counter decreases;
+    
+    public AdaptiveLimiter(String stage, StageSettings settings, MeterRegistry meterRegistry) {
+        this(stage, settings, meterRegistry, System::nanoTime);
+    }
+    
+    AdaptiveLimiter(String stage, StageSettings settings, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.stage = stage;
+        this.minLimit = settings.minLimit();
+        this.maxLimit = settings.maxLimit();
+        this.maxQueued = settings.maxQueued();
+        this.maxWaitNanos = settings.maxWait().toNanos();
+        this.latencyTargetNanos = settings.latencyTarget().toNanos();
+        this.backoffRatio = settings.backoffRatio();
+        this.referenceBytes = settings.referenceBytes();
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, settings.initialLimit()));
+        this.averageLatencyNanos = latencyTargetNanos / 2.0;
+        
+        Gauge.builder("upload.stage.limit", this, AdaptiveLimiter::getLimit)
+                .tag("stage", stage)
+                .register(meterRegistry);
+        Gauge.builder("upload.stage.inflight", this, AdaptiveLimiter::getInFlight)
+                .tag("stage", stage)
+                .register(meterRegistry);
+        Gauge.builder("upload.stage.queued", this, AdaptiveLimiter::getQueued)
+                .tag("stage", stage)
+                .register(meterRegistry);
+        latency = Timer.builder("upload.stage.latency")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        admitted = meterRegistry.counter("upload.stage.requests", "stage", stage, "result", "admitted");
+        rejected = meterRegistry.counter("upload.stage.requests", "stage", stage, "result", "rejected");
+        decreases = meterRegistry.counter("upload.stage.limit.decreases", "stage", stage);
+    }
+    
+    /**
+     * Take a permit, waiting in the queue if the stage is at its limit.
+     *
+     * @throws OverloadedException if the queue is full or no permit frees up in time
+     */
+    public Permit acquire() {
+        return acquire(0);
+    }
+    
+    /**
+     * Take a permit for a call that moves the given number of bytes, which scales the
+     * latency the call is judged by when the stage has a reference size.
+     *
+     * @throws OverloadedException if the queue is full or no permit frees up in time
+     */
+    public Permit acquire(long bytes) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                return admit(bytes);
+            }
+            if (queued >= maxQueued) {
+                throw reject();
+            }
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject();
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                return admit(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject();
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Take a permit only if one is free right now.
+     */
+    public Optional<Permit> tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                return Optional.of(admit(0));
+            }
+            rejected.increment();
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public String getStage() {
+        return stage;
+    }
+    
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private Permit admit(long bytes) {
+        inFlight++;
+        admitted.increment();
+        return new Permit(nanoClock.getAsLong(), bytes);
+    }
+    
+    private OverloadedException reject() {
+        rejected.increment();
+        // Time for the calls ahead of a retry to drain at the current limit
+        double drainNanos = averageLatencyNanos * (queued + inFlight + 1) / limit;
+        long retryAfterSeconds = Math.max(1, Math.min(30, (long) Math.ceil(drainNanos / 1e9)));
+        return new OverloadedException(stage, retryAfterSeconds);
+    }
+    
+    private void release(long elapsedNanos, long bytes) {
+        latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        // Transfer time beyond the reference size is not a congestion signal
+        long judgedNanos = referenceBytes > 0 && bytes > referenceBytes
+                ? (long) (elapsedNanos * ((double) referenceBytes / bytes))
+                : elapsedNanos;
+        lock.lock();
+        try {
+            boolean busy = inFlight * 2 >= limit;
+            inFlight--;
+            averageLatencyNanos += (elapsedNanos - averageLatencyNanos) * 0.1;
+            
+            long now = nanoClock.getAsLong();
+            if (judgedNanos > latencyTargetNanos) {
+                // Slow calls that overlapped the last cut count as one congestion signal
+                if (now - lastDecreaseNanos > latencyTargetNanos && limit > minLimit) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    decreases.increment();
+                }
+            } else if (busy) {
+                // Only grow while the current limit is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Held for the duration of one call through the stage; closing it records the call's
+     * latency and frees the slot.
+     */
+    public final class Permit implements AutoCloseable {
+        
+        private final long startNanos;
+        private final long bytes;
+        private boolean released;
+        
+        private Permit(long startNanos, long bytes) {
+            this.startNanos = startNanos;
+            this.bytes = bytes;
+        }
+        
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(nanoClock.getAsLong() - startNanos, bytes);
+            }
+        }
+    }
+    
+    /**
+     * Limits and latency target of one stage. A referenceBytes of 0 judges every call by its
+     * full latency.
+     */
+    public record StageSettings(int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                                Duration maxWait, Duration latencyTarget, double backoffRatio,
+                                long referenceBytes) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.learningassistant.document.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bulkheads for the upload pipeline: one adaptive concurrency limit each for storage
+ * writes, database transactions and RAG ingest calls, so that a burst of uploads cannot
+ * take every Tomcat thread and pooled connection from the rest of the service.
+ * <p>
+ * Stage settings are read from {@code upload-admission.<stage>.*}. The database stage's
+ * limits default to the Hikari pool size minus {@code reserved-connections}. Storage calls
+ * move whole files, so their latency target applies per {@code reference-bytes} moved.
+ */
+@Component
+public class UploadAdmission {
+    
+    private final AdaptiveLimiter storage;
+    private final AdaptiveLimiter database;
+    private final AdaptiveLimiter ingest;
+    
+    public UploadAdmission(Environment environment, MeterRegistry meterRegistry) {
+        this.storage = new AdaptiveLimiter("storage",
+                settings(environment, "storage", 16, 64, 64, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                        8L * 1024 * 1024), meterRegistry);
+        // Upload transactions may use the connection pool minus a reserve for everything else
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int reserved = environment.getProperty("upload-admission.database.reserved-connections", Integer.class,
+                Math.max(2, poolSize / 2));
+        int databaseLimit = Math.max(1, poolSize - reserved);
+        this.database = new AdaptiveLimiter("database",
+                settings(environment, "database", Math.min(4, databaseLimit), databaseLimit, 32,
+                        Duration.ofSeconds(1), Duration.ofMillis(500), 0), meterRegistry);
+        this.ingest = new AdaptiveLimiter("ingest",
+                settings(environment, "ingest", 4, 8, 0, Duration.ZERO, Duration.ofSeconds(10), 0), meterRegistry);
+    }
+    
+    public AdaptiveLimiter storage() {
+        return storage;
+    }
+    
+    public AdaptiveLimiter database() {
+        return database;
+    }
+    
+    public AdaptiveLimiter ingest() {
+        return ingest;
+    }
+    
+    private static AdaptiveLimiter.StageSettings settings(Environment environment, String stage,
+                                                         int initialLimit, int maxLimit, int maxQueued,
+                                                         Duration maxWait, Duration latencyTarget,
+                                                         long referenceBytes) {
+        String prefix = "upload-admission." + stage + ".";
+        return new AdaptiveLimiter.StageSettings(
+                environment.getProperty(prefix + "initial-limit", Integer.class, initialLimit),
+                environment.getProperty(prefix + "min-limit", Integer.class, 1),
+                environment.getProperty(prefix + "max-limit", Integer.class, maxLimit),
+                environment.getProperty(prefix + "max-queued", Integer.class, maxQueued),
+                environment.getProperty(prefix + "max-wait", Duration.class, maxWait),
+                environment.getProperty(prefix + "latency-target", Duration.class, latencyTarget),
+                environment.getProperty(prefix + "backoff-ratio", Double.class, 0.9),
+                environment.getProperty(prefix + "reference-bytes", Long.class, referenceBytes));
+    }
+}
@@ -8,10 +8,13 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -70,12 +73,21 @@ public class RagIngestClient {
         }
     }
     
-    public boolean deleteDocument(String documentId) {
+    public boolean deleteDocument(String documentId, String userId) {
         try {
-            String url = ragIngestServiceUrl + "/api/ingest/" + documentId;
+            URI url = UriComponentsBuilder.fromHttpUrl(ragIngestServiceUrl)
+                    .path("/document/{documentId}")
+                    .queryParam("user_id", userId)
+                    .buildAndExpand(documentId)
+                    .encode()
+                    .toUri();
             restTemplate.delete(url);
             logger.info("Document {} deleted from RAG service", documentId);
             return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            // Already gone, e.g. a retried delete whose first attempt succeeded
+            logger.info("Document {} was not in the RAG service", documentId);
+            return true;
         } catch (Exception e) {
             logger.error("Error deleting document from RAG service: {}", e.getMessage());
             return false;
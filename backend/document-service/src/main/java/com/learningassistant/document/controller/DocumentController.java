@@ -1,19 +1,43 @@
 package com.learningassistant.document.controller;
 
+import com.learningassistant.document.dto.BatchStatusRequest;
+import com.learningassistant.document.dto.BatchUploadResult;
+import com.learningassistant.document.dto.ClearJobStatus;
+import com.learningassistant.document.dto.DocumentPage;
 import com.learningassistant.document.dto.DocumentResponse;
+import com.learningassistant.document.dto.DocumentStatusResponse;
+import com.learningassistant.document.dto.DocumentTextPage;
+import com.learningassistant.document.exception.OverloadedException;
+import com.learningassistant.document.model.ProcessingStatus;
+import com.learningassistant.document.service.DocumentClearJob;
+import com.learningassistant.document.service.DocumentDownload;
+import com.learningassistant.document.service.DocumentEventHub;
 import com.learningassistant.document.service.DocumentService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -21,11 +45,19 @@ import java.util.Optional;
 public class DocumentController {
     
     private static final Logger logger = LoggerFactory.getLogger(DocumentController.class);
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_STATUS_BATCH_SIZE = 500;
+    private static final int MAX_UPLOAD_BATCH_SIZE = 50;
     
     private final DocumentService documentService;
+    private final DocumentEventHub documentEventHub;
+    private final DocumentClearJob documentClearJob;
     
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, DocumentEventHub documentEventHub,
+                              DocumentClearJob documentClearJob) {
         this.documentService = documentService;
+        this.documentEventHub = documentEventHub;
+        this.documentClearJob = documentClearJob;
     }
     
     @PostMapping("/upload")
@@ -48,6 +80,8 @@ public class DocumentController {
             responseMap.put("message", "Document uploaded successfully");
             
             return ResponseEntity.status(HttpStatus.CREATED).body(responseMap);
+        } catch (OverloadedException e) {
+            return overloadedResponse(e);
         } catch (IllegalArgumentException e) {
             logger.error("Invalid request: {}", e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -58,6 +92,38 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Upload several files in one request. Responds 201 when every file was saved, or 207
+     * with per-file results when some failed.
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> uploadDocuments(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("userId") String userId) {
+        if (files.isEmpty() || files.size() > MAX_UPLOAD_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Between 1 and " + MAX_UPLOAD_BATCH_SIZE + " files are allowed per batch"));
+        }
+        try {
+            logger.info("Received batch upload of {} files from user: {}", files.size(), userId);
+            
+            List<BatchUploadResult> results = documentService.uploadDocuments(files, userId);
+            long succeeded = results.stream().filter(BatchUploadResult::isSuccess).count();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("results", results);
+            response.put("succeeded", succeeded);
+            response.put("failed", results.size() - succeeded);
+            return ResponseEntity.status(succeeded == results.size() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                    .body(response);
+        } catch (OverloadedException e) {
+            return overloadedResponse(e);
+        } catch (Exception e) {
+            logger.error("Error uploading documents: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to upload documents: " + e.getMessage()));
+        }
+    }
+    
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getUserDocuments(@PathVariable String userId) {
         try {
@@ -70,6 +136,32 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Keyset-paginated listing of the user's documents, newest first
+     */
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<?> getUserDocumentsPage(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) ProcessingStatus status,
+            @RequestParam(required = false) String fileType) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        try {
+            DocumentPage page = documentService.getUserDocumentsPage(userId, cursor, limit, status, fileType);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching user documents: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to fetch documents"));
+        }
+    }
+    
     @GetMapping("/{documentId}")
     public ResponseEntity<?> getDocument(@PathVariable String documentId) {
         try {
@@ -112,6 +204,30 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Keyset-paginated listing of pending documents, oldest first
+     */
+    @GetMapping("/pending/page")
+    public ResponseEntity<?> getPendingDocumentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String fileType) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        try {
+            DocumentPage page = documentService.getPendingDocumentsPage(cursor, limit, fileType);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching pending documents: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to fetch pending documents"));
+        }
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> health() {
         Map<String, String> health = new HashMap<>();
@@ -123,26 +239,67 @@ public class DocumentController {
     @GetMapping("/{documentId}/status")
     public ResponseEntity<?> getDocumentStatus(@PathVariable String documentId) {
         try {
-            logger.info("[CRITICAL] Received status request for document: {}", documentId);
-            Optional<DocumentResponse> doc = documentService.getDocumentById(documentId);
-            if (doc.isEmpty()) {
-                logger.warn("[WARNING] Document not found: {}", documentId);
+            Optional<DocumentStatusResponse> status = documentService.getDocumentStatus(documentId);
+            if (status.isEmpty()) {
+                logger.debug("Status requested for unknown document: {}", documentId);
                 return ResponseEntity.notFound().build();
             }
             
-            logger.info("[CRITICAL] Document {} status: {}", documentId, doc.get().getProcessingStatus());
-            Map<String, Object> response = new HashMap<>();
-            response.put("documentId", doc.get().getDocumentId());
-            response.put("processingStatus", doc.get().getProcessingStatus());
+            logger.debug("Document {} status: {}", documentId, status.get().getProcessingStatus());
+            return ResponseEntity.ok(status.get());
+        } catch (Exception e) {
+            logger.error("[ERROR] Error checking document status for {}: {}", documentId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to check document status"));
+        }
+    }
+    
+    /**
+     * Status of many documents in one call, for clients polling several in-flight uploads
+     */
+    @PostMapping("/status/batch")
+    public ResponseEntity<?> getDocumentStatuses(@RequestBody BatchStatusRequest request) {
+        List<String> ids = request.getIds();
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_STATUS_BATCH_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Between 1 and " + MAX_STATUS_BATCH_SIZE + " ids are required"));
+        }
+        try {
+            List<DocumentStatusResponse> statuses = documentService.getDocumentStatuses(ids);
+            Set<String> found = statuses.stream()
+                    .map(DocumentStatusResponse::getDocumentId)
+                    .collect(Collectors.toSet());
+            List<String> notFound = ids.stream()
+                    .filter(id -> !found.contains(id))
+                    .distinct()
+                    .collect(Collectors.toList());
             
+            Map<String, Object> response = new HashMap<>();
+            response.put("statuses", statuses);
+            response.put("notFound", notFound);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            logger.error("[ERROR] Error checking document status for {}: {}", documentId, e.getMessage(), e);
+            logger.error("Error checking document statuses: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(createErrorResponse("Failed to check document status"));
         }
     }
     
+    /**
+     * Server-Sent Events stream of status changes for the user's documents. Browsers resend
+     * Last-Event-ID on reconnect; a client opening a new EventSource cannot set that header,
+     * so it may pass the ID as a query parameter instead. A "resync" event means the client
+     * should refetch statuses.
+     */
+    @GetMapping(value = "/events/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDocumentEvents(
+            @PathVariable String userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return documentEventHub.subscribe(userId, lastEventId);
+    }
+    
     @PostMapping("/{documentId}/check-status")
     public ResponseEntity<?> checkDocumentStatus(@PathVariable String documentId) {
         try {
@@ -169,46 +326,14 @@ public class DocumentController {
     @PostMapping("/{documentId}/mark-completed")
     public ResponseEntity<?> markDocumentCompleted(
             @PathVariable String documentId,
-            @RequestParam(required = false) String ragDocumentId,
-            HttpServletRequest request) {
+            @RequestParam(required = false) String ragDocumentId) {
         try {
             // Normalize document ID to ensure consistency with database storage
             String normalizedDocumentId = DocumentService.normalizeDocumentId(documentId);
+            logger.debug("Received mark-completed for document {} (ragDocumentId={})", normalizedDocumentId, ragDocumentId);
             
-            logger.info("[DEBUG] === Document Completion Endpoint Hit ===");
-            logger.info("[DEBUG] Request URL: {}", request.getRequestURL());
-            logger.info("[DEBUG] Request Method: {}", request.getMethod());
-            logger.info("[DEBUG] Path Variable documentId: '{}'", documentId);
-            logger.info("[DEBUG] Normalized documentId: '{}'", normalizedDocumentId);
-            logger.info("[DEBUG] documentId length: {}", normalizedDocumentId.length());
-            logger.info("[DEBUG] Query Parameter ragDocumentId: {}", ragDocumentId);
-            
-            // Log all headers
-            request.getHeaderNames().asIterator().forEachRemaining(headerName -> {
-                logger.info("[DEBUG] Header - {}: {}", headerName, request.getHeader(headerName));
-            });
-            
-            logger.info("[CRITICAL] Received mark-completed request for document: {}", normalizedDocumentId);
-            logger.info("[CRITICAL] ragDocumentId parameter: {}", ragDocumentId);
-            
-            // Try to find the document BEFORE attempting to mark it complete
-            Optional<DocumentResponse> existingDoc = documentService.getDocumentById(normalizedDocumentId);
-            if (existingDoc.isEmpty()) {
-                logger.error("[ERROR] Document NOT FOUND in database before mark-completed: {}", normalizedDocumentId);
-                logger.error("[ERROR] This indicates a database mismatch or timing issue");
-                // Log all documents to help debug
-                logger.info("[DEBUG] Attempting to query database for similar IDs...");
-            } else {
-                logger.info("[SUCCESS] Document FOUND in database before mark-completed: {}", normalizedDocumentId);
-                logger.info("[DEBUG] Current status: {}", existingDoc.get().getProcessingStatus());
-            }
-            
-            documentService.markDocumentCompleted(normalizedDocumentId, ragDocumentId);
-            logger.info("[SUCCESS] Document {} successfully marked as COMPLETED in database", normalizedDocumentId);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Document marked as completed");
-            response.put("documentId", normalizedDocumentId);
-            return ResponseEntity.ok(response);
+            boolean applied = documentService.markDocumentCompleted(normalizedDocumentId, ragDocumentId);
+            return statusUpdateResponse(normalizedDocumentId, applied, "Document marked as completed");
         } catch (IllegalArgumentException e) {
             logger.error("[ERROR] Invalid request for document {}: {}", documentId, e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -224,14 +349,10 @@ public class DocumentController {
         try {
             // Normalize document ID to ensure consistency with database storage
             String normalizedDocumentId = DocumentService.normalizeDocumentId(documentId);
+            logger.debug("Received mark-failed for document {}", normalizedDocumentId);
             
-            logger.info("[CRITICAL] Received mark-failed request for document: {}", normalizedDocumentId);
-            documentService.markDocumentFailed(normalizedDocumentId);
-            logger.info("[SUCCESS] Document {} successfully marked as FAILED in database", normalizedDocumentId);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Document marked as failed");
-            response.put("documentId", normalizedDocumentId);
-            return ResponseEntity.ok(response);
+            boolean applied = documentService.markDocumentFailed(normalizedDocumentId);
+            return statusUpdateResponse(normalizedDocumentId, applied, "Document marked as failed");
         } catch (IllegalArgumentException e) {
             logger.error("[ERROR] Invalid request for document {}: {}", documentId, e.getMessage());
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
@@ -242,13 +363,31 @@ public class DocumentController {
         }
     }
     
+    /**
+     * 200 when the status was applied, 202 when it was recorded for a document not yet saved
+     */
+    private ResponseEntity<?> statusUpdateResponse(String documentId, boolean applied, String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("documentId", documentId);
+        if (applied) {
+            response.put("message", message);
+            return ResponseEntity.ok(response);
+        }
+        response.put("message", "Status update recorded; it will be applied once the document is saved");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    /**
+     * Start clearing all documents in the background. Returns 202 with the job, whose
+     * progress can be polled at the Location header.
+     */
     @DeleteMapping("/admin/clear-all")
     public ResponseEntity<?> clearAllDocuments() {
         try {
-            documentService.clearAllDocuments();
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "All documents cleared successfully");
-            return ResponseEntity.ok(response);
+            ClearJobStatus job = documentClearJob.start();
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/documents/admin/clear-all/" + job.getJobId()))
+                    .body(job);
         } catch (Exception e) {
             logger.error("Error clearing documents: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -256,6 +395,16 @@ public class DocumentController {
         }
     }
     
+    @GetMapping("/admin/clear-all/{jobId}")
+    public ResponseEntity<?> getClearJobStatus(@PathVariable String jobId) {
+        Optional<ClearJobStatus> job = documentClearJob.getStatus(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse("Clear job not found: " + jobId));
+        }
+        return ResponseEntity.ok(job.get());
+    }
+    
     /**
      * NEW ENDPOINT: Get the full text content of a document
      * Used by quiz-service to retrieve document text for quiz generation
@@ -283,6 +432,152 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Serve the document text as plain UTF-8. Supports HTTP Range requests over the
+     * encoded bytes and gzip (via server compression) for full responses. The body is the
+     * text cache's byte array, written out as is rather than streamed from storage.
+     */
+    @GetMapping("/{documentId}/text/stream")
+    public ResponseEntity<?> streamDocumentText(
+            @PathVariable String documentId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        try {
+            byte[] text = documentService.getDocumentTextBytes(documentId);
+            
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (range != null) {
+                // Byte ranges refer to the uncompressed text. Tomcat does not compress responses
+                // carrying a strong ETag, which keeps partial responses identity-encoded. A
+                // document's text is extracted once from its immutable file and never changes,
+                // so its id and length identify it without hashing the text.
+                response.eTag("\"" + documentId + "-" + Integer.toHexString(text.length) + "\"");
+            }
+            // Spring turns a Resource body into a 206 partial response when a Range header is present
+            return response.body(new ByteArrayResource(text));
+        } catch (IllegalArgumentException e) {
+            logger.error("Document not found: {}", documentId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse("Document not found: " + documentId));
+        } catch (Exception e) {
+            logger.error("Error streaming document text for {}: {}", documentId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to retrieve document text: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Download the original uploaded file. Azure-backed documents redirect to a signed blob
+     * URL; local files are served with sendfile, honouring Range, ETag and If-None-Match.
+     */
+    @GetMapping("/{documentId}/download")
+    public ResponseEntity<?> downloadDocument(
+            @PathVariable String documentId,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        try {
+            Optional<DocumentDownload> downloadOpt = documentService.getDocumentDownload(documentId);
+            if (downloadOpt.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(createErrorResponse("Document not found: " + documentId));
+            }
+            DocumentDownload download = downloadOpt.get();
+            
+            if (download.redirectUrl() != null) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create(download.redirectUrl()))
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+            
+            Path file = download.localFile();
+            if (file == null || !Files.isRegularFile(file)) {
+                logger.error("Stored file missing for document {}", documentId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(createErrorResponse("File not found for document: " + documentId));
+            }
+            long size = Files.size(file);
+            // Content-addressed files never change, so their hash is a strong validator
+            String etag = "\"" + (download.contentHash() != null
+                    ? download.contentHash()
+                    : Long.toHexString(size) + "-" + Long.toHexString(Files.getLastModifiedTime(file).toMillis())) + "\"";
+            
+            if (LocalFileResponder.noneMatchHit(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            
+            // Only honour Range if the client's copy is still current
+            long[] range = LocalFileResponder.rangeStillValid(request.getHeader(HttpHeaders.IF_RANGE), etag)
+                    ? LocalFileResponder.parseRange(request.getHeader(HttpHeaders.RANGE), size)
+                    : null;
+            if (range != null && range.length == 0) {
+                LocalFileResponder.rejectRange(response, size);
+                return null;
+            }
+            
+            // Tomcat does not compress responses carrying a strong ETag, which keeps byte
+            // ranges and sendfile valid, as on the text stream
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setContentType(download.contentType() != null
+                    ? download.contentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(download.fileName() != null ? download.fileName() : documentId, StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+            
+            if (range != null) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + size);
+                LocalFileResponder.send(request, response, file, range[0], range[1]);
+            } else {
+                LocalFileResponder.send(request, response, file, 0, size - 1);
+            }
+            // The response has been written directly
+            return null;
+        } catch (Exception e) {
+            logger.error("Error downloading document {}: {}", documentId, e.getMessage(), e);
+            if (response.isCommitted()) {
+                return null;
+            }
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to download document"));
+        }
+    }
+    
+    /**
+     * Get one page of the document text by character offset
+     */
+    @GetMapping("/{documentId}/text/page")
+    public ResponseEntity<?> getDocumentTextPage(
+            @PathVariable String documentId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100000") int length) {
+        if (offset < 0 || length <= 0) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Offset must be >= 0 and length > 0"));
+        }
+        try {
+            DocumentTextPage page = documentService.getDocumentTextPage(documentId, offset, length);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Document not found: {}", documentId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse("Document not found: " + documentId));
+        } catch (Exception e) {
+            logger.error("Error fetching document text page for {}: {}", documentId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to retrieve document text: " + e.getMessage()));
+        }
+    }
+    
+    private ResponseEntity<?> overloadedResponse(OverloadedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(createErrorResponse("Server is busy, please retry shortly"));
+    }
+    
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> error = new HashMap<>();
         error.put("error", message);
@@ -0,0 +1,142 @@
+package com.learningassistant.document.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a local file, or one byte range of it, to the servlet response without reading it
+ * into the heap. Under Tomcat the copy is handed to the connector's sendfile support; other
+ * containers get a {@link FileChannel#transferTo} copy.
+ */
+final class LocalFileResponder {
+    
+    // Request attributes defined by Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    private LocalFileResponder() {
+    }
+    
+    /**
+     * Whether an If-None-Match header matches the current ETag. Each listed tag is compared
+     * weakly, so W/"x" matches "x", and * matches any current file.
+     */
+    static boolean noneMatchHit(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (!tag.isEmpty() && opaqueTag(tag).equals(current))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Whether a Range may be honoured under the given If-Range header. If-Range needs a strong
+     * match, so a weak tag or a date (this endpoint sends no Last-Modified) means the whole file.
+     */
+    static boolean rangeStillValid(String ifRange, String etag) {
+        return ifRange == null || ifRange.trim().equals(etag);
+    }
+    
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+    
+    /**
+     * Resolve a single "bytes=" range against the file size.
+     * @return {start, endInclusive}, null to serve the whole file, or an empty array if unsatisfiable
+     */
+    static long[] parseRange(String rangeHeader, long size) {
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return null;
+        }
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        if (spec.contains(",")) {
+            // Multipart ranges are optional; answer with the full file instead
+            return null;
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+            if (start >= size || start > end) {
+                return new long[0];
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Send bytes [start, end] of the file. Headers other than the length must already be set.
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, Path file, long start, long end)
+            throws IOException {
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || length == 0) {
+            return;
+        }
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The connector copies the file to the socket after the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+    
+    static void rejectRange(HttpServletResponse response, long size) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+    }
+}
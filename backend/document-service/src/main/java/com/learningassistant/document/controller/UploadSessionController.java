@@ -0,0 +1,121 @@
+package com.learningassistant.document.controller;
+
+import com.learningassistant.document.dto.UploadSessionRequest;
+import com.learningassistant.document.dto.UploadSessionResponse;
+import com.learningassistant.document.exception.OverloadedException;
+import com.learningassistant.document.service.ChunkedUploadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Resumable chunked uploads for files over the multipart size limit:
+ * initiate with POST, send each chunk as the raw body of a PUT, then complete. GET reports
+ * which chunks are still missing, so an interrupted client can resume.
+ */
+@RestController
+@RequestMapping("/api/documents/uploads")
+@CrossOrigin(origins = "*")
+public class UploadSessionController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionController.class);
+    
+    private final ChunkedUploadService chunkedUploadService;
+    
+    public UploadSessionController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+    
+    @PostMapping
+    public ResponseEntity<?> initiate(@RequestBody UploadSessionRequest request) {
+        try {
+            UploadSessionResponse session = chunkedUploadService.initiate(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid upload request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error starting upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to start upload"));
+        }
+    }
+    
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getSession(@PathVariable String uploadId) {
+        return chunkedUploadService.getSession(uploadId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> putChunk(@PathVariable String uploadId,
+                                      @PathVariable int index,
+                                      HttpServletRequest request) {
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED)
+                    .body(createErrorResponse("Chunks must be sent with a Content-Length"));
+        }
+        try {
+            UploadSessionResponse session = chunkedUploadService.putChunk(uploadId, index, request.getInputStream(), length);
+            return ResponseEntity.ok(session);
+        } catch (Exception e) {
+            return errorResponse("storing chunk " + index + " of upload " + uploadId, e);
+        }
+    }
+    
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String uploadId) {
+        try {
+            UploadSessionResponse session = chunkedUploadService.complete(uploadId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session);
+        } catch (Exception e) {
+            return errorResponse("completing upload " + uploadId, e);
+        }
+    }
+    
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abort(@PathVariable String uploadId) {
+        try {
+            chunkedUploadService.abort(uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return errorResponse("aborting upload " + uploadId, e);
+        }
+    }
+    
+    private ResponseEntity<?> errorResponse(String action, Exception e) {
+        if (e instanceof NoSuchElementException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(createErrorResponse(e.getMessage()));
+        }
+        if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+        if (e instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(createErrorResponse(e.getMessage()));
+        }
+        if (e instanceof OverloadedException overloaded) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(overloaded.getRetryAfterSeconds()))
+                    .body(createErrorResponse("Server is busy, please retry shortly"));
+        }
+        logger.error("Error {}: {}", action, e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("Failed " + action));
+    }
+    
+    private Map<String, String> createErrorResponse(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return error;
+    }
+}
@@ -0,0 +1,17 @@
+package com.learningassistant.document.dto;
+
+import java.util.List;
+
+public class BatchStatusRequest {
+    
+    private List<String> ids;
+    
+    // Getters and Setters
+    public List<String> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
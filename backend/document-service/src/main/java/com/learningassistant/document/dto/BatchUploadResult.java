@@ -0,0 +1,65 @@
+package com.learningassistant.document.dto;
+
+/**
+ * Outcome of one file in a batch upload: the created document, or why it failed.
+ */
+public class BatchUploadResult {
+    
+    private String fileName;
+    private boolean success;
+    private DocumentResponse document;
+    private String error;
+    
+    // Constructors
+    public BatchUploadResult() {
+    }
+    
+    public static BatchUploadResult created(DocumentResponse document) {
+        BatchUploadResult result = new BatchUploadResult();
+        result.fileName = document.getFileName();
+        result.success = true;
+        result.document = document;
+        return result;
+    }
+    
+    public static BatchUploadResult failed(String fileName, String error) {
+        BatchUploadResult result = new BatchUploadResult();
+        result.fileName = fileName;
+        result.success = false;
+        result.error = error;
+        return result;
+    }
+    
+    // Getters and Setters
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+    
+    public DocumentResponse getDocument() {
+        return document;
+    }
+    
+    public void setDocument(DocumentResponse document) {
+        this.document = document;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,102 @@
+package com.learningassistant.document.dto;
+
+import java.time.LocalDateTime;
+
+public class ClearJobStatus {
+    
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    private String jobId;
+    private State state;
+    private long documentsDeleted;
+    private long filesDeleted;
+    private long fileFailures;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    
+    // Constructors
+    public ClearJobStatus() {
+    }
+    
+    public ClearJobStatus(String jobId, State state, long documentsDeleted, long filesDeleted, long fileFailures,
+                          LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+        this.jobId = jobId;
+        this.state = state;
+        this.documentsDeleted = documentsDeleted;
+        this.filesDeleted = filesDeleted;
+        this.fileFailures = fileFailures;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+    
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public void setState(State state) {
+        this.state = state;
+    }
+    
+    public long getDocumentsDeleted() {
+        return documentsDeleted;
+    }
+    
+    public void setDocumentsDeleted(long documentsDeleted) {
+        this.documentsDeleted = documentsDeleted;
+    }
+    
+    public long getFilesDeleted() {
+        return filesDeleted;
+    }
+    
+    public void setFilesDeleted(long filesDeleted) {
+        this.filesDeleted = filesDeleted;
+    }
+    
+    public long getFileFailures() {
+        return fileFailures;
+    }
+    
+    public void setFileFailures(long fileFailures) {
+        this.fileFailures = fileFailures;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,35 @@
+package com.learningassistant.document.dto;
+
+import java.util.List;
+
+public class DocumentPage {
+    
+    private List<DocumentResponse> items;
+    private String nextCursor; // null when there are no more results
+    
+    // Constructors
+    public DocumentPage() {
+    }
+    
+    public DocumentPage(List<DocumentResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<DocumentResponse> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<DocumentResponse> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
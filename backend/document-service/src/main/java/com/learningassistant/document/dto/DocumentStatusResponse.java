@@ -0,0 +1,47 @@
+package com.learningassistant.document.dto;
+
+import com.learningassistant.document.model.ProcessingStatus;
+
+import java.time.LocalDateTime;
+
+public class DocumentStatusResponse {
+    
+    private String documentId;
+    private ProcessingStatus processingStatus;
+    private LocalDateTime processedAt;
+    
+    // Constructors
+    public DocumentStatusResponse() {
+    }
+    
+    public DocumentStatusResponse(String documentId, ProcessingStatus processingStatus, LocalDateTime processedAt) {
+        this.documentId = documentId;
+        this.processingStatus = processingStatus;
+        this.processedAt = processedAt;
+    }
+    
+    // Getters and Setters
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+    
+    public ProcessingStatus getProcessingStatus() {
+        return processingStatus;
+    }
+    
+    public void setProcessingStatus(ProcessingStatus processingStatus) {
+        this.processingStatus = processingStatus;
+    }
+    
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+    
+    public void setProcessedAt(LocalDateTime processedAt) {
+        this.processedAt = processedAt;
+    }
+}
@@ -0,0 +1,73 @@
+package com.learningassistant.document.dto;
+
+public class DocumentTextPage {
+    
+    private String documentId;
+    private int offset;
+    private int length;
+    private int totalLength;
+    private Integer nextOffset; // null when this page reaches the end of the text
+    private String text;
+    
+    // Constructors
+    public DocumentTextPage() {
+    }
+    
+    public DocumentTextPage(String documentId, int offset, int totalLength, Integer nextOffset, String text) {
+        this.documentId = documentId;
+        this.offset = offset;
+        this.length = text.length();
+        this.totalLength = totalLength;
+        this.nextOffset = nextOffset;
+        this.text = text;
+    }
+    
+    // Getters and Setters
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+    
+    public int getLength() {
+        return length;
+    }
+    
+    public void setLength(int length) {
+        this.length = length;
+    }
+    
+    public int getTotalLength() {
+        return totalLength;
+    }
+    
+    public void setTotalLength(int totalLength) {
+        this.totalLength = totalLength;
+    }
+    
+    public Integer getNextOffset() {
+        return nextOffset;
+    }
+    
+    public void setNextOffset(Integer nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public void setText(String text) {
+        this.text = text;
+    }
+}
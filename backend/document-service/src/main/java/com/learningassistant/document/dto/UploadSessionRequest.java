@@ -0,0 +1,42 @@
+package com.learningassistant.document.dto;
+
+public class UploadSessionRequest {
+    
+    private String userId;
+    private String fileName;
+    private String contentType;
+    private Long totalSize;
+    
+    // Getters and Setters
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public Long getTotalSize() {
+        return totalSize;
+    }
+    
+    public void setTotalSize(Long totalSize) {
+        this.totalSize = totalSize;
+    }
+}
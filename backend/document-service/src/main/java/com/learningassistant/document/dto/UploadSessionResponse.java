@@ -0,0 +1,98 @@
+package com.learningassistant.document.dto;
+
+import com.learningassistant.document.model.UploadSessionStatus;
+
+import java.util.List;
+
+public class UploadSessionResponse {
+    
+    private String uploadId;
+    private String fileName;
+    private long totalSize;
+    private long chunkSize;
+    private int chunkCount;
+    private UploadSessionStatus status;
+    private List<Integer> missingChunks; // Chunks still to be sent, in order
+    private String documentId; // Set once the upload is completed
+    
+    // Constructors
+    public UploadSessionResponse() {
+    }
+    
+    public UploadSessionResponse(String uploadId, String fileName, long totalSize, long chunkSize, int chunkCount,
+                                 UploadSessionStatus status, List<Integer> missingChunks, String documentId) {
+        this.uploadId = uploadId;
+        this.fileName = fileName;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+        this.status = status;
+        this.missingChunks = missingChunks;
+        this.documentId = documentId;
+    }
+    
+    // Getters and Setters
+    public String getUploadId() {
+        return uploadId;
+    }
+    
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public long getTotalSize() {
+        return totalSize;
+    }
+    
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+    
+    public long getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getChunkCount() {
+        return chunkCount;
+    }
+    
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+    
+    public UploadSessionStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(UploadSessionStatus status) {
+        this.status = status;
+    }
+    
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+    
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+    
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+}
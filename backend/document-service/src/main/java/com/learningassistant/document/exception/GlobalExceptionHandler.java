@@ -2,6 +2,7 @@ package com.learningassistant.document.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -29,6 +30,15 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.PAYLOAD_TOO_LARGE, "File size exceeds the maximum limit of 10MB");
     }
     
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<Map<String, Object>> handleOverloadedException(OverloadedException e) {
+        logger.warn("Overloaded: {}", e.getMessage());
+        ResponseEntity<Map<String, Object>> response = buildErrorResponse(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+    
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, Object>> handleRuntimeException(RuntimeException e) {
         logger.error("RuntimeException: {}", e.getMessage());
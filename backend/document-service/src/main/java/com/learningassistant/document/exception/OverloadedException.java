@@ -0,0 +1,25 @@
+package com.learningassistant.document.exception;
+
+/**
+ * A pipeline stage is at its concurrency limit and its wait queue is full or timed out.
+ * Callers should answer 429 and ask the client to retry after the given delay.
+ */
+public class OverloadedException extends RuntimeException {
+    
+    private final String stage;
+    private final long retryAfterSeconds;
+    
+    public OverloadedException(String stage, long retryAfterSeconds) {
+        super("Too many concurrent requests for " + stage + ", retry in " + retryAfterSeconds + "s");
+        this.stage = stage;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public String getStage() {
+        return stage;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
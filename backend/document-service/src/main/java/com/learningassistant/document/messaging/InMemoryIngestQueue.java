@@ -0,0 +1,104 @@
+package com.learningassistant.document.messaging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process queue standing in for the ingest service, for running ingestion load
+ * tests locally. A full queue rejects sends the way a throttled broker would, which sends the
+ * outbox event into its retry backoff. An optional consumer thread drains the queue at a
+ * configurable pace.
+ */
+@Component
+@ConditionalOnProperty(name = "ingest.transport", havingValue = "memory")
+public class InMemoryIngestQueue implements IngestMessageSender {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryIngestQueue.class);
+    
+    private final BlockingQueue<IngestMessage> queue;
+    private final boolean consume;
+    private final long consumeDelayMs;
+    
+    private volatile boolean running = true;
+    private Thread consumer;
+    
+    public InMemoryIngestQueue(@Value("${ingest.memory.capacity:10000}") int capacity,
+                               @Value("${ingest.memory.consume:true}") boolean consume,
+                               @Value("${ingest.memory.consume-delay-ms:0}") long consumeDelayMs,
+                               MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consume = consume;
+        this.consumeDelayMs = consumeDelayMs;
+        Gauge.builder("ingest.memory.depth", queue, BlockingQueue::size)
+                .description("Messages waiting in the in-memory ingest queue")
+                .register(meterRegistry);
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (consume) {
+            consumer = new Thread(this::consumeLoop, "ingest-memory-consumer");
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+        logger.info("Using in-memory ingest queue (capacity {}, consumer {})",
+            queue.remainingCapacity(), consume ? "on" : "off");
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (consumer != null) {
+            consumer.interrupt();
+        }
+    }
+    
+    @Override
+    public void send(IngestMessage message) {
+        if (!queue.offer(message)) {
+            throw new IllegalStateException("In-memory ingest queue is full");
+        }
+    }
+    
+    @Override
+    public String getMode() {
+        return "memory";
+    }
+    
+    /**
+     * Take the next message, for tests that act as the consumer themselves
+     */
+    public IngestMessage poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+    
+    public int size() {
+        return queue.size();
+    }
+    
+    private void consumeLoop() {
+        while (running) {
+            try {
+                IngestMessage message = queue.take();
+                logger.debug("Consumed ingest message for document {}", message.documentId());
+                if (consumeDelayMs > 0) {
+                    Thread.sleep(consumeDelayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
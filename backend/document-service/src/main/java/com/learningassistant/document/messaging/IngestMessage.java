@@ -0,0 +1,11 @@
+package com.learningassistant.document.messaging;
+
+/**
+ * Request for the RAG ingest service to index one uploaded document
+ */
+public record IngestMessage(String documentId,
+                            String userId,
+                            String documentUrl,
+                            String fileName,
+                            String correlationId) {
+}
@@ -0,0 +1,13 @@
+package com.learningassistant.document.messaging;
+
+/**
+ * Transport for document ingest messages, selected by ingest.transport. A send returns once
+ * the transport has accepted the message and throws if it was rejected, so that the outbox
+ * can retry it.
+ */
+public interface IngestMessageSender {
+    
+    void send(IngestMessage message);
+    
+    String getMode();
+}
@@ -0,0 +1,40 @@
+package com.learningassistant.document.messaging;
+
+import com.learningassistant.document.client.RagIngestClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Calls the RAG ingest service's HTTP endpoint directly. This is the default transport.
+ */
+@Component
+@ConditionalOnProperty(name = "ingest.transport", havingValue = "http", matchIfMissing = true)
+public class RagHttpIngestSender implements IngestMessageSender {
+    
+    private final RagIngestClient ragIngestClient;
+    
+    public RagHttpIngestSender(RagIngestClient ragIngestClient) {
+        this.ragIngestClient = ragIngestClient;
+    }
+    
+    @Override
+    public void send(IngestMessage message) {
+        Map<String, Object> response = ragIngestClient.triggerDocumentIngestion(
+            message.documentId(),
+            message.userId(),
+            message.documentUrl(),
+            message.fileName(),
+            message.correlationId()
+        );
+        if (response == null) {
+            throw new IllegalStateException("RAG ingest service rejected document " + message.documentId());
+        }
+    }
+    
+    @Override
+    public String getMode() {
+        return "http";
+    }
+}
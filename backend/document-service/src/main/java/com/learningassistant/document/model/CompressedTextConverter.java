@@ -0,0 +1,130 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores text as Deflate-compressed UTF-8. The first byte records the format, so short
+ * texts that do not shrink are kept as plain UTF-8 and other codecs can be added later
+ * without rewriting existing rows.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+    
+    static final byte FORMAT_PLAIN = 0;
+    static final byte FORMAT_DEFLATE = 1;
+    
+    // Format byte and the 4-byte decoded length that precede Deflate data
+    private static final int DEFLATE_HEADER_BYTES = 5;
+    
+    // Named in errors, since a bad value here means the stored row is damaged
+    private static final String COLUMN = "document_texts.compressed_content";
+    
+    // Below this there is too little repetition for Deflate to pay for its header
+    private static final int MIN_COMPRESS_BYTES = 256;
+    
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        if (text == null) {
+            return null;
+        }
+        return compress(text.getBytes(StandardCharsets.UTF_8), Deflater.BEST_SPEED);
+    }
+    
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        return new String(decompress(stored), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Encode UTF-8 bytes at the given Deflate level, falling back to plain storage when
+     * compression does not make them smaller.
+     */
+    public static byte[] compress(byte[] utf8, int level) {
+        if (utf8.length >= MIN_COMPRESS_BYTES) {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(utf8);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 3 + 16);
+                out.write(FORMAT_DEFLATE);
+                writeLength(out, utf8.length);
+                byte[] buffer = new byte[16 * 1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                if (out.size() < utf8.length) {
+                    return out.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] plain = new byte[utf8.length + 1];
+        plain[0] = FORMAT_PLAIN;
+        System.arraycopy(utf8, 0, plain, 1, utf8.length);
+        return plain;
+    }
+    
+    /**
+     * UTF-8 bytes of a value written by {@link #compress}.
+     * @throws IllegalStateException if the stored value is empty, truncated or corrupt
+     */
+    public static byte[] decompress(byte[] stored) {
+        if (stored.length == 0) {
+            throw new IllegalStateException(COLUMN + " holds an empty value");
+        }
+        switch (stored[0]) {
+            case FORMAT_PLAIN:
+                return Arrays.copyOfRange(stored, 1, stored.length);
+            case FORMAT_DEFLATE:
+                if (stored.length < DEFLATE_HEADER_BYTES) {
+                    throw new IllegalStateException(COLUMN + " holds a Deflate value of " + stored.length
+                        + " bytes, too short for its header");
+                }
+                int length = (stored[1] & 0xFF) << 24 | (stored[2] & 0xFF) << 16
+                        | (stored[3] & 0xFF) << 8 | (stored[4] & 0xFF);
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(stored, DEFLATE_HEADER_BYTES, stored.length - DEFLATE_HEADER_BYTES);
+                    // The decoded size is known up front, so inflate straight into the result
+                    byte[] utf8 = new byte[length];
+                    int read = 0;
+                    while (read < length) {
+                        int n = inflater.inflate(utf8, read, length - read);
+                        if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                            break;
+                        }
+                        read += n;
+                    }
+                    if (read != length) {
+                        throw new IllegalStateException(COLUMN + " holds truncated Deflate data");
+                    }
+                    return utf8;
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException(COLUMN + " holds corrupt Deflate data", e);
+                } finally {
+                    inflater.end();
+                }
+            default:
+                throw new IllegalStateException(COLUMN + " holds unknown format " + stored[0]);
+        }
+    }
+    
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+    }
+}
@@ -4,7 +4,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+    @Index(name = "idx_documents_content_hash", columnList = "contentHash"),
+    // Back the keyset-paginated listings on (uploadedAt, id)
+    @Index(name = "idx_documents_user_uploaded", columnList = "userId, uploadedAt, id"),
+    @Index(name = "idx_documents_status_uploaded", columnList = "processingStatus, uploadedAt, id")
+})
 public class Document {
     
     @Id
@@ -26,14 +31,14 @@ public class Document {
     
     private String storageLocation; // local or azure
     
+    @Column(length = 64)
+    private String contentHash; // SHA-256 of the stored blob, null for legacy uploads
+    
     @Enumerated(EnumType.STRING)
     private ProcessingStatus processingStatus;
     
     private String ragDocumentId; // Reference to RAG service document
     
-    @Column(columnDefinition = "TEXT")
-    private String extractedText;
-    
     @Column(nullable = false, updatable = false)
     private LocalDateTime uploadedAt;
     
@@ -112,6 +117,14 @@ public class Document {
         this.storageLocation = storageLocation;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public ProcessingStatus getProcessingStatus() {
         return processingStatus;
     }
@@ -128,14 +141,6 @@ public class Document {
         this.ragDocumentId = ragDocumentId;
     }
     
-    public String getExtractedText() {
-        return extractedText;
-    }
-    
-    public void setExtractedText(String extractedText) {
-        this.extractedText = extractedText;
-    }
-    
     public LocalDateTime getUploadedAt() {
         return uploadedAt;
     }
@@ -0,0 +1,59 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Extracted text of a document, kept out of the documents table so that metadata
+ * queries never read document bodies. The text is stored compressed.
+ */
+@Entity
+@Table(name = "document_texts")
+public class DocumentText {
+    
+    @Id
+    private String documentId;
+    
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "compressed_content", columnDefinition = "bytea")
+    private String content;
+    
+    @Column(nullable = false)
+    private LocalDateTime extractedAt;
+    
+    // Constructors
+    public DocumentText() {
+        this.extractedAt = LocalDateTime.now();
+    }
+    
+    public DocumentText(String documentId, String content) {
+        this.documentId = documentId;
+        this.content = content;
+        this.extractedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+    
+    public String getContent() {
+        return content;
+    }
+    
+    public void setContent(String content) {
+        this.content = content;
+    }
+    
+    public LocalDateTime getExtractedAt() {
+        return extractedAt;
+    }
+    
+    public void setExtractedAt(LocalDateTime extractedAt) {
+        this.extractedAt = extractedAt;
+    }
+}
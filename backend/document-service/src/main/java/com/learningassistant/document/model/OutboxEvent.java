@@ -0,0 +1,155 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A side effect recorded in the same transaction as the change that caused it and
+ * delivered later by the outbox dispatcher.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_status_next_attempt", columnList = "status, nextAttemptAt")
+})
+public class OutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxEventType eventType;
+    
+    @Column(nullable = false)
+    private String aggregateId; // Document the event belongs to
+    
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status;
+    
+    private int attempts;
+    
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(length = 1000)
+    private String lastError;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime dispatchedAt;
+    
+    // Bumped by every claim, so a dispatcher whose lease ran out cannot write back over
+    // the state of the dispatcher that reclaimed the event
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+    
+    // Constructors
+    public OutboxEvent() {
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+        this.status = OutboxStatus.PENDING;
+    }
+    
+    public OutboxEvent(OutboxEventType eventType, String aggregateId, String payload) {
+        this();
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public OutboxEventType getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(OutboxEventType eventType) {
+        this.eventType = eventType;
+    }
+    
+    public String getAggregateId() {
+        return aggregateId;
+    }
+    
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public OutboxStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(OutboxStatus status) {
+        this.status = status;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getDispatchedAt() {
+        return dispatchedAt;
+    }
+    
+    public void setDispatchedAt(LocalDateTime dispatchedAt) {
+        this.dispatchedAt = dispatchedAt;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,6 @@
+package com.learningassistant.document.model;
+
+public enum OutboxEventType {
+    RAG_INGEST,
+    DOCUMENT_PURGE
+}
@@ -0,0 +1,71 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A processing-status callback that arrived before its document row was committed.
+ * It is applied when the document is saved, or by the sweeper shortly after.
+ */
+@Entity
+@Table(name = "pending_status_updates", indexes = {
+    @Index(name = "idx_pending_status_updates_received_at", columnList = "receivedAt")
+})
+public class PendingStatusUpdate {
+    
+    @Id
+    private String documentId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ProcessingStatus status;
+    
+    private String ragDocumentId;
+    
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+    
+    // Constructors
+    public PendingStatusUpdate() {
+    }
+    
+    public PendingStatusUpdate(String documentId, ProcessingStatus status, String ragDocumentId) {
+        this.documentId = documentId;
+        this.status = status;
+        this.ragDocumentId = ragDocumentId;
+        this.receivedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+    
+    public ProcessingStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(ProcessingStatus status) {
+        this.status = status;
+    }
+    
+    public String getRagDocumentId() {
+        return ragDocumentId;
+    }
+    
+    public void setRagDocumentId(String ragDocumentId) {
+        this.ragDocumentId = ragDocumentId;
+    }
+    
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+    
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
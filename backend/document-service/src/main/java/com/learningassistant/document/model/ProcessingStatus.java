@@ -4,5 +4,7 @@ public enum ProcessingStatus {
     PENDING,
     PROCESSING,
     COMPLETED,
-    FAILED
+    FAILED,
+    // Tombstone: hidden from reads and purged in the background
+    DELETED
 }
@@ -0,0 +1,86 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A stored file identified by the SHA-256 of its content. Documents with identical
+ * content share one blob. When no document references it any more the row is kept as a
+ * tombstone, and the blob is removed by a later sweep unless it is referenced again.
+ */
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+    
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+    
+    @Column(nullable = false)
+    private String filePath;
+    
+    private Long fileSize;
+    
+    @Column(nullable = false)
+    private int referenceCount;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    // When the last reference was dropped; null while the blob is referenced
+    private LocalDateTime releasedAt;
+    
+    // Constructors
+    public StoredBlob() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public String getFilePath() {
+        return filePath;
+    }
+    
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+    
+    public Long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+    
+    public void setReferenceCount(int referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getReleasedAt() {
+        return releasedAt;
+    }
+    
+    public void setReleasedAt(LocalDateTime releasedAt) {
+        this.releasedAt = releasedAt;
+    }
+}
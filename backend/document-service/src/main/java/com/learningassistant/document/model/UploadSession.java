@@ -0,0 +1,200 @@
+package com.learningassistant.document.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+/**
+ * A resumable upload sent in fixed-size chunks. Received chunks are tracked as a bitmap;
+ * the row is locked while a chunk is recorded so that concurrent chunks are not lost.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_sessions_updated_at", columnList = "updatedAt")
+})
+public class UploadSession {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+    
+    @Column(nullable = false)
+    private String userId;
+    
+    @Column(nullable = false)
+    private String fileName;
+    
+    private String contentType;
+    
+    @Column(nullable = false)
+    private long totalSize;
+    
+    @Column(nullable = false)
+    private long chunkSize;
+    
+    @Column(nullable = false)
+    private int chunkCount;
+    
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] receivedChunks;
+    
+    @Column(nullable = false)
+    private String filePath;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UploadSessionStatus status;
+    
+    private String documentId;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public UploadSession() {
+    }
+    
+    public UploadSession(String userId, String fileName, String contentType, long totalSize, long chunkSize, String filePath) {
+        this.userId = userId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) Math.max(1, (totalSize + chunkSize - 1) / chunkSize);
+        this.receivedChunks = new byte[0];
+        this.filePath = filePath;
+        this.status = UploadSessionStatus.OPEN;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+    
+    /**
+     * Byte length of the given chunk; only the last one may be shorter than chunkSize
+     */
+    public long chunkLength(int index) {
+        return Math.min(chunkSize, totalSize - index * chunkSize);
+    }
+    
+    public boolean isChunkReceived(int index) {
+        return BitSet.valueOf(receivedChunks).get(index);
+    }
+    
+    public void markChunkReceived(int index) {
+        BitSet received = BitSet.valueOf(receivedChunks);
+        received.set(index);
+        this.receivedChunks = received.toByteArray();
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public int getReceivedChunkCount() {
+        return BitSet.valueOf(receivedChunks).cardinality();
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public long getTotalSize() {
+        return totalSize;
+    }
+    
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+    
+    public long getChunkSize() {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    public int getChunkCount() {
+        return chunkCount;
+    }
+    
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+    
+    public byte[] getReceivedChunks() {
+        return receivedChunks;
+    }
+    
+    public void setReceivedChunks(byte[] receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+    
+    public String getFilePath() {
+        return filePath;
+    }
+    
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+    
+    public UploadSessionStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(UploadSessionStatus status) {
+        this.status = status;
+    }
+    
+    public String getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package com.learningassistant.document.model;
+
+public enum UploadSessionStatus {
+    OPEN,
+    COMPLETING,
+    COMPLETED
+}
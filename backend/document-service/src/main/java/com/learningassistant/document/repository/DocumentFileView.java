@@ -0,0 +1,9 @@
+package com.learningassistant.document.repository;
+
+/**
+ * Narrow projection used when walking every document, so only the id and file path are selected
+ */
+public interface DocumentFileView {
+    String getId();
+    String getFilePath();
+}
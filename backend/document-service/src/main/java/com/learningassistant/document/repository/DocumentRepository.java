@@ -1,15 +1,43 @@
 package com.learningassistant.document.repository;
 
 import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.model.OutboxStatus;
 import com.learningassistant.document.model.ProcessingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<Document, String> {
-    List<Document> findByUserId(String userId);
-    List<Document> findByUserIdOrderByUploadedAtDesc(String userId);
+public interface DocumentRepository extends JpaRepository<Document, String>, JpaSpecificationExecutor<Document> {
+    List<Document> findByUserIdAndProcessingStatusNotOrderByUploadedAtDesc(String userId, ProcessingStatus status);
     List<Document> findByProcessingStatus(ProcessingStatus status);
+    List<DocumentStatusView> findByIdIn(Collection<String> ids);
+    boolean existsByIdAndProcessingStatusNot(String id, ProcessingStatus status);
+    
+    /**
+     * Next keyset page of documents after the given id, selecting only the file columns
+     */
+    List<DocumentFileView> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+    
+    /**
+     * Documents in the given status since before the cutoff that have no pending event of the
+     * given type, e.g. tombstones whose purge ran out of attempts
+     */
+    @Query("select d from Document d where d.processingStatus = :status and d.processedAt < :before " +
+           "and not exists (select e.id from OutboxEvent e where e.aggregateId = d.id " +
+           "and e.eventType = :eventType and e.status = :pending) order by d.processedAt")
+    List<Document> findWithoutPendingEvent(@Param("status") ProcessingStatus status,
+                                           @Param("before") LocalDateTime before,
+                                           @Param("eventType") OutboxEventType eventType,
+                                           @Param("pending") OutboxStatus pending,
+                                           Pageable pageable);
 }
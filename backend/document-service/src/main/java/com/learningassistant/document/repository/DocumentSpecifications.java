@@ -0,0 +1,52 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.ProcessingStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Query building blocks for filtered, keyset-paginated document listings
+ */
+public final class DocumentSpecifications {
+    
+    private DocumentSpecifications() {
+    }
+    
+    public static Specification<Document> ownedBy(String userId) {
+        return (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+    
+    public static Specification<Document> hasStatus(ProcessingStatus status) {
+        return (root, query, cb) -> status == null ? null : cb.equal(root.get("processingStatus"), status);
+    }
+    
+    public static Specification<Document> notDeleted() {
+        return (root, query, cb) -> cb.notEqual(root.get("processingStatus"), ProcessingStatus.DELETED);
+    }
+    
+    public static Specification<Document> hasFileType(String fileType) {
+        return (root, query, cb) -> fileType == null ? null : cb.equal(root.get("fileType"), fileType);
+    }
+    
+    /**
+     * Rows strictly after the (uploadedAt, id) position in the listing order. Null positions
+     * match everything, which is how the first page is requested.
+     */
+    public static Specification<Document> after(LocalDateTime uploadedAt, String id, boolean descending) {
+        return (root, query, cb) -> {
+            if (uploadedAt == null) {
+                return null;
+            }
+            if (descending) {
+                return cb.or(
+                    cb.lessThan(root.get("uploadedAt"), uploadedAt),
+                    cb.and(cb.equal(root.get("uploadedAt"), uploadedAt), cb.lessThan(root.get("id"), id)));
+            }
+            return cb.or(
+                cb.greaterThan(root.get("uploadedAt"), uploadedAt),
+                cb.and(cb.equal(root.get("uploadedAt"), uploadedAt), cb.greaterThan(root.get("id"), id)));
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.ProcessingStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Narrow projection used by status polling, so only the status columns are selected
+ */
+public interface DocumentStatusView {
+    String getId();
+    ProcessingStatus getProcessingStatus();
+    LocalDateTime getProcessedAt();
+}
@@ -0,0 +1,27 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.DocumentText;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, String> {
+    
+    /**
+     * Text already extracted for any document with the given content hash
+     */
+    @Query("select t from DocumentText t, Document d where t.documentId = d.id and d.contentHash = :hash")
+    List<DocumentText> findByContentHash(@Param("hash") String contentHash, Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("delete from DocumentText t where t.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") String documentId);
+}
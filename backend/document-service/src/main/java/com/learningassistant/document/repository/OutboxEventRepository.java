@@ -0,0 +1,36 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.OutboxEvent;
+import com.learningassistant.document.model.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, String> {
+    
+    /**
+     * Lock a batch of due events. Rows locked by another dispatcher instance are skipped,
+     * so several replicas can drain the outbox without handing out the same event twice.
+     */
+    @Query(value = "SELECT * FROM outbox_events WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    long countByStatus(OutboxStatus status);
+    
+    @Query("select min(e.createdAt) from OutboxEvent e where e.status = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") OutboxStatus status);
+    
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEvent e where e.status = :status and e.dispatchedAt < :before")
+    int deleteDispatchedBefore(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,28 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.PendingStatusUpdate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PendingStatusUpdateRepository extends JpaRepository<PendingStatusUpdate, String> {
+    
+    /**
+     * IDs of pending updates whose document has since been committed
+     */
+    @Query("select p.documentId from PendingStatusUpdate p where exists " +
+           "(select d.id from Document d where d.id = p.documentId)")
+    List<String> findApplicableDocumentIds();
+    
+    @Transactional
+    @Modifying
+    @Query("delete from PendingStatusUpdate p where p.receivedAt < :before")
+    int deleteReceivedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,70 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.StoredBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+    
+    /**
+     * Add a reference to a stored blob, reviving it if it was released but not yet swept.
+     * Returns 0 when the blob is unknown, in which case the content has to be stored again.
+     */
+    @Transactional
+    @Modifying
+    @Query("update StoredBlob b set b.referenceCount = b.referenceCount + 1, b.releasedAt = null " +
+           "where b.contentHash = :hash")
+    int acquire(@Param("hash") String contentHash);
+    
+    /**
+     * Register a freshly stored blob with one reference. Fails with a constraint violation
+     * if a concurrent upload of the same content registered it first.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO stored_blobs (content_hash, file_path, file_size, reference_count, created_at) " +
+                   "VALUES (:hash, :path, :size, 1, CURRENT_TIMESTAMP)",
+           nativeQuery = true)
+    int register(@Param("hash") String contentHash, @Param("path") String filePath, @Param("size") Long fileSize);
+    
+    boolean existsByFilePath(String filePath);
+    
+    @Transactional
+    @Modifying
+    @Query("update StoredBlob b set b.referenceCount = b.referenceCount - 1 " +
+           "where b.contentHash = :hash and b.referenceCount > 0")
+    int release(@Param("hash") String contentHash);
+    
+    /**
+     * Stamp the release time of a blob whose last reference was just dropped
+     */
+    @Transactional
+    @Modifying
+    @Query("update StoredBlob b set b.releasedAt = :now " +
+           "where b.contentHash = :hash and b.referenceCount <= 0 and b.releasedAt is null")
+    int markReleased(@Param("hash") String contentHash, @Param("now") LocalDateTime now);
+    
+    @Query("select b.contentHash from StoredBlob b where b.referenceCount <= 0 and b.releasedAt <= :before")
+    List<String> findReleasedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+    
+    /**
+     * Lock a released blob for removal. Holding the lock while the file is deleted makes
+     * a concurrent {@link #acquire} wait, and then find no row, instead of reviving a blob
+     * whose file is gone.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StoredBlob b where b.contentHash = :hash and b.referenceCount <= 0 and b.releasedAt <= :before")
+    Optional<StoredBlob> findReleasedForUpdate(@Param("hash") String contentHash, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,30 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.UploadSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    
+    /**
+     * Load a session and hold its row lock until the transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UploadSession s where s.id = :id")
+    Optional<UploadSession> findByIdForUpdate(@Param("id") String id);
+    
+    /**
+     * Sessions not touched since the given time, oldest first
+     */
+    List<UploadSession> findByUpdatedAtBeforeOrderByUpdatedAtAsc(LocalDateTime before, Pageable pageable);
+}
@@ -0,0 +1,29 @@
+package com.learningassistant.document.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs cache maintenance that has to hold once the caller's transaction is visible
+ */
+final class AfterCommit {
+    
+    private AfterCommit() {
+    }
+    
+    /**
+     * Run the action now and, inside a transaction, again once it commits. Readers that
+     * still saw the old rows before the commit cannot leave a stale entry behind.
+     */
+    static void nowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
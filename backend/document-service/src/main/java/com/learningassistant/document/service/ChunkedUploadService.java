@@ -0,0 +1,288 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.admission.AdaptiveLimiter;
+import com.learningassistant.document.admission.UploadAdmission;
+import com.learningassistant.document.dto.DocumentResponse;
+import com.learningassistant.document.dto.UploadSessionRequest;
+import com.learningassistant.document.dto.UploadSessionResponse;
+import com.learningassistant.document.model.UploadSession;
+import com.learningassistant.document.model.UploadSessionStatus;
+import com.learningassistant.document.repository.UploadSessionRepository;
+import com.learningassistant.document.storage.ContentAddressedStorage;
+import com.learningassistant.document.storage.StorageService;
+import com.learningassistant.document.storage.StoredContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Resumable uploads: a client initiates a session, sends the file in fixed-size chunks in
+ * any order, retrying or resuming as needed, and completes it. Chunks are written straight
+ * to their place in storage, so completing assembles nothing; it publishes the file, hands
+ * it to the content-addressed store, and saves its document. An upload whose content is
+ * already stored points its document at the existing blob and its own file is deleted.
+ */
+@Service
+public class ChunkedUploadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+    
+    private final UploadSessionRepository uploadSessionRepository;
+    private final StorageService storageService;
+    private final ContentAddressedStorage contentAddressedStorage;
+    private final DocumentService documentService;
+    private final UploadAdmission uploadAdmission;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${chunked-upload.chunk-size-bytes:8388608}")
+    private long chunkSize;
+    
+    @Value("${chunked-upload.max-file-size-bytes:524288000}")
+    private long maxFileSize;
+    
+    public ChunkedUploadService(UploadSessionRepository uploadSessionRepository,
+                                StorageService storageService,
+                                ContentAddressedStorage contentAddressedStorage,
+                                DocumentService documentService,
+                                UploadAdmission uploadAdmission,
+                                PlatformTransactionManager transactionManager) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.storageService = storageService;
+        this.contentAddressedStorage = contentAddressedStorage;
+        this.documentService = documentService;
+        this.uploadAdmission = uploadAdmission;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    public UploadSessionResponse initiate(UploadSessionRequest request) {
+        if (request.getUserId() == null || request.getUserId().isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (request.getFileName() == null || request.getFileName().isBlank()) {
+            throw new IllegalArgumentException("fileName is required");
+        }
+        if (request.getTotalSize() == null || request.getTotalSize() <= 0 || request.getTotalSize() > maxFileSize) {
+            throw new IllegalArgumentException("totalSize must be between 1 and " + maxFileSize + " bytes");
+        }
+        
+        UploadSession session = uploadSessionRepository.save(new UploadSession(
+            request.getUserId(), request.getFileName(), request.getContentType(), request.getTotalSize(), chunkSize,
+            storageService.chunkedUploadPath(request.getUserId(), request.getFileName())));
+        logger.info("Started chunked upload {} of {} ({} bytes in {} chunks) for user: {}", session.getId(),
+            session.getFileName(), session.getTotalSize(), session.getChunkCount(), session.getUserId());
+        return toResponse(session);
+    }
+    
+    public Optional<UploadSessionResponse> getSession(String uploadId) {
+        return uploadSessionRepository.findById(uploadId).map(this::toResponse);
+    }
+    
+    /**
+     * Store one chunk. Sending a chunk again overwrites it, so clients may retry freely.
+     *
+     * @throws NoSuchElementException if the upload does not exist
+     * @throws IllegalStateException if the upload is no longer open
+     */
+    public UploadSessionResponse putChunk(String uploadId, int index, InputStream content, long length) throws IOException {
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+            .orElseThrow(() -> new NoSuchElementException("Upload not found: " + uploadId));
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new IllegalStateException("Upload " + uploadId + " is " + session.getStatus());
+        }
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        long expectedLength = session.chunkLength(index);
+        if (length != expectedLength) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expectedLength + " bytes, got " + length);
+        }
+        
+        try (AdaptiveLimiter.Permit permit = uploadAdmission.storage().acquire(expectedLength)) {
+            storageService.writeChunk(session.getFilePath(), uploadId, index, index * session.getChunkSize(),
+                content, expectedLength);
+        }
+        
+        UploadSession updated = transactionTemplate.execute(status -> {
+            UploadSession locked = lockOpenSession(uploadId);
+            locked.markChunkReceived(index);
+            return locked;
+        });
+        logger.debug("Stored chunk {}/{} of upload {}", index + 1, updated.getChunkCount(), uploadId);
+        return toResponse(updated);
+    }
+    
+    /**
+     * Publish the uploaded file and save its document. Completing an upload that is
+     * already complete returns it again.
+     *
+     * @throws IllegalStateException if chunks are missing or another request is completing it
+     */
+    public UploadSessionResponse complete(String uploadId) throws IOException {
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession locked = uploadSessionRepository.findByIdForUpdate(uploadId)
+                .orElseThrow(() -> new NoSuchElementException("Upload not found: " + uploadId));
+            if (locked.getStatus() == UploadSessionStatus.COMPLETED) {
+                return locked;
+            }
+            if (locked.getStatus() == UploadSessionStatus.COMPLETING) {
+                throw new IllegalStateException("Upload " + uploadId + " is already being completed");
+            }
+            int missing = locked.getChunkCount() - locked.getReceivedChunkCount();
+            if (missing > 0) {
+                throw new IllegalStateException("Upload " + uploadId + " is missing " + missing + " chunks");
+            }
+            locked.setStatus(UploadSessionStatus.COMPLETING);
+            locked.setUpdatedAt(LocalDateTime.now());
+            return locked;
+        });
+        if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+            return toResponse(session);
+        }
+        
+        StoredContent stored = null;
+        try {
+            try (AdaptiveLimiter.Permit permit = uploadAdmission.storage().acquire(session.getTotalSize())) {
+                storageService.completeChunkedUpload(session.getFilePath(), uploadId, session.getChunkCount(),
+                    session.getContentType());
+                stored = contentAddressedStorage.adopt(session.getFilePath(), session.getTotalSize());
+            }
+            // The document joins this transaction, so it commits together with the session
+            // becoming COMPLETED: a session still COMPLETING never has a saved document
+            StoredContent content = stored;
+            UploadSession completed = transactionTemplate.execute(status -> {
+                UploadSession locked = uploadSessionRepository.findByIdForUpdate(uploadId).orElseThrow();
+                DocumentResponse document = documentService.registerStoredDocument(locked.getUserId(),
+                    locked.getFileName(), locked.getContentType(), locked.getTotalSize(), content);
+                locked.setStatus(UploadSessionStatus.COMPLETED);
+                locked.setDocumentId(document.getDocumentId());
+                locked.setUpdatedAt(LocalDateTime.now());
+                return locked;
+            });
+            if (content.deduplicated()) {
+                deleteDuplicate(session.getFilePath(), uploadId);
+            }
+            logger.info("Completed chunked upload {} as document {}", uploadId, completed.getDocumentId());
+            return toResponse(completed);
+        } catch (IOException | RuntimeException e) {
+            // Let the client retry completing; publishing is safe to repeat. A session that
+            // did complete, say when only the commit acknowledgement was lost, stays complete
+            // and its document keeps the blob reference.
+            Boolean reopened = transactionTemplate.execute(status -> uploadSessionRepository.findByIdForUpdate(uploadId)
+                .filter(locked -> locked.getStatus() == UploadSessionStatus.COMPLETING)
+                .map(locked -> {
+                    locked.setStatus(UploadSessionStatus.OPEN);
+                    return true;
+                })
+                .orElse(false));
+            if (Boolean.TRUE.equals(reopened) && stored != null && stored.contentHash() != null) {
+                // A retried completion takes the reference again
+                contentAddressedStorage.release(stored.contentHash(), stored.filePath());
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Cancel an upload that has not completed and discard its chunks
+     */
+    public void abort(String uploadId) {
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession locked = lockOpenSession(uploadId);
+            uploadSessionRepository.delete(locked);
+            return locked;
+        });
+        storageService.abortChunkedUpload(session.getFilePath(), uploadId);
+        logger.info("Aborted chunked upload {}", uploadId);
+    }
+    
+    /**
+     * Remove sessions untouched since the given time, discarding the chunks of those that
+     * never completed. Returns the number of sessions removed.
+     */
+    public int deleteInactiveSince(LocalDateTime before, int limit) {
+        List<UploadSession> stale = uploadSessionRepository.findByUpdatedAtBeforeOrderByUpdatedAtAsc(
+            before, PageRequest.of(0, limit));
+        int deleted = 0;
+        for (UploadSession candidate : stale) {
+            try {
+                // Re-read under the row lock; a completion may have moved the session on
+                Boolean removed = transactionTemplate.execute(tx -> uploadSessionRepository
+                    .findByIdForUpdate(candidate.getId())
+                    .filter(session -> session.getUpdatedAt().isBefore(before))
+                    .map(this::discard)
+                    .orElse(false));
+                if (Boolean.TRUE.equals(removed)) {
+                    deleted++;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to discard upload {}: {}", candidate.getId(), e.getMessage());
+            }
+        }
+        return deleted;
+    }
+    
+    private boolean discard(UploadSession session) {
+        UploadSessionStatus status = session.getStatus();
+        if (status != UploadSessionStatus.COMPLETED) {
+            storageService.abortChunkedUpload(session.getFilePath(), session.getId());
+        }
+        if (status == UploadSessionStatus.COMPLETING && !contentAddressedStorage.isRegistered(session.getFilePath())) {
+            // Completion died after publishing the file but before its document committed,
+            // which happens in the same transaction as the session becoming COMPLETED. A
+            // file it already registered as a blob is left to the blob's references: a
+            // leaked reference keeps the file, where deleting it would break the blob.
+            storageService.deleteFile(session.getFilePath());
+        }
+        uploadSessionRepository.delete(session);
+        if (status != UploadSessionStatus.COMPLETED) {
+            logger.info("Discarded abandoned upload {} ({} of {} chunks received)",
+                session.getId(), session.getReceivedChunkCount(), session.getChunkCount());
+        }
+        return true;
+    }
+    
+    /**
+     * Delete an upload's own copy once its document points at identical content stored before
+     */
+    private void deleteDuplicate(String filePath, String uploadId) {
+        try {
+            storageService.deleteFile(filePath);
+            logger.info("Upload {} duplicates a stored blob, deleted its copy", uploadId);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete duplicate copy {} of upload {}: {}", filePath, uploadId, e.getMessage());
+        }
+    }
+    
+    private UploadSession lockOpenSession(String uploadId) {
+        UploadSession locked = uploadSessionRepository.findByIdForUpdate(uploadId)
+            .orElseThrow(() -> new NoSuchElementException("Upload not found: " + uploadId));
+        if (locked.getStatus() != UploadSessionStatus.OPEN) {
+            throw new IllegalStateException("Upload " + uploadId + " is " + locked.getStatus());
+        }
+        return locked;
+    }
+    
+    private UploadSessionResponse toResponse(UploadSession session) {
+        List<Integer> missingChunks = new ArrayList<>();
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            if (!session.isChunkReceived(i)) {
+                missingChunks.add(i);
+            }
+        }
+        return new UploadSessionResponse(session.getId(), session.getFileName(), session.getTotalSize(),
+            session.getChunkSize(), session.getChunkCount(), session.getStatus(), missingChunks,
+            session.getDocumentId());
+    }
+}
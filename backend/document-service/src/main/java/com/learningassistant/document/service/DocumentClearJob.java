@@ -0,0 +1,209 @@
+package com.learningassistant.document.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learningassistant.document.dto.ClearJobStatus;
+import com.learningassistant.document.repository.DocumentFileView;
+import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.DocumentTextRepository;
+import com.learningassistant.document.repository.PendingStatusUpdateRepository;
+import com.learningassistant.document.storage.ContentAddressedStorage;
+import com.learningassistant.document.storage.StorageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes every document in the background. The table is walked in id order one keyset page
+ * at a time, so memory stays bounded however many documents there are: each page's files are
+ * deleted in parallel, then its rows are removed with bulk DELETE statements. Only one job
+ * runs at a time, and finished jobs stay queryable for a while.
+ */
+@Component
+public class DocumentClearJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentClearJob.class);
+    
+    private final DocumentRepository documentRepository;
+    private final DocumentTextRepository documentTextRepository;
+    private final PendingStatusUpdateRepository pendingStatusUpdateRepository;
+    private final StorageService storageService;
+    private final ContentAddressedStorage contentAddressedStorage;
+    private final DocumentTextCache documentTextCache;
+    private final DocumentStatusCache documentStatusCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService storageExecutor;
+    private final Cache<String, ClearJob> jobs;
+    
+    private ClearJob runningJob;
+    
+    public DocumentClearJob(DocumentRepository documentRepository,
+                            DocumentTextRepository documentTextRepository,
+                            PendingStatusUpdateRepository pendingStatusUpdateRepository,
+                            StorageService storageService,
+                            ContentAddressedStorage contentAddressedStorage,
+                            DocumentTextCache documentTextCache,
+                            DocumentStatusCache documentStatusCache,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${clear-all.page-size:500}") int pageSize,
+                            @Value("${clear-all.storage-concurrency:8}") int storageConcurrency,
+                            @Value("${clear-all.job-retention:PT1H}") Duration jobRetention) {
+        this.documentRepository = documentRepository;
+        this.documentTextRepository = documentTextRepository;
+        this.pendingStatusUpdateRepository = pendingStatusUpdateRepository;
+        this.storageService = storageService;
+        this.contentAddressedStorage = contentAddressedStorage;
+        this.documentTextCache = documentTextCache;
+        this.documentStatusCache = documentStatusCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pageSize = pageSize;
+        this.jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clear-all");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.storageExecutor = Executors.newFixedThreadPool(storageConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "clear-all-storage-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobRetention)
+                .build();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        storageExecutor.shutdownNow();
+    }
+    
+    /**
+     * Start clearing all documents, or return the job already doing so
+     */
+    public synchronized ClearJobStatus start() {
+        if (runningJob != null) {
+            return runningJob.toStatus();
+        }
+        ClearJob job = new ClearJob(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        runningJob = job;
+        jobExecutor.execute(() -> run(job));
+        return job.toStatus();
+    }
+    
+    public Optional<ClearJobStatus> getStatus(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(ClearJob::toStatus);
+    }
+    
+    private void run(ClearJob job) {
+        logger.info("Clear job {} started", job.id);
+        try {
+            String lastId = "";
+            List<DocumentFileView> page;
+            do {
+                page = documentRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, pageSize));
+                if (!page.isEmpty()) {
+                    clearPage(job, page);
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == pageSize);
+            
+            // Status updates that arrived for documents never committed have no page to go with
+            transactionTemplate.executeWithoutResult(status -> {
+                pendingStatusUpdateRepository.deleteAllInBatch();
+                contentAddressedStorage.clear();
+            });
+            documentTextCache.invalidateAll();
+            documentStatusCache.invalidateAll();
+            job.finish(ClearJobStatus.State.COMPLETED, null);
+            logger.info("Clear job {} removed {} documents ({} file deletions failed)",
+                job.id, job.documentsDeleted.get(), job.fileFailures.get());
+        } catch (Exception e) {
+            job.finish(ClearJobStatus.State.FAILED, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            logger.error("Clear job {} failed after {} documents: {}", job.id, job.documentsDeleted.get(), e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                runningJob = null;
+            }
+        }
+    }
+    
+    private void clearPage(ClearJob job, List<DocumentFileView> page) {
+        // Duplicate uploads share a stored file, so delete each path once
+        CompletableFuture<?>[] deletions = page.stream()
+                .map(DocumentFileView::getFilePath)
+                .filter(path -> path != null)
+                .distinct()
+                .map(path -> CompletableFuture.runAsync(() -> deleteFile(job, path), storageExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(deletions).join();
+        
+        List<String> ids = page.stream().map(DocumentFileView::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            documentTextRepository.deleteAllByIdInBatch(ids);
+            pendingStatusUpdateRepository.deleteAllByIdInBatch(ids);
+            documentRepository.deleteAllByIdInBatch(ids);
+        });
+        for (String id : ids) {
+            documentTextCache.invalidate(id);
+            documentStatusCache.invalidate(id);
+        }
+        job.documentsDeleted.addAndGet(ids.size());
+    }
+    
+    private void deleteFile(ClearJob job, String path) {
+        try {
+            storageService.deleteFile(path);
+            job.filesDeleted.incrementAndGet();
+        } catch (Exception e) {
+            job.fileFailures.incrementAndGet();
+            logger.warn("Clear job {} failed to delete file {}: {}", job.id, path, e.getMessage());
+        }
+    }
+    
+    private static class ClearJob {
+        final String id;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final AtomicLong documentsDeleted = new AtomicLong();
+        final AtomicLong filesDeleted = new AtomicLong();
+        final AtomicLong fileFailures = new AtomicLong();
+        volatile ClearJobStatus.State state = ClearJobStatus.State.RUNNING;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+        
+        ClearJob(String id) {
+            this.id = id;
+        }
+        
+        void finish(ClearJobStatus.State state, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.state = state;
+        }
+        
+        ClearJobStatus toStatus() {
+            return new ClearJobStatus(id, state, documentsDeleted.get(), filesDeleted.get(), fileFailures.get(),
+                startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.learningassistant.document.service;
+
+import java.nio.file.Path;
+
+/**
+ * Where and how to serve the original file of a document. When redirectUrl is set the
+ * client is sent there and localFile is null; otherwise the file is served from localFile.
+ */
+public record DocumentDownload(String fileName,
+                               String contentType,
+                               String contentHash,
+                               String redirectUrl,
+                               Path localFile) {
+}
@@ -0,0 +1,340 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.dto.DocumentStatusResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-process fan-out of document status changes to Server-Sent Events subscribers.
+ * <p>
+ * Each subscriber has a bounded buffer drained by a small sender pool, so a slow client never
+ * blocks the publisher; a client whose buffer overflows is disconnected and catches up on
+ * reconnect. Recent events are kept per user for a short window and replayed from the
+ * {@code Last-Event-ID} the browser sends when it reconnects.
+ */
+@Component
+public class DocumentEventHub {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentEventHub.class);
+    
+    static final String STATUS_EVENT = "document-status";
+    static final String RESYNC_EVENT = "resync";
+    
+    private final long emitterTimeoutMs;
+    private final int bufferSize;
+    private final int replaySize;
+    private final long replayWindowMs;
+    private final long reconnectMs;
+    
+    // Event IDs are "<bootId>-<sequence>", so IDs from before a restart are recognised as unreplayable
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, ReplayChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    
+    private final ExecutorService senders;
+    private final Counter publishedCounter;
+    private final Counter overflowCounter;
+    
+    public DocumentEventHub(@Value("${document-events.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                            @Value("${document-events.buffer-size:128}") int bufferSize,
+                            @Value("${document-events.replay-size:100}") int replaySize,
+                            @Value("${document-events.replay-window-ms:300000}") long replayWindowMs,
+                            @Value("${document-events.reconnect-ms:3000}") long reconnectMs,
+                            @Value("${document-events.sender-threads:4}") int senderThreads,
+                            MeterRegistry meterRegistry) {
+        // A full replay has to fit in the buffer, or a reconnecting client overflows it every time
+        if (replaySize > bufferSize) {
+            throw new IllegalArgumentException("document-events.replay-size (" + replaySize
+                + ") must not exceed document-events.buffer-size (" + bufferSize + ")");
+        }
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.replayWindowMs = replayWindowMs;
+        this.reconnectMs = reconnectMs;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "document-events-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        Gauge.builder("document.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open document status event streams")
+                .register(meterRegistry);
+        publishedCounter = meterRegistry.counter("document.events.published");
+        overflowCounter = meterRegistry.counter("document.events.overflow");
+    }
+    
+    /**
+     * Open a stream for the user, first replaying anything newer than lastEventId that is
+     * still inside the replay window.
+     */
+    public SseEmitter subscribe(String userId, String lastEventId) {
+        SseEmitter emitter = newEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(subscriber::detach);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        
+        withChannel(userId, channel -> {
+            subscribers.compute(userId, (key, userSubscribers) -> {
+                Set<Subscriber> result = userSubscribers != null ? userSubscribers : ConcurrentHashMap.newKeySet();
+                result.add(subscriber);
+                return result;
+            });
+            subscriberCount.incrementAndGet();
+            subscriber.offer(SseEmitter.event().reconnectTime(reconnectMs).comment("connected"));
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                replayAfter(subscriber, channel, lastEventId);
+            }
+        });
+        return emitter;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusChangedEvent event) {
+        if (event.userId() == null) {
+            return;
+        }
+        StoredEvent stored = new StoredEvent(
+                sequence.incrementAndGet(),
+                System.currentTimeMillis(),
+                new DocumentStatusResponse(event.documentId(), event.processingStatus(), event.processedAt()));
+        
+        withChannel(event.userId(), channel -> {
+            channel.events.addLast(stored);
+            channel.trim(stored.timestamp());
+            Set<Subscriber> targets = subscribers.get(event.userId());
+            if (targets != null) {
+                for (Subscriber subscriber : targets) {
+                    subscriber.offer(toSse(stored));
+                }
+            }
+        });
+        publishedCounter.increment();
+    }
+    
+    /**
+     * Keep idle connections open through proxies, and drop replay windows that have aged out
+     */
+    @Scheduled(fixedDelayString = "${document-events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.offer(SseEmitter.event().comment("keepalive"));
+            }
+        }
+        
+        long now = System.currentTimeMillis();
+        channels.forEach((userId, channel) -> {
+            synchronized (channel) {
+                channel.trim(now);
+                if (channel.events.isEmpty()) {
+                    channels.remove(userId, channel);
+                }
+            }
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::close));
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(5, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            senders.shutdownNow();
+        }
+    }
+    
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+    
+    /**
+     * Run the action holding the user's channel lock. Publish and subscribe both go through
+     * here, so a subscriber sees each event exactly once, either replayed or live.
+     */
+    private void withChannel(String userId, Consumer<ReplayChannel> action) {
+        while (true) {
+            ReplayChannel channel = channels.computeIfAbsent(userId, key -> new ReplayChannel(sequence.get()));
+            synchronized (channel) {
+                // The heartbeat may have retired this channel after we looked it up
+                if (channels.get(userId) == channel) {
+                    action.accept(channel);
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void replayAfter(Subscriber subscriber, ReplayChannel channel, String lastEventId) {
+        long lastSequence = parseSequence(lastEventId);
+        channel.trim(System.currentTimeMillis());
+        
+        // An ID from another run, or one older than the window, means events may have been missed
+        if (lastSequence < 0 || lastSequence < channel.trimmedThrough) {
+            subscriber.offer(SseEmitter.event().name(RESYNC_EVENT).data("{}", MediaType.APPLICATION_JSON));
+            return;
+        }
+        List<StoredEvent> pending = channel.events.stream()
+                .filter(stored -> stored.sequence() > lastSequence)
+                .toList();
+        // More than the buffer can take would disconnect the client before it catches up
+        if (pending.size() > subscriber.remainingCapacity()) {
+            subscriber.offer(SseEmitter.event().name(RESYNC_EVENT).data("{}", MediaType.APPLICATION_JSON));
+            return;
+        }
+        for (StoredEvent stored : pending) {
+            subscriber.offer(toSse(stored));
+        }
+    }
+    
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator <= 0 || !eventId.substring(0, separator).equals(bootId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private SseEmitter.SseEventBuilder toSse(StoredEvent stored) {
+        return SseEmitter.event()
+                .id(bootId + "-" + stored.sequence())
+                .name(STATUS_EVENT)
+                .data(stored.status(), MediaType.APPLICATION_JSON);
+    }
+    
+    private record StoredEvent(long sequence, long timestamp, DocumentStatusResponse status) {
+    }
+    
+    /**
+     * Recent events for one user. Guarded by its own monitor.
+     */
+    private final class ReplayChannel {
+        
+        private final ArrayDeque<StoredEvent> events = new ArrayDeque<>();
+        // Highest sequence that may have been missed: evicted events, or anything before this channel existed
+        private long trimmedThrough;
+        
+        ReplayChannel(long createdAt) {
+            this.trimmedThrough = createdAt;
+        }
+        
+        void trim(long now) {
+            while (!events.isEmpty()
+                    && (events.size() > replaySize || now - events.peekFirst().timestamp() > replayWindowMs)) {
+                trimmedThrough = events.removeFirst().sequence();
+            }
+        }
+    }
+    
+    private final class Subscriber {
+        
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        Subscriber(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+        
+        int remainingCapacity() {
+            return buffer.remainingCapacity();
+        }
+        
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Too slow to keep up; the client reconnects and replays from its last event ID
+                overflowCounter.increment();
+                logger.debug("Event buffer full for a subscriber of user {}, disconnecting", userId);
+                close();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (Exception e) {
+                logger.debug("Event stream for user {} closed: {}", userId, e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+                if (!closed.get() && !buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                    senders.execute(this::drain);
+                }
+            }
+        }
+        
+        void close() {
+            if (detach()) {
+                emitter.complete();
+            }
+        }
+        
+        boolean detach() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            buffer.clear();
+            subscribers.computeIfPresent(userId, (key, userSubscribers) -> {
+                userSubscribers.remove(this);
+                return userSubscribers.isEmpty() ? null : userSubscribers;
+            });
+            subscriberCount.decrementAndGet();
+            return true;
+        }
+    }
+}
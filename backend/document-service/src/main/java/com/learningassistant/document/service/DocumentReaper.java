@@ -0,0 +1,127 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.client.RagIngestClient;
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.model.OutboxStatus;
+import com.learningassistant.document.model.ProcessingStatus;
+import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.DocumentTextRepository;
+import com.learningassistant.document.storage.ContentAddressedStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Removes tombstoned documents. Runs from the outbox dispatcher, which claims purge events
+ * in batches and retries failures with backoff, so every step here is safe to repeat.
+ * Tombstones whose purge ran out of attempts are queued again by a periodic sweep.
+ */
+@Component
+public class DocumentReaper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentReaper.class);
+    
+    private final DocumentRepository documentRepository;
+    private final DocumentTextRepository documentTextRepository;
+    private final ContentAddressedStorage contentAddressedStorage;
+    private final RagIngestClient ragIngestClient;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${document-reaper.retry-stranded-after:PT6H}")
+    private Duration retryStrandedAfter;
+    
+    @Value("${document-reaper.sweep-batch-size:100}")
+    private int sweepBatchSize;
+    
+    public DocumentReaper(DocumentRepository documentRepository,
+                          DocumentTextRepository documentTextRepository,
+                          ContentAddressedStorage contentAddressedStorage,
+                          RagIngestClient ragIngestClient,
+                          OutboxService outboxService,
+                          PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.documentTextRepository = documentTextRepository;
+        this.contentAddressedStorage = contentAddressedStorage;
+        this.ragIngestClient = ragIngestClient;
+        this.outboxService = outboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Delete the RAG entry, rows and stored file of a tombstoned document.
+     * @throws IllegalStateException if the RAG service did not delete the entry, so the
+     *         purge is retried; the tombstone stays until then
+     */
+    public void purge(String documentId) {
+        Optional<Document> documentOpt = documentRepository.findById(documentId)
+                .filter(document -> document.getProcessingStatus() == ProcessingStatus.DELETED);
+        if (documentOpt.isEmpty()) {
+            logger.debug("Document {} already purged", documentId);
+            return;
+        }
+        Document document = documentOpt.get();
+        
+        // Every document has its own RAG entry, even when it shares a stored blob
+        String ragDocumentId = document.getRagDocumentId();
+        if (ragDocumentId != null && !ragIngestClient.deleteDocument(ragDocumentId, document.getUserId())) {
+            throw new IllegalStateException("RAG service did not delete document " + ragDocumentId);
+        }
+        
+        boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            documentTextRepository.deleteByDocumentId(documentId);
+            return documentRepository.findById(documentId)
+                    .filter(current -> current.getProcessingStatus() == ProcessingStatus.DELETED)
+                    .map(current -> {
+                        documentRepository.delete(current);
+                        return true;
+                    })
+                    .orElse(false);
+        }));
+        
+        // Only after the row is gone: a failed release leaks a blob rather than losing one
+        if (deleted) {
+            contentAddressedStorage.release(document.getContentHash(), document.getFilePath());
+            logger.info("Purged deleted document {}", documentId);
+        }
+    }
+    
+    /**
+     * Queue another purge for tombstones left without one, so a RAG or storage outage that
+     * outlasts the outbox retries does not leave their rows and blobs behind for good
+     */
+    @Scheduled(fixedDelayString = "${document-reaper.sweep-interval-ms:3600000}")
+    public void requeueStranded() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minus(retryStrandedAfter);
+            int requeued = 0;
+            List<Document> stranded;
+            do {
+                stranded = transactionTemplate.execute(status -> {
+                    List<Document> batch = documentRepository.findWithoutPendingEvent(
+                        ProcessingStatus.DELETED, before, OutboxEventType.DOCUMENT_PURGE, OutboxStatus.PENDING,
+                        PageRequest.of(0, sweepBatchSize));
+                    batch.forEach(outboxService::enqueuePurge);
+                    return batch;
+                });
+                requeued += stranded.size();
+            } while (stranded.size() == sweepBatchSize);
+            if (requeued > 0) {
+                logger.warn("Queued another purge for {} deleted documents", requeued);
+            }
+        } catch (Exception e) {
+            logger.error("Stranded tombstone sweep failed: {}", e.getMessage(), e);
+        }
+    }
+}
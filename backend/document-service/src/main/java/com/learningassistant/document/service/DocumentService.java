@@ -1,15 +1,33 @@
 package com.learningassistant.document.service;
 
-import com.learningassistant.document.client.RagIngestClient;
+import com.learningassistant.document.admission.AdaptiveLimiter;
+import com.learningassistant.document.admission.UploadAdmission;
+import com.learningassistant.document.dto.BatchUploadResult;
+import com.learningassistant.document.dto.DocumentPage;
 import com.learningassistant.document.dto.DocumentResponse;
+import com.learningassistant.document.dto.DocumentStatusResponse;
+import com.learningassistant.document.dto.DocumentTextPage;
+import com.learningassistant.document.exception.OverloadedException;
 import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.DocumentText;
+import com.learningassistant.document.model.PendingStatusUpdate;
 import com.learningassistant.document.model.ProcessingStatus;
 import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.DocumentSpecifications;
+import com.learningassistant.document.repository.DocumentStatusView;
+import com.learningassistant.document.repository.DocumentTextRepository;
+import com.learningassistant.document.repository.PendingStatusUpdateRepository;
+import com.learningassistant.document.storage.ContentAddressedStorage;
 import com.learningassistant.document.storage.StorageService;
+import com.learningassistant.document.storage.StoredContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -18,15 +36,28 @@ import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import jakarta.annotation.PreDestroy;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,24 +66,43 @@ public class DocumentService {
     private static final Logger logger = LoggerFactory.getLogger(DocumentService.class);
     
     private final DocumentRepository documentRepository;
+    private final DocumentTextRepository documentTextRepository;
+    private final PendingStatusUpdateRepository pendingStatusUpdateRepository;
     private final StorageService storageService;
-    private final RagIngestClient ragIngestClient;
-    private final ServiceBusService serviceBusService;
-    
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final ContentAddressedStorage contentAddressedStorage;
+    private final OutboxService outboxService;
+    private final DocumentTextCache documentTextCache;
+    private final DocumentStatusCache documentStatusCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UploadAdmission uploadAdmission;
     
     @Autowired
     private PlatformTransactionManager transactionManager;
     
+    // Storage writes of batch uploads, one virtual thread per file; the storage stage's
+    // limiter bounds how many of them write at once
+    private final ExecutorService batchStorageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
     public DocumentService(DocumentRepository documentRepository,
+                          DocumentTextRepository documentTextRepository,
+                          PendingStatusUpdateRepository pendingStatusUpdateRepository,
                           StorageService storageService,
-                          RagIngestClient ragIngestClient,
-                          ServiceBusService serviceBusService) {
+                          ContentAddressedStorage contentAddressedStorage,
+                          OutboxService outboxService,
+                          DocumentTextCache documentTextCache,
+                          DocumentStatusCache documentStatusCache,
+                          ApplicationEventPublisher eventPublisher,
+                          UploadAdmission uploadAdmission) {
         this.documentRepository = documentRepository;
+        this.documentTextRepository = documentTextRepository;
+        this.pendingStatusUpdateRepository = pendingStatusUpdateRepository;
         this.storageService = storageService;
-        this.ragIngestClient = ragIngestClient;
-        this.serviceBusService = serviceBusService;
+        this.contentAddressedStorage = contentAddressedStorage;
+        this.outboxService = outboxService;
+        this.documentTextCache = documentTextCache;
+        this.documentStatusCache = documentStatusCache;
+        this.eventPublisher = eventPublisher;
+        this.uploadAdmission = uploadAdmission;
         
         // Initialize storage
         storageService.init();
@@ -74,78 +124,89 @@ public class DocumentService {
             
             logger.info("[UPLOAD] Uploading document: {} for user: {} | CorrelationId: {}", fileName, userId, correlationId);
             
-            // Store file
-            String filePath = storageService.storeFile(file, userId);
+            // Store file, reusing an identical blob if one is already stored
+            StoredContent storedContent;
+            try (AdaptiveLimiter.Permit permit = uploadAdmission.storage().acquire(file.getSize())) {
+                storedContent = contentAddressedStorage.store(file, userId);
+            }
+            String filePath = storedContent.filePath();
             
             // Generate and normalize document ID upfront
             String documentId = UUID.randomUUID().toString().toLowerCase().trim();
             
             // Use TransactionTemplate for save only
             TransactionTemplate template = new TransactionTemplate(transactionManager);
-            Document savedDocument = template.execute(status -> {
-                // Create document entity with COMPLETED status immediately
-                Document document = new Document(userId, fileName, fileType, fileSize, filePath);
-                document.setId(documentId);
+            Document savedDocument;
+            try (AdaptiveLimiter.Permit permit = uploadAdmission.database().acquire()) {
+                savedDocument = template.execute(status -> {
+                    // Create document entity with COMPLETED status immediately
+                    Document document = new Document(userId, fileName, fileType, fileSize, filePath);
+                    document.setId(documentId);
+                    document.setContentHash(storedContent.contentHash());
                 
-                String storageType = storageService.getStorageType();
-                document.setStorageLocation(storageType);
+                    String storageType = storageService.getStorageType();
+                    document.setStorageLocation(storageType);
                 
-                // Set COMPLETED status immediately - document is available right away
-                document.setProcessingStatus(ProcessingStatus.COMPLETED);
-                document.setUploadedAt(LocalDateTime.now());
-                document.setProcessedAt(LocalDateTime.now());
+                    // Set COMPLETED status immediately - document is available right away
+                    document.setProcessingStatus(ProcessingStatus.COMPLETED);
+                    document.setUploadedAt(LocalDateTime.now());
+                    document.setProcessedAt(LocalDateTime.now());
                 
-                // Save and flush
-                Document saved = documentRepository.saveAndFlush(document);
+                    // Save and flush
+                    Document saved = documentRepository.saveAndFlush(document);
                 
-                logger.info("[UPLOAD] Document saved with ID: {} | Status: {} | CorrelationId: {}", 
-                    saved.getId(), saved.getProcessingStatus(), correlationId);
+                    logger.info("[UPLOAD] Document saved with ID: {} | Status: {} | CorrelationId: {}", 
+                        saved.getId(), saved.getProcessingStatus(), correlationId);
                 
-                // Verify persistence
-                if (!documentRepository.existsById(saved.getId())) {
-                    logger.error("[UPLOAD] Document not found after save - potential schema/connection issue | Document ID: {}", saved.getId());
-                    throw new IllegalStateException("Document not persisted after save: " + saved.getId());
-                }
+                    // Verify persistence
+                    if (!documentRepository.existsById(saved.getId())) {
+                        logger.error("[UPLOAD] Document not found after save - potential schema/connection issue | Document ID: {}", saved.getId());
+                        throw new IllegalStateException("Document not persisted after save: " + saved.getId());
+                    }
                 
-                // Log database connection info for debugging
-                try {
-                    logger.info("[DEBUG] Database connection info - checking if document exists in DB");
-                    Optional<Document> verifyDoc = documentRepository.findById(saved.getId());
-                    if (verifyDoc.isPresent()) {
-                        logger.info("[DEBUG] Document verified in database with ID: {} and status: {}", 
-                            verifyDoc.get().getId(), verifyDoc.get().getProcessingStatus());
-                    } else {
-                        logger.error("[DEBUG] Document NOT found in database immediately after save - potential transaction issue");
+                    // Log database connection info for debugging
+                    try {
+                        logger.info("[DEBUG] Database connection info - checking if document exists in DB");
+                        Optional<Document> verifyDoc = documentRepository.findById(saved.getId());
+                        if (verifyDoc.isPresent()) {
+                            logger.info("[DEBUG] Document verified in database with ID: {} and status: {}", 
+                                verifyDoc.get().getId(), verifyDoc.get().getProcessingStatus());
+                        } else {
+                            logger.error("[DEBUG] Document NOT found in database immediately after save - potential transaction issue");
+                        }
+                    } catch (Exception e) {
+                        logger.error("[DEBUG] Error verifying document in database: {}", e.getMessage());
                     }
-                } catch (Exception e) {
-                    logger.error("[DEBUG] Error verifying document in database: {}", e.getMessage());
-                }
+                    
+                    // Apply a status callback that arrived before this row was visible
+                    pendingStatusUpdateRepository.findById(saved.getId()).ifPresent(update -> {
+                        applyStatus(saved, update.getStatus(), update.getRagDocumentId());
+                        pendingStatusUpdateRepository.delete(update);
+                    });
+                    
+                    // Queue RAG ingestion atomically with the document; the outbox dispatcher
+                    // delivers it after commit, with retries. Duplicates share the stored blob
+                    // but get their own RAG entry, since queries filter on the document's ID.
+                    outboxService.enqueueIngestion(saved, correlationId);
                 
-                return saved;
-            });
+                    return saved;
+                });
+            } catch (RuntimeException e) {
+                // Give back the blob reference taken by the store above
+                contentAddressedStorage.release(storedContent.contentHash(), filePath);
+                throw e;
+            }
             
             // Transaction has now committed; document is visible to other transactions
             
-            // Trigger RAG ingest in background AFTER document is marked as completed
-            String fileUrl = storageService.getFileUrl(filePath, userId);
-            try {
-                ragIngestClient.triggerDocumentIngestion(
-                    savedDocument.getId(), 
-                    userId, 
-                    fileUrl, 
-                    fileName,
-                    correlationId
-                );
-                logger.info("[UPLOAD] RAG ingestion triggered for document: {} (document already marked as completed) | CorrelationId: {}", 
-                    savedDocument.getId(), correlationId);
-            } catch (Exception e) {
-                // Log the error but don't fail the upload since document is already completed
-                logger.warn("[UPLOAD] Failed to trigger RAG ingestion for document: {} (document still completed) | CorrelationId: {}", 
-                    savedDocument.getId(), correlationId, e);
-            }
+            logger.info("[UPLOAD] RAG ingestion queued for document: {} | CorrelationId: {}",
+                savedDocument.getId(), correlationId);
             
             return toDocumentResponse(savedDocument);
             
+        } catch (OverloadedException e) {
+            logger.warn("[UPLOAD] Rejected, {} stage overloaded | CorrelationId: {}", e.getStage(), correlationId);
+            throw e;
         } catch (Exception e) {
             logger.error("[UPLOAD] Error uploading document | CorrelationId: {}", correlationId, e);
             throw new RuntimeException("Failed to upload document: " + e.getMessage());
@@ -154,40 +215,192 @@ public class DocumentService {
         }
     }
     
+    /**
+     * Upload several files at once. Files are written to storage in parallel, then every
+     * stored file gets its document row and ingestion event in a single transaction with
+     * batched inserts. A file that fails to store is reported and does not affect the
+     * others; if the transaction fails, no document from the batch is saved.
+     */
+    public List<BatchUploadResult> uploadDocuments(List<MultipartFile> files, String userId) {
+        String correlationId = UUID.randomUUID().toString();
+        MDC.put("correlationId", correlationId);
+        
+        try {
+            logger.info("[UPLOAD] Batch upload of {} files for user: {} | CorrelationId: {}",
+                files.size(), userId, correlationId);
+            
+            List<CompletableFuture<StoredContent>> writes = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> storeBatchFile(file, userId, correlationId),
+                    batchStorageExecutor))
+                .toList();
+            
+            BatchUploadResult[] results = new BatchUploadResult[files.size()];
+            List<Integer> storedIndexes = new ArrayList<>();
+            List<StoredContent> stored = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    stored.add(writes.get(i).join());
+                    storedIndexes.add(i);
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    String error = cause instanceof OverloadedException
+                        ? "Server is busy, please retry shortly"
+                        : cause.getMessage();
+                    logger.warn("[UPLOAD] Could not store {} | CorrelationId: {}: {}",
+                        files.get(i).getOriginalFilename(), correlationId, error);
+                    results[i] = BatchUploadResult.failed(files.get(i).getOriginalFilename(), error);
+                }
+            }
+            
+            if (!stored.isEmpty()) {
+                List<Document> saved;
+                try (AdaptiveLimiter.Permit permit = uploadAdmission.database().acquire()) {
+                    saved = new TransactionTemplate(transactionManager).execute(status ->
+                        saveBatch(storedIndexes.stream().map(files::get).toList(), stored, userId, correlationId));
+                } catch (RuntimeException e) {
+                    for (StoredContent content : stored) {
+                        contentAddressedStorage.release(content.contentHash(), content.filePath());
+                    }
+                    throw e;
+                }
+                for (int i = 0; i < saved.size(); i++) {
+                    results[storedIndexes.get(i)] = BatchUploadResult.created(toDocumentResponse(saved.get(i)));
+                }
+            }
+            
+            logger.info("[UPLOAD] Batch upload saved {} of {} files | CorrelationId: {}",
+                stored.size(), files.size(), correlationId);
+            return Arrays.asList(results);
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+    
+    /**
+     * Save the document for content that is already in storage, such as an assembled
+     * chunked upload taken over by {@link ContentAddressedStorage#adopt}, and queue its
+     * ingestion. Joins the caller's transaction if there is one.
+     */
+    public DocumentResponse registerStoredDocument(String userId, String fileName, String fileType,
+                                                   long fileSize, StoredContent storedContent) {
+        String filePath = storedContent.filePath();
+        String correlationId = UUID.randomUUID().toString();
+        MDC.put("correlationId", correlationId);
+        
+        try (AdaptiveLimiter.Permit permit = uploadAdmission.database().acquire()) {
+            Document savedDocument = new TransactionTemplate(transactionManager).execute(status -> {
+                Document document = new Document(userId, fileName, fileType, fileSize, filePath);
+                document.setContentHash(storedContent.contentHash());
+                document.setStorageLocation(storageService.getStorageType());
+                document.setProcessingStatus(ProcessingStatus.COMPLETED);
+                document.setUploadedAt(LocalDateTime.now());
+                document.setProcessedAt(document.getUploadedAt());
+                
+                Document saved = documentRepository.save(document);
+                outboxService.enqueueIngestion(saved, correlationId);
+                return saved;
+            });
+            
+            logger.info("[UPLOAD] Document saved with ID: {} for stored file: {} | CorrelationId: {}",
+                savedDocument.getId(), filePath, correlationId);
+            return toDocumentResponse(savedDocument);
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+    
+    private StoredContent storeBatchFile(MultipartFile file, String userId, String correlationId) {
+        MDC.put("correlationId", correlationId);
+        try (AdaptiveLimiter.Permit permit = uploadAdmission.storage().acquire(file.getSize())) {
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            return contentAddressedStorage.store(file, userId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store file: " + e.getMessage(), e);
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+    
+    /**
+     * Insert the documents of a batch and queue their ingestion. Runs inside the caller's
+     * transaction.
+     */
+    private List<Document> saveBatch(List<MultipartFile> files, List<StoredContent> stored,
+                                     String userId, String correlationId) {
+        LocalDateTime now = LocalDateTime.now();
+        String storageType = storageService.getStorageType();
+        List<Document> documents = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            StoredContent content = stored.get(i);
+            Document document = new Document(userId, file.getOriginalFilename(), file.getContentType(),
+                file.getSize(), content.filePath());
+            document.setContentHash(content.contentHash());
+            document.setStorageLocation(storageType);
+            document.setProcessingStatus(ProcessingStatus.COMPLETED);
+            document.setUploadedAt(now);
+            document.setProcessedAt(now);
+            documents.add(document);
+        }
+        
+        List<Document> saved = documentRepository.saveAll(documents);
+        outboxService.enqueueIngestions(saved, correlationId);
+        documentRepository.flush();
+        
+        logger.info("[UPLOAD] Batch saved {} documents, queued for RAG ingestion | CorrelationId: {}",
+            saved.size(), correlationId);
+        return saved;
+    }
+    
     public List<DocumentResponse> getUserDocuments(String userId) {
-        List<Document> documents = documentRepository.findByUserIdOrderByUploadedAtDesc(userId);
+        List<Document> documents = documentRepository.findByUserIdAndProcessingStatusNotOrderByUploadedAtDesc(
+                userId, ProcessingStatus.DELETED);
         return documents.stream()
                 .map(this::toDocumentResponse)
                 .collect(Collectors.toList());
     }
     
     public Optional<DocumentResponse> getDocumentById(String documentId) {
-        return documentRepository.findById(documentId)
+        return findLiveDocument(documentId)
                 .map(this::toDocumentResponse);
     }
     
+    public Optional<DocumentDownload> getDocumentDownload(String documentId) {
+        return findLiveDocument(documentId).map(document -> {
+            String redirectUrl = storageService.getDirectDownloadUrl(document.getFilePath(), document.getUserId())
+                    .orElse(null);
+            // Only materialise a local copy when the client can't be sent to the store directly
+            Path localFile = redirectUrl == null ? storageService.loadFile(document.getFilePath()) : null;
+            return new DocumentDownload(
+                    document.getFileName(),
+                    document.getFileType(),
+                    document.getContentHash(),
+                    redirectUrl,
+                    localFile);
+        });
+    }
+    
+    /**
+     * Tombstone a document. It disappears from reads immediately; its storage, RAG entry
+     * and rows are removed in the background by {@link DocumentReaper}, with retries.
+     */
     @Transactional
     public void deleteDocument(String documentId) {
-        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        Document document = findLiveDocument(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
         
-        if (documentOpt.isPresent()) {
-            Document document = documentOpt.get();
-            
-            // Delete from storage
-            storageService.deleteFile(document.getFilePath());
-            
-            // Delete from RAG service
-            if (document.getRagDocumentId() != null) {
-                ragIngestClient.deleteDocument(document.getRagDocumentId());
-            }
-            
-            // Delete from database
-            documentRepository.delete(document);
-            
-            logger.info("Document {} deleted successfully", documentId);
-        } else {
-            throw new IllegalArgumentException("Document not found: " + documentId);
-        }
+        document.setProcessingStatus(ProcessingStatus.DELETED);
+        document.setProcessedAt(LocalDateTime.now());
+        Document saved = documentRepository.save(document);
+        outboxService.enqueuePurge(saved);
+        
+        documentTextCache.invalidate(documentId);
+        documentStatusCache.invalidate(documentId);
+        publishStatusChange(saved);
+        
+        logger.info("Document {} marked for deletion", documentId);
     }
     
     public List<DocumentResponse> getPendingDocuments() {
@@ -197,107 +410,195 @@ public class DocumentService {
                 .collect(Collectors.toList());
     }
     
-    @Transactional
-    public void markDocumentCompleted(String documentId, String ragDocumentId) {
-        // Add retry logic to handle potential timing issues
-        Optional<Document> documentOpt = findDocumentWithRetry(documentId, 3, 1000);
-        
-        if (documentOpt.isEmpty()) {
-            throw new IllegalArgumentException("Document not found: " + documentId);
+    /**
+     * One page of the user's documents, newest first. Pass the previous page's nextCursor to continue.
+     */
+    public DocumentPage getUserDocumentsPage(String userId, String cursor, int limit,
+                                             ProcessingStatus status, String fileType) {
+        Specification<Document> filter = DocumentSpecifications.ownedBy(userId)
+                .and(DocumentSpecifications.notDeleted())
+                .and(DocumentSpecifications.hasStatus(status))
+                .and(DocumentSpecifications.hasFileType(fileType));
+        return findPage(filter, cursor, limit, true);
+    }
+    
+    /**
+     * One page of pending documents, oldest first so processors drain them in upload order
+     */
+    public DocumentPage getPendingDocumentsPage(String cursor, int limit, String fileType) {
+        Specification<Document> filter = DocumentSpecifications.hasStatus(ProcessingStatus.PENDING)
+                .and(DocumentSpecifications.hasFileType(fileType));
+        return findPage(filter, cursor, limit, false);
+    }
+    
+    private DocumentPage findPage(Specification<Document> filter, String cursor, int limit, boolean descending) {
+        LocalDateTime afterUploadedAt = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            afterUploadedAt = LocalDateTime.parse(position[0]);
+            afterId = position[1];
         }
         
-        Document document = documentOpt.get();
-        document.setProcessingStatus(ProcessingStatus.COMPLETED);
-        document.setProcessedAt(LocalDateTime.now());
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort order = Sort.by(direction, "uploadedAt").and(Sort.by(direction, "id"));
+        Specification<Document> spec = filter.and(
+                DocumentSpecifications.after(afterUploadedAt, afterId, descending));
         
-        if (ragDocumentId != null && !ragDocumentId.isEmpty()) {
-            document.setRagDocumentId(ragDocumentId);
+        // Fetch one extra row to learn whether another page exists, without a count query
+        List<Document> rows = documentRepository.findBy(spec, query -> query.sortBy(order).limit(limit + 1).all());
+        
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            Document last = rows.get(limit - 1);
+            nextCursor = encodeCursor(last.getUploadedAt(), last.getId());
         }
         
-        Document savedDocument = documentRepository.save(document);
-        logger.info("[SUCCESS] Document {} marked as completed", documentId);
+        List<DocumentResponse> items = rows.stream()
+                .map(this::toDocumentResponse)
+                .collect(Collectors.toList());
+        return new DocumentPage(items, nextCursor);
     }
     
-    @Transactional
-    public void markDocumentFailed(String documentId) {
-        // Add retry logic to handle potential timing issues
-        Optional<Document> documentOpt = findDocumentWithRetry(documentId, 3, 1000);
-        
-        if (documentOpt.isEmpty()) {
-            throw new IllegalArgumentException("Document not found: " + documentId);
+    private static String encodeCursor(LocalDateTime uploadedAt, String id) {
+        String position = uploadedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
-        
-        Document document = documentOpt.get();
-        document.setProcessingStatus(ProcessingStatus.FAILED);
-        document.setProcessedAt(LocalDateTime.now());
-        
-        documentRepository.save(document);
-        logger.info("Document {} marked as failed", documentId);
     }
     
     /**
-     * Find document with retry logic to handle potential timing issues
-     * @param documentId The document ID to find
-     * @param maxRetries Maximum number of retries
-     * @param delayMs Delay between retries in milliseconds
-     * @return Optional containing the document if found
+     * Processing status for many documents at once. Cached entries are served directly and the
+     * rest are loaded with a single IN query; unknown IDs are left out of the result.
      */
-    private Optional<Document> findDocumentWithRetry(String documentId, int maxRetries, long delayMs) {
-        Optional<Document> documentOpt = documentRepository.findById(documentId);
+    public List<DocumentStatusResponse> getDocumentStatuses(Collection<String> documentIds) {
+        LinkedHashSet<String> ids = new LinkedHashSet<>(documentIds);
+        Map<String, DocumentStatusResponse> statuses = new HashMap<>(documentStatusCache.getAllPresent(ids));
         
-        int attempts = 0;
-        while (documentOpt.isEmpty() && attempts < maxRetries) {
-            attempts++;
-            logger.info("Document {} not found, attempt {}/{}. Waiting {}ms before retry...", 
-                documentId, attempts, maxRetries, delayMs);
-            
-            try {
-                Thread.sleep(delayMs);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+        List<String> missing = ids.stream()
+                .filter(id -> !statuses.containsKey(id))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            for (DocumentStatusView view : documentRepository.findByIdIn(missing)) {
+                DocumentStatusResponse status = new DocumentStatusResponse(
+                        view.getId(), view.getProcessingStatus(), view.getProcessedAt());
+                documentStatusCache.put(status);
+                statuses.put(status.getDocumentId(), status);
             }
-            
-            documentOpt = documentRepository.findById(documentId);
-            
-            // Increase delay for next attempt (exponential backoff)
-            delayMs *= 2;
-        }
-        
-        if (documentOpt.isPresent()) {
-            logger.info("Document {} found after {} attempt(s)", documentId, attempts);
-        } else {
-            logger.error("Document {} not found after {} attempts", documentId, maxRetries);
         }
         
-        return documentOpt;
+        // Tombstoned documents are gone as far as callers are concerned, as in findLiveDocument
+        return ids.stream()
+                .map(statuses::get)
+                .filter(status -> status != null && status.getProcessingStatus() != ProcessingStatus.DELETED)
+                .collect(Collectors.toList());
+    }
+    
+    public Optional<DocumentStatusResponse> getDocumentStatus(String documentId) {
+        return getDocumentStatuses(List.of(documentId)).stream().findFirst();
     }
     
+    /**
+     * Mark a document as processed. A callback that arrives before the document row has
+     * committed is recorded and applied later instead of waiting for the row.
+     * @return true if the status was applied now, false if it was deferred
+     */
     @Transactional
-    public void clearAllDocuments() {
-        List<Document> allDocuments = documentRepository.findAll();
-        logger.info("Clearing {} documents", allDocuments.size());
+    public boolean markDocumentCompleted(String documentId, String ragDocumentId) {
+        return updateStatus(documentId, ProcessingStatus.COMPLETED, ragDocumentId);
+    }
+    
+    /**
+     * Mark a document as failed, deferring the update if the document row is not visible yet
+     * @return true if the status was applied now, false if it was deferred
+     */
+    @Transactional
+    public boolean markDocumentFailed(String documentId) {
+        return updateStatus(documentId, ProcessingStatus.FAILED, null);
+    }
+    
+    /**
+     * Apply a deferred status update whose document has been committed since it was recorded
+     */
+    @Transactional
+    public void applyPendingStatusUpdate(String documentId) {
+        pendingStatusUpdateRepository.findById(documentId).ifPresent(update ->
+            documentRepository.findById(documentId).ifPresent(document -> {
+                applyStatus(document, update.getStatus(), update.getRagDocumentId());
+                pendingStatusUpdateRepository.delete(update);
+                logger.info("Applied deferred {} status to document {}", update.getStatus(), documentId);
+            }));
+    }
+    
+    private boolean updateStatus(String documentId, ProcessingStatus status, String ragDocumentId) {
+        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        if (documentOpt.isEmpty()) {
+            // The latest callback wins if several arrive before the document is saved
+            pendingStatusUpdateRepository.save(new PendingStatusUpdate(documentId, status, ragDocumentId));
+            logger.info("Document {} not found yet, deferred {} status update", documentId, status);
+            return false;
+        }
         
-        // Delete all files from storage
-        for (Document document : allDocuments) {
-            try {
-                storageService.deleteFile(document.getFilePath());
-            } catch (Exception e) {
-                logger.warn("Failed to delete file for document {}: {}", document.getId(), e.getMessage());
+        applyStatus(documentOpt.get(), status, ragDocumentId);
+        logger.info("Document {} marked as {}", documentId, status);
+        return true;
+    }
+    
+    private void applyStatus(Document document, ProcessingStatus status, String ragDocumentId) {
+        if (document.getProcessingStatus() == ProcessingStatus.DELETED) {
+            // Keep the tombstone, but remember a late RAG entry so the reaper removes it too
+            if (ragDocumentId != null && !ragDocumentId.isEmpty()) {
+                document.setRagDocumentId(ragDocumentId);
+                documentRepository.save(document);
             }
+            logger.info("Ignoring {} status for deleted document {}", status, document.getId());
+            return;
         }
         
-        // Delete all documents from database
-        documentRepository.deleteAll();
-        logger.info("All documents cleared successfully");
+        document.setProcessingStatus(status);
+        document.setProcessedAt(LocalDateTime.now());
+        
+        if (ragDocumentId != null && !ragDocumentId.isEmpty()) {
+            document.setRagDocumentId(ragDocumentId);
+        }
+        
+        Document savedDocument = documentRepository.save(document);
+        documentStatusCache.invalidate(savedDocument.getId());
+        publishStatusChange(savedDocument);
+    }
+    
+    /**
+     * Subscribers are notified once the status change commits
+     */
+    private void publishStatusChange(Document document) {
+        eventPublisher.publishEvent(new DocumentStatusChangedEvent(
+                document.getUserId(), document.getId(), document.getProcessingStatus(), document.getProcessedAt()));
     }
     
     /**
      * Get the full text content of a document.
-     * First checks if extractedText is cached in DB, otherwise reads from file.
+     * Checks the in-process text cache, then the document_texts table, otherwise reads from file.
      */
     public String getDocumentText(String documentId) throws IOException {
-        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        Optional<String> cached = documentTextCache.get(documentId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        
+        Optional<Document> documentOpt = findLiveDocument(documentId);
 
         if (documentOpt.isEmpty()) {
             throw new IllegalArgumentException("Document not found: " + documentId);
@@ -305,24 +606,84 @@ public class DocumentService {
 
         Document document = documentOpt.get();
 
-        // If we already have extracted text cached, return it
-        if (document.getExtractedText() != null && !document.getExtractedText().isEmpty()) {
+        // If we already have extracted text stored, return it
+        Optional<DocumentText> storedText = documentTextRepository.findById(documentId);
+        // Rows the compression backfill has not reached yet read as null
+        if (storedText.isPresent() && storedText.get().getContent() != null
+                && !storedText.get().getContent().isEmpty()) {
             logger.info("Returning cached extracted text for document: {}", documentId);
-            return document.getExtractedText();
+            documentTextCache.put(documentId, storedText.get().getContent());
+            return storedText.get().getContent();
         }
 
-        // Otherwise, read from storage
-        logger.info("Reading text from file for document: {}", documentId);
-        String text = storageService.readFileAsText(document.getFilePath());
+        // Identical content uploaded earlier may already have its text extracted
+        Optional<DocumentText> sameContent = document.getContentHash() != null
+            ? documentTextRepository.findByContentHash(document.getContentHash(), PageRequest.of(0, 1)).stream()
+                .filter(t -> t.getContent() != null)
+                .findFirst()
+            : Optional.empty();
+        
+        String text;
+        if (sameContent.isPresent()) {
+            logger.info("Reusing extracted text of document {} for document: {}", sameContent.get().getDocumentId(), documentId);
+            text = sameContent.get().getContent();
+        } else {
+            // Otherwise, read from storage
+            logger.info("Reading text from file for document: {}", documentId);
+            text = storageService.readFileAsText(document.getFilePath());
+        }
 
         // Cache it in the database for future use
-        document.setExtractedText(text);
-        documentRepository.save(document);
+        documentTextRepository.save(new DocumentText(documentId, text));
+        documentTextCache.put(documentId, text);
         logger.info("Cached extracted text ({} chars) for document: {}", text.length(), documentId);
 
         return text;
     }
 
+    /**
+     * Get the document text as UTF-8 bytes, served straight from the text cache when possible.
+     * The returned array may be shared with the cache and must not be modified.
+     */
+    public byte[] getDocumentTextBytes(String documentId) throws IOException {
+        Optional<byte[]> cached = documentTextCache.getBytes(documentId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        String text = getDocumentText(documentId);
+        return documentTextCache.getBytes(documentId)
+                .orElseGet(() -> text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Get a window of the document text by character offset. Only the requested window
+     * is decoded; the rest of the text stays as cached bytes.
+     */
+    public DocumentTextPage getDocumentTextPage(String documentId, int offset, int length) throws IOException {
+        if (offset < 0 || length <= 0) {
+            throw new IllegalArgumentException("Offset must be >= 0 and length > 0");
+        }
+        byte[] text = getDocumentTextBytes(documentId);
+        
+        int start = Utf8Text.byteOffset(text, 0, 0, offset);
+        int end = Utf8Text.byteOffset(text, start, offset, offset + length);
+        String page = new String(text, start, end - start, StandardCharsets.UTF_8);
+        
+        int totalLength = Utf8Text.charLength(text);
+        Integer nextOffset = end < text.length ? offset + page.length() : null;
+        return new DocumentTextPage(documentId, offset, totalLength, nextOffset, page);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        batchStorageExecutor.shutdown();
+    }
+    
+    private Optional<Document> findLiveDocument(String documentId) {
+        return documentRepository.findById(documentId)
+                .filter(document -> document.getProcessingStatus() != ProcessingStatus.DELETED);
+    }
+    
     private DocumentResponse toDocumentResponse(Document document) {
         return new DocumentResponse(
             document.getId(),
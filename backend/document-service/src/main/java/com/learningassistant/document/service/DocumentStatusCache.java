@@ -0,0 +1,52 @@
+package com.learningassistant.document.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learningassistant.document.dto.DocumentStatusResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Short-lived cache of document processing status for UI polling. Entries expire after a
+ * few seconds and are dropped as soon as a status change commits.
+ */
+@Component
+public class DocumentStatusCache {
+    
+    private final Cache<String, DocumentStatusResponse> cache;
+    
+    public DocumentStatusCache(@Value("${document-status-cache.ttl-ms:2000}") long ttlMs,
+                               @Value("${document-status-cache.max-entries:10000}") long maxEntries,
+                               MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "document.status");
+    }
+    
+    public Map<String, DocumentStatusResponse> getAllPresent(Iterable<String> documentIds) {
+        return cache.getAllPresent(documentIds);
+    }
+    
+    public void put(DocumentStatusResponse status) {
+        cache.put(status.getDocumentId(), status);
+    }
+    
+    /**
+     * Drop the entry now and again when the status change commits
+     */
+    public void invalidate(String documentId) {
+        AfterCommit.nowAndAfterCommit(() -> cache.invalidate(documentId));
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,15 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.model.ProcessingStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a document's processing status changes. Listeners that notify clients
+ * should run after the surrounding transaction commits.
+ */
+public record DocumentStatusChangedEvent(String userId,
+                                         String documentId,
+                                         ProcessingStatus processingStatus,
+                                         LocalDateTime processedAt) {
+}
@@ -0,0 +1,315 @@
+package com.learningassistant.document.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Two-tier cache for extracted document text, keyed by document ID.
+ * <p>
+ * The memory tier is a Caffeine (W-TinyLFU) cache bounded by total UTF-8 bytes. Entries it
+ * evicts for size spill to an optional disk tier of plain files, read back through
+ * memory-mapped buffers and bounded by total bytes in LRU order.
+ * <p>
+ * Promotion from disk and invalidation both run as computations on the memory tier's
+ * entry for the key, as does eviction, so they are ordered per document. Spill files are
+ * written in the background; an evicted entry waits in {@code pendingSpills} until then.
+ * <p>
+ * Invalidated documents leave a short-lived tombstone, set in the same computation as the
+ * eviction, so a read that loaded the text just before the delete cannot put it back.
+ */
+@Component
+public class DocumentTextCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentTextCache.class);
+    
+    private final Cache<String, byte[]> memoryTier;
+    private final Cache<String, Boolean> tombstones;
+    private final Path spillDirectory;
+    private final long spillMaxBytes;
+    private final ExecutorService spillExecutor;
+    
+    // Evicted entries not yet written to disk; removing one cancels its spill
+    private final Map<String, byte[]> pendingSpills = new ConcurrentHashMap<>();
+    
+    // Access-ordered index of spilled files and their sizes, guarded by itself
+    private final LinkedHashMap<String, Long> spillIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private long spillBytes;
+    
+    private final Counter spillHits;
+    private final Counter spillMisses;
+    private final Counter spillEvictions;
+    
+    public DocumentTextCache(@Value("${document-text-cache.max-memory-bytes:67108864}") long maxMemoryBytes,
+                             @Value("${document-text-cache.spill.enabled:false}") boolean spillEnabled,
+                             @Value("${document-text-cache.spill.directory:${java.io.tmpdir}/document-text-cache}") String spillDirectory,
+                             @Value("${document-text-cache.spill.max-bytes:536870912}") long spillMaxBytes,
+                             @Value("${document-text-cache.tombstone-ttl:PT10M}") Duration tombstoneTtl,
+                             MeterRegistry meterRegistry) {
+        this.spillDirectory = spillEnabled ? Paths.get(spillDirectory) : null;
+        this.spillMaxBytes = spillMaxBytes;
+        this.memoryTier = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((String documentId, byte[] text) -> text.length)
+                // Runs atomically with the eviction, so the entry is pending before a
+                // promotion or invalidate of the same key can run; the write happens later
+                .evictionListener((String documentId, byte[] text, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && documentId != null && text != null) {
+                        scheduleSpill(documentId, text);
+                    }
+                })
+                .recordStats()
+                .build();
+        this.tombstones = Caffeine.newBuilder()
+                .expireAfterWrite(tombstoneTtl)
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryTier, "document.text");
+        spillHits = meterRegistry.counter("document.text.spill", "result", "hit");
+        spillMisses = meterRegistry.counter("document.text.spill", "result", "miss");
+        spillEvictions = meterRegistry.counter("document.text.spill.evictions");
+        Gauge.builder("document.text.spill.size", this, cache -> cache.spilledBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        
+        if (this.spillDirectory != null) {
+            initSpillDirectory();
+            this.spillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "text-cache-spill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.spillExecutor = null;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (spillExecutor != null) {
+            spillExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Cached text as UTF-8 bytes. The returned array is shared and must not be modified.
+     */
+    public Optional<byte[]> getBytes(String documentId) {
+        byte[] text = memoryTier.getIfPresent(documentId);
+        if (text == null && spillDirectory != null) {
+            // Promote back to memory; this may in turn spill a colder entry
+            text = memoryTier.asMap().compute(documentId,
+                (id, current) -> current != null ? current : takeSpilled(id));
+        }
+        return Optional.ofNullable(text);
+    }
+    
+    public Optional<String> get(String documentId) {
+        return getBytes(documentId).map(text -> new String(text, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Cache the text unless the document has been invalidated since, which is checked in the
+     * same computation on the key as the invalidation itself
+     */
+    public void put(String documentId, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        memoryTier.asMap().compute(documentId,
+            (id, current) -> tombstones.getIfPresent(id) != null ? current : bytes);
+    }
+    
+    /**
+     * Drop a deleted document's text, now and again when the delete commits, and keep it
+     * from being cached again
+     */
+    public void invalidate(String documentId) {
+        AfterCommit.nowAndAfterCommit(() -> evict(documentId));
+    }
+    
+    public void invalidateAll() {
+        memoryTier.invalidateAll();
+        if (spillDirectory != null) {
+            synchronized (spillIndex) {
+                pendingSpills.clear();
+                for (String documentId : spillIndex.keySet()) {
+                    deleteQuietly(spillPath(documentId));
+                }
+                spillIndex.clear();
+                spillBytes = 0;
+            }
+        }
+    }
+    
+    /**
+     * Run pending evictions now rather than on Caffeine's maintenance schedule
+     */
+    void cleanUp() {
+        memoryTier.cleanUp();
+    }
+    
+    long memoryBytes() {
+        return memoryTier.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+    
+    private void evict(String documentId) {
+        memoryTier.asMap().compute(documentId, (id, current) -> {
+            tombstones.put(id, Boolean.TRUE);
+            if (spillDirectory != null) {
+                pendingSpills.remove(id);
+                removeSpilled(id);
+            }
+            return null;
+        });
+    }
+    
+    private void initSpillDirectory() {
+        try {
+            // Spilled entries are not tracked across restarts, so start empty
+            FileSystemUtils.deleteRecursively(spillDirectory);
+            Files.createDirectories(spillDirectory);
+            logger.info("Document text spill tier at {} (max {} bytes)", spillDirectory, spillMaxBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not initialize text cache spill directory " + spillDirectory, e);
+        }
+    }
+    
+    private void scheduleSpill(String documentId, byte[] text) {
+        if (spillDirectory == null || text.length > spillMaxBytes) {
+            return;
+        }
+        pendingSpills.put(documentId, text);
+        spillExecutor.execute(() -> spill(documentId, text));
+    }
+    
+    private void spill(String documentId, byte[] text) {
+        Path target = spillPath(documentId);
+        // Writes are serialized with index updates; spilling is the cold path
+        synchronized (spillIndex) {
+            if (!pendingSpills.remove(documentId, text)) {
+                // Promoted or invalidated since it was evicted
+                return;
+            }
+            try {
+                Path temp = Files.createTempFile(spillDirectory, "spill-", ".tmp");
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(text);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                
+                Long previous = spillIndex.put(documentId, (long) text.length);
+                spillBytes += text.length - (previous != null ? previous : 0);
+                evictSpilledOverBudget();
+            } catch (IOException e) {
+                logger.warn("Failed to spill text for document {}: {}", documentId, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Remove a spilled or pending entry and return its text. Called inside a computation
+     * on the key, so nothing can spill the same document meanwhile.
+     */
+    private byte[] takeSpilled(String documentId) {
+        byte[] pending = pendingSpills.remove(documentId);
+        if (pending != null) {
+            spillHits.increment();
+            return pending;
+        }
+        synchronized (spillIndex) {
+            Long size = spillIndex.remove(documentId);
+            if (size == null) {
+                spillMisses.increment();
+                return null;
+            }
+            spillBytes -= size;
+        }
+        
+        Path path = spillPath(documentId);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] text = new byte[mapped.remaining()];
+            mapped.get(text);
+            spillHits.increment();
+            return text;
+        } catch (IOException e) {
+            logger.warn("Failed to read spilled text for document {}: {}", documentId, e.getMessage());
+            spillMisses.increment();
+            return null;
+        } finally {
+            deleteQuietly(path);
+        }
+    }
+    
+    private void removeSpilled(String documentId) {
+        synchronized (spillIndex) {
+            Long size = spillIndex.remove(documentId);
+            if (size != null) {
+                spillBytes -= size;
+                deleteQuietly(spillPath(documentId));
+            }
+        }
+    }
+    
+    private void evictSpilledOverBudget() {
+        Iterator<Map.Entry<String, Long>> eldest = spillIndex.entrySet().iterator();
+        while (spillBytes > spillMaxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            spillBytes -= entry.getValue();
+            deleteQuietly(spillPath(entry.getKey()));
+            eldest.remove();
+            spillEvictions.increment();
+        }
+    }
+    
+    private long spilledBytes() {
+        synchronized (spillIndex) {
+            return spillBytes;
+        }
+    }
+    
+    private Path spillPath(String documentId) {
+        // Document IDs are UUIDs, but never trust a key as a file name
+        return spillDirectory.resolve(documentId.replaceAll("[^A-Za-z0-9-]", "_") + ".txt");
+    }
+    
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spilled text {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.model.CompressedTextConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses text left in the legacy plain document_texts.content column into
+ * compressed_content, in batches of their own transaction, then drops the old column.
+ * Rows not yet converted read as missing and are extracted again on demand. The old column
+ * is made nullable before the web server starts, since new rows only write compressed_content,
+ * and the backfill runs after {@link DocumentTextMigration} has moved text into it.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class DocumentTextCompressionBackfill implements SmartInitializingSingleton, ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentTextCompressionBackfill.class);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${document-text.compression.backfill-batch-size:200}")
+    private int batchSize;
+    
+    public DocumentTextCompressionBackfill(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (hasLegacyColumn()) {
+            jdbcTemplate.execute("ALTER TABLE document_texts ALTER COLUMN content DROP NOT NULL");
+        }
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!hasLegacyColumn()) {
+            return;
+        }
+        
+        long rows = 0;
+        long plainBytes = 0;
+        long compressedBytes = 0;
+        String lastId = "";
+        while (true) {
+            List<Object[]> updates = new ArrayList<>();
+            String after = lastId;
+            List<String[]> batch = jdbcTemplate.query(
+                "SELECT document_id, content FROM document_texts " +
+                "WHERE document_id > ? AND content IS NOT NULL ORDER BY document_id LIMIT ?",
+                (rs, rowNum) -> new String[] { rs.getString(1), rs.getString(2) },
+                after, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (String[] row : batch) {
+                byte[] utf8 = row[1].getBytes(StandardCharsets.UTF_8);
+                byte[] compressed = CompressedTextConverter.compress(utf8, Deflater.BEST_SPEED);
+                plainBytes += utf8.length;
+                compressedBytes += compressed.length;
+                updates.add(new Object[] { compressed, row[0] });
+            }
+            // Rows rewritten since the read already hold newer compressed text
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "UPDATE document_texts SET compressed_content = coalesce(compressed_content, ?), content = NULL " +
+                "WHERE document_id = ?", updates));
+            rows += batch.size();
+            lastId = batch.get(batch.size() - 1)[0];
+        }
+        
+        jdbcTemplate.execute("ALTER TABLE document_texts DROP COLUMN content");
+        if (rows > 0) {
+            logger.info("Compressed extracted text of {} documents: {} bytes -> {} bytes",
+                rows, plainBytes, compressedBytes);
+        }
+    }
+    
+    private boolean hasLegacyColumn() {
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM information_schema.columns " +
+            "WHERE table_name = 'document_texts' AND column_name = 'content'",
+            Integer.class);
+        return legacyColumns != null && legacyColumns > 0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.learningassistant.document.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves extracted text left in the legacy documents.extracted_text column into the
+ * document_texts table and drops the column. Schema updates only add columns, so this
+ * runs once on startup and is a no-op after that. It runs once the schema is in place and
+ * before the web server starts, so no request sees documents whose text is half moved.
+ * Text lands in the plain content column and is compressed by
+ * {@link DocumentTextCompressionBackfill}, which runs afterwards.
+ * <p>
+ * The legacy column only ever existed in PostgreSQL deployments, and the upsert below is
+ * PostgreSQL syntax, so other databases are skipped.
+ */
+@Component
+public class DocumentTextMigration implements SmartInitializingSingleton {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentTextMigration.class);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    public DocumentTextMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isPostgres()) {
+            return;
+        }
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM information_schema.columns " +
+            "WHERE table_name = 'documents' AND column_name = 'extracted_text'",
+            Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE document_texts ADD COLUMN IF NOT EXISTS content TEXT");
+            int moved = jdbcTemplate.update(
+                "INSERT INTO document_texts (document_id, content, extracted_at) " +
+                "SELECT id, extracted_text, coalesce(processed_at, uploaded_at) FROM documents " +
+                "WHERE extracted_text IS NOT NULL ON CONFLICT (document_id) DO NOTHING");
+            jdbcTemplate.execute("ALTER TABLE documents DROP COLUMN extracted_text");
+            logger.info("Moved extracted text of {} documents into document_texts", moved);
+        });
+    }
+    
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute(
+            (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
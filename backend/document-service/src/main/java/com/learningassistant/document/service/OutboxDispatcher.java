@@ -0,0 +1,315 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.admission.AdaptiveLimiter;
+import com.learningassistant.document.admission.UploadAdmission;
+import com.learningassistant.document.messaging.IngestMessage;
+import com.learningassistant.document.messaging.IngestMessageSender;
+import com.learningassistant.document.model.OutboxEvent;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.model.OutboxStatus;
+import com.learningassistant.document.model.ProcessingStatus;
+import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.OutboxEventRepository;
+import com.learningassistant.document.storage.StorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox in the background. Due events are claimed in batches, delivered with
+ * bounded concurrency, and retried with exponential backoff until they succeed or run out
+ * of attempts. Events either trigger RAG ingestion, through the configured
+ * {@link IngestMessageSender}, or purge a deleted document.
+ */
+@Component
+public class OutboxDispatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final DocumentRepository documentRepository;
+    private final OutboxService outboxService;
+    private final IngestMessageSender ingestMessageSender;
+    private final StorageService storageService;
+    private final DocumentReaper documentReaper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveLimiter ingestLimiter;
+    
+    @Value("${outbox.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${outbox.max-concurrency:8}")
+    private int maxConcurrency;
+    
+    @Value("${outbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${outbox.initial-backoff-ms:2000}")
+    private long initialBackoffMs;
+    
+    @Value("${outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+    
+    @Value("${outbox.lease-ms:60000}")
+    private long leaseMs;
+    
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+    
+    private ExecutorService executor;
+    
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong oldestPendingAgeMs = new AtomicLong();
+    private Timer dispatchLag;
+    private Counter dispatchedCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Counter deferredCounter;
+    private Timer ingestSendLatency;
+    private Counter ingestSentCounter;
+    private Counter ingestFailedCounter;
+    
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            DocumentRepository documentRepository,
+                            OutboxService outboxService,
+                            IngestMessageSender ingestMessageSender,
+                            StorageService storageService,
+                            DocumentReaper documentReaper,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            UploadAdmission uploadAdmission) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.documentRepository = documentRepository;
+        this.outboxService = outboxService;
+        this.ingestMessageSender = ingestMessageSender;
+        this.storageService = storageService;
+        this.documentReaper = documentReaper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.ingestLimiter = uploadAdmission.ingest();
+    }
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-dispatch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        Gauge.builder("outbox.queue.depth", queueDepth, AtomicLong::get)
+                .description("Outbox events waiting to be dispatched")
+                .register(meterRegistry);
+        Gauge.builder("outbox.oldest.pending.age", oldestPendingAgeMs, AtomicLong::get)
+                .description("Age of the oldest undispatched outbox event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        dispatchLag = Timer.builder("outbox.dispatch.lag")
+                .description("Time from outbox write to successful dispatch")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        dispatchedCounter = meterRegistry.counter("outbox.dispatch", "result", "success");
+        retriedCounter = meterRegistry.counter("outbox.dispatch", "result", "retry");
+        failedCounter = meterRegistry.counter("outbox.dispatch", "result", "failed");
+        deferredCounter = meterRegistry.counter("outbox.dispatch", "result", "deferred");
+        
+        String mode = ingestMessageSender.getMode();
+        ingestSendLatency = Timer.builder("ingest.send.latency")
+                .description("Time for the ingest transport to accept a message")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        ingestSentCounter = meterRegistry.counter("ingest.send.messages", "mode", mode, "result", "success");
+        ingestFailedCounter = meterRegistry.counter("ingest.send.messages", "mode", mode, "result", "failed");
+        logger.info("Outbox ingestion transport: {}", mode);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void drain() {
+        try {
+            List<OutboxEvent> batch;
+            do {
+                batch = claimBatch();
+                if (!batch.isEmpty()) {
+                    dispatchBatch(batch);
+                }
+            } while (batch.size() == batchSize);
+            refreshGauges();
+        } catch (Exception e) {
+            logger.error("Outbox drain failed: {}", e.getMessage(), e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:3600000}")
+    public void purgeDispatched() {
+        int purged = outboxEventRepository.deleteDispatchedBefore(
+            OutboxStatus.DISPATCHED, LocalDateTime.now().minusHours(retentionHours));
+        if (purged > 0) {
+            logger.info("Purged {} dispatched outbox events", purged);
+        }
+    }
+    
+    /**
+     * Lock due events and push their next attempt past the lease, so that a crashed
+     * dispatcher's claims become visible again once the lease runs out.
+     */
+    private List<OutboxEvent> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> events = outboxEventRepository.lockDueEvents(now, batchSize);
+            for (OutboxEvent event : events) {
+                event.setAttempts(event.getAttempts() + 1);
+                event.setNextAttemptAt(now.plus(Duration.ofMillis(leaseMs)));
+            }
+            return events;
+        });
+    }
+    
+    private void dispatchBatch(List<OutboxEvent> batch) {
+        CompletableFuture<?>[] deliveries = batch.stream()
+                .map(event -> CompletableFuture.runAsync(() -> deliver(event), executor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(deliveries).join();
+        
+        // Saved one by one: an event whose lease ran out mid-delivery may have been claimed
+        // again by another replica, and only that event's write-back should be dropped
+        for (OutboxEvent event : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> outboxEventRepository.save(event));
+            } catch (ObjectOptimisticLockingFailureException e) {
+                logger.warn("Outbox event {} was reclaimed after its lease expired, discarding this result",
+                    event.getId());
+            }
+        }
+    }
+    
+    private void deliver(OutboxEvent event) {
+        // Only ingestion calls count against the ingest stage
+        Optional<AdaptiveLimiter.Permit> permit = Optional.empty();
+        if (event.getEventType() == OutboxEventType.RAG_INGEST) {
+            permit = ingestLimiter.tryAcquire();
+            if (permit.isEmpty()) {
+                // The ingest stage is at its limit; try again soon without spending an attempt
+                event.setAttempts(event.getAttempts() - 1);
+                event.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(initialBackoffMs)));
+                deferredCounter.increment();
+                return;
+            }
+        }
+        try (AdaptiveLimiter.Permit held = permit.orElse(null)) {
+            switch (event.getEventType()) {
+                case RAG_INGEST -> deliverIngestion(event);
+                case DOCUMENT_PURGE -> documentReaper.purge(event.getAggregateId());
+            }
+            
+            LocalDateTime now = LocalDateTime.now();
+            event.setStatus(OutboxStatus.DISPATCHED);
+            event.setDispatchedAt(now);
+            event.setLastError(null);
+            dispatchLag.record(Duration.between(event.getCreatedAt(), now));
+            dispatchedCounter.increment();
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            event.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+            
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(OutboxStatus.FAILED);
+                failedCounter.increment();
+                logger.error("Giving up on outbox event {} for document {} after {} attempts: {}",
+                    event.getId(), event.getAggregateId(), event.getAttempts(), error);
+            } else {
+                event.setNextAttemptAt(LocalDateTime.now().plus(backoff(event.getAttempts())));
+                retriedCounter.increment();
+                logger.warn("Outbox event {} for document {} failed (attempt {}/{}), retrying at {}: {}",
+                    event.getId(), event.getAggregateId(), event.getAttempts(), maxAttempts,
+                    event.getNextAttemptAt(), error);
+            }
+        }
+    }
+    
+    private void deliverIngestion(OutboxEvent event) {
+        // Deleted before its ingestion went out; ingesting now would leave a RAG entry
+        // behind that the purge may already have looked for
+        if (!documentRepository.existsByIdAndProcessingStatusNot(event.getAggregateId(), ProcessingStatus.DELETED)) {
+            logger.info("Skipping ingestion of deleted document {}", event.getAggregateId());
+            return;
+        }
+        
+        Map<String, String> payload = outboxService.readPayload(event);
+        String correlationId = payload.get("correlationId");
+        MDC.put("correlationId", correlationId);
+        try {
+            String fileUrl = storageService.getFileUrl(payload.get("filePath"), payload.get("userId"));
+            IngestMessage message = new IngestMessage(
+                payload.get("documentId"),
+                payload.get("userId"),
+                fileUrl,
+                payload.get("fileName"),
+                correlationId
+            );
+            long start = System.nanoTime();
+            try {
+                ingestMessageSender.send(message);
+            } catch (RuntimeException e) {
+                ingestFailedCounter.increment();
+                throw e;
+            }
+            ingestSendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            ingestSentCounter.increment();
+        } finally {
+            MDC.remove("correlationId");
+        }
+    }
+    
+    /**
+     * Exponential backoff capped at the configured maximum, with jitter so that events
+     * failing together do not retry in lockstep.
+     */
+    private Duration backoff(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxBackoffMs);
+        long jitter = ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+        return Duration.ofMillis(delay - delay / 10 + jitter);
+    }
+    
+    private void refreshGauges() {
+        queueDepth.set(outboxEventRepository.countByStatus(OutboxStatus.PENDING));
+        LocalDateTime oldest = outboxEventRepository.findOldestCreatedAt(OutboxStatus.PENDING);
+        oldestPendingAgeMs.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0);
+    }
+}
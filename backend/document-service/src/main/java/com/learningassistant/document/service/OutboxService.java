@@ -0,0 +1,88 @@
+package com.learningassistant.document.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.OutboxEvent;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records side effects in the outbox table. Callers invoke it inside the transaction that
+ * saves the document, so the event is stored if and only if the document is.
+ */
+@Service
+public class OutboxService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+    
+    public void enqueueIngestion(Document document, String correlationId) {
+        outboxEventRepository.save(ingestionEvent(document, correlationId));
+        logger.debug("Queued RAG ingestion for document {} | CorrelationId: {}", document.getId(), correlationId);
+    }
+    
+    /**
+     * Queue the background purge of a tombstoned document's storage, RAG entry and row
+     */
+    public void enqueuePurge(Document document) {
+        Map<String, String> payload = new HashMap<>();
+        payload.put("documentId", document.getId());
+        outboxEventRepository.save(new OutboxEvent(OutboxEventType.DOCUMENT_PURGE, document.getId(), toJson(payload)));
+        logger.debug("Queued purge of document {}", document.getId());
+    }
+    
+    /**
+     * Queue ingestion for several documents with one batched insert
+     */
+    public void enqueueIngestions(List<Document> documents, String correlationId) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        outboxEventRepository.saveAll(documents.stream()
+                .map(document -> ingestionEvent(document, correlationId))
+                .toList());
+        logger.debug("Queued RAG ingestion for {} documents | CorrelationId: {}", documents.size(), correlationId);
+    }
+    
+    private OutboxEvent ingestionEvent(Document document, String correlationId) {
+        Map<String, String> payload = new HashMap<>();
+        payload.put("documentId", document.getId());
+        payload.put("userId", document.getUserId());
+        payload.put("filePath", document.getFilePath());
+        payload.put("fileName", document.getFileName());
+        payload.put("correlationId", correlationId);
+        return new OutboxEvent(OutboxEventType.RAG_INGEST, document.getId(), toJson(payload));
+    }
+    
+    Map<String, String> readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(),
+                objectMapper.getTypeFactory().constructMapType(Map.class, String.class, String.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox payload for event " + event.getId(), e);
+        }
+    }
+    
+    private String toJson(Map<String, String> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.repository.PendingStatusUpdateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Applies deferred status callbacks whose document committed after the upload path checked
+ * for them, and expires callbacks for documents that never appeared.
+ */
+@Component
+public class PendingStatusUpdateSweeper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PendingStatusUpdateSweeper.class);
+    
+    private final PendingStatusUpdateRepository pendingStatusUpdateRepository;
+    private final DocumentService documentService;
+    
+    @Value("${pending-status-updates.ttl-minutes:60}")
+    private long ttlMinutes;
+    
+    public PendingStatusUpdateSweeper(PendingStatusUpdateRepository pendingStatusUpdateRepository,
+                                      DocumentService documentService) {
+        this.pendingStatusUpdateRepository = pendingStatusUpdateRepository;
+        this.documentService = documentService;
+    }
+    
+    @Scheduled(fixedDelayString = "${pending-status-updates.sweep-interval-ms:5000}")
+    public void sweep() {
+        try {
+            List<String> applicable = pendingStatusUpdateRepository.findApplicableDocumentIds();
+            for (String documentId : applicable) {
+                documentService.applyPendingStatusUpdate(documentId);
+            }
+            
+            int expired = pendingStatusUpdateRepository.deleteReceivedBefore(LocalDateTime.now().minusMinutes(ttlMinutes));
+            if (expired > 0) {
+                logger.warn("Expired {} status updates for documents that were never saved", expired);
+            }
+        } catch (Exception e) {
+            logger.error("Pending status update sweep failed: {}", e.getMessage(), e);
+        }
+    }
+}
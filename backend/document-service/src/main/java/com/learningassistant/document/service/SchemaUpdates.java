@@ -0,0 +1,80 @@
+package com.learningassistant.document.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Applies the schema changes Hibernate's ddl-auto=update cannot make. Each script under
+ * db/updates runs once, in file name order, after Hibernate has updated the schema and
+ * before the web server starts. Applied scripts are recorded in schema_updates in the same
+ * transaction as their statements, so a script that fails is tried again on the next
+ * startup and one that succeeded never runs again. Statements should still be guarded
+ * (IF EXISTS and the like), since two replicas starting together may both run a script
+ * before either records it.
+ */
+@Component
+public class SchemaUpdates implements SmartInitializingSingleton {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SchemaUpdates.class);
+    
+    private static final String SCRIPTS = "classpath:db/updates/*.sql";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    public SchemaUpdates(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_updates (" +
+            "script VARCHAR(255) PRIMARY KEY, applied_at TIMESTAMP NOT NULL)");
+        Set<String> applied = new HashSet<>(jdbcTemplate.queryForList("SELECT script FROM schema_updates", String.class));
+        
+        for (Resource script : scripts()) {
+            String name = script.getFilename();
+            if (applied.contains(name)) {
+                continue;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    ScriptUtils.executeSqlScript(connection, script);
+                    return null;
+                });
+                jdbcTemplate.update("INSERT INTO schema_updates (script, applied_at) VALUES (?, ?)",
+                    name, Timestamp.valueOf(LocalDateTime.now()));
+            });
+            logger.info("Applied schema update {}", name);
+        }
+    }
+    
+    private Resource[] scripts() {
+        try {
+            Resource[] scripts = new PathMatchingResourcePatternResolver().getResources(SCRIPTS);
+            Arrays.sort(scripts, Comparator.comparing(Resource::getFilename));
+            return scripts;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list schema updates", e);
+        }
+    }
+}
@@ -1,28 +1,83 @@
 package com.learningassistant.document.service;
 
 import com.azure.messaging.servicebus.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learningassistant.document.messaging.IngestMessage;
+import com.learningassistant.document.messaging.IngestMessageSender;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Sends ingest messages to a Service Bus queue in batches. Used when ingest.transport is
+ * service-bus.
+ * <p>
+ * Messages are queued and a single flusher thread collects them until max-messages are
+ * waiting or the linger time since the first one runs out. A {@link ServiceBusMessageBatch}
+ * may not mix session ids, so the collected messages are grouped by session and each group
+ * is packed into as few batches as the broker's size limit allows. The session id is the
+ * user id, which keeps each user's messages in order and lets their uploads share a batch.
+ * A send returns once its batch has been accepted, so the outbox only marks an event
+ * dispatched after the broker has it.
+ */
 @Service
-public class ServiceBusService {
+@ConditionalOnProperty(name = "ingest.transport", havingValue = "service-bus")
+public class ServiceBusService implements IngestMessageSender {
     
     private static final Logger logger = LoggerFactory.getLogger(ServiceBusService.class);
     
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    
     @Value("${service-bus.connection-string}")
     private String connectionString;
     
     @Value("${service-bus.queue-name}")
     private String queueName;
     
+    @Value("${service-bus.batch.max-messages:100}")
+    private int maxMessages;
+    
+    @Value("${service-bus.batch.linger-ms:20}")
+    private long lingerMs;
+    
+    @Value("${service-bus.batch.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${service-bus.batch.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+    
     private ServiceBusSenderClient senderClient;
+    private BlockingQueue<PendingMessage> pending;
+    private Thread flusher;
+    private volatile boolean running;
+    
+    private DistributionSummary batchSize;
+    
+    public ServiceBusService(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
     
     @PostConstruct
     public void init() {
@@ -31,9 +86,9 @@ public class ServiceBusService {
                 ServiceBusClientBuilder builder = new ServiceBusClientBuilder()
                         .connectionString(connectionString);
                 
-                senderClient = builder.sender()
+                start(builder.sender()
                         .queueName(queueName)
-                        .buildClient();
+                        .buildClient());
                 
                 logger.info("Service Bus sender client initialized for queue: {}", queueName);
             } else {
@@ -44,52 +99,63 @@ public class ServiceBusService {
         }
     }
     
-    public void sendDocumentIngestMessage(String documentId, String userId, String blobUrl, 
-                                         String fileName, String contentType) {
+    void start(ServiceBusSenderClient client) {
+        senderClient = client;
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        batchSize = DistributionSummary.builder("ingest.send.batch.size")
+                .description("Messages per Service Bus batch")
+                .register(meterRegistry);
+        Gauge.builder("ingest.send.queue.depth", pending, BlockingQueue::size)
+                .description("Messages waiting to be batched")
+                .register(meterRegistry);
+        
+        running = true;
+        flusher = new Thread(this::flushLoop, "servicebus-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    @Override
+    public void send(IngestMessage ingest) {
         if (senderClient == null) {
-            logger.warn("Service Bus not configured. Skipping message send.");
-            return;
+            // Fail the send so the outbox keeps the event instead of dropping it
+            throw new IllegalStateException("Service Bus is not configured");
+        }
+        
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!running || !pending.offer(new PendingMessage(toServiceBusMessage(ingest), result))) {
+            throw new IllegalStateException("Service Bus send queue is full");
         }
         
         try {
-            // Create message body
-            Map<String, String> messageBody = new HashMap<>();
-            messageBody.put("document_id", documentId);
-            messageBody.put("user_id", userId);
-            messageBody.put("blob_url", blobUrl);
-            messageBody.put("file_name", fileName);
-            messageBody.put("content_type", contentType);
-            messageBody.put("container_name", "documents");
-            messageBody.put("trigger_indexer", "true");
-            
-            // Convert to JSON string
-            String jsonMessage = new com.fasterxml.jackson.databind.ObjectMapper()
-                    .writeValueAsString(messageBody);
-            
-            // Create Service Bus message with session
-            ServiceBusMessage message = new ServiceBusMessage(jsonMessage);
-            message.setSessionId(documentId); // Use documentId as session ID for ordered processing
-            message.setMessageId(documentId);
-            message.setContentType("application/json");
-            
-            // Add application properties
-            message.getApplicationProperties().put("DocumentId", documentId);
-            message.getApplicationProperties().put("UserId", userId);
-            message.getApplicationProperties().put("FileName", fileName);
-            
-            // Send message
-            senderClient.sendMessage(message);
-            
-            logger.info("Sent ingest message for document {} to Service Bus queue {}", documentId, queueName);
-            
-        } catch (Exception e) {
-            logger.error("Error sending message to Service Bus: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to send message to Service Bus", e);
+            result.get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending document " + ingest.documentId(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to send document " + ingest.documentId() + " to Service Bus",
+                e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out sending document " + ingest.documentId() + " to Service Bus", e);
         }
     }
     
+    @Override
+    public String getMode() {
+        return "service-bus";
+    }
+    
     @PreDestroy
     public void cleanup() {
+        running = false;
+        if (flusher != null) {
+            try {
+                // Let the flusher send what is already queued
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (senderClient != null) {
             try {
                 senderClient.close();
@@ -99,4 +165,127 @@ public class ServiceBusService {
             }
         }
     }
+    
+    private ServiceBusMessage toServiceBusMessage(IngestMessage ingest) {
+        // Create message body
+        Map<String, String> messageBody = new HashMap<>();
+        messageBody.put("document_id", ingest.documentId());
+        messageBody.put("user_id", ingest.userId());
+        messageBody.put("blob_url", ingest.documentUrl());
+        messageBody.put("file_name", ingest.fileName());
+        messageBody.put("correlation_id", ingest.correlationId());
+        messageBody.put("container_name", "documents");
+        messageBody.put("trigger_indexer", "true");
+        
+        try {
+            ServiceBusMessage message = new ServiceBusMessage(objectMapper.writeValueAsBytes(messageBody));
+            message.setSessionId(ingest.userId()); // Ordered per user, and one batch per user
+            message.setMessageId(ingest.documentId());
+            message.setContentType("application/json");
+            if (ingest.correlationId() != null) {
+                message.setCorrelationId(ingest.correlationId());
+            }
+            
+            // Add application properties
+            message.getApplicationProperties().put("DocumentId", ingest.documentId());
+            message.getApplicationProperties().put("UserId", ingest.userId());
+            message.getApplicationProperties().put("FileName", ingest.fileName());
+            return message;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize ingest message for document " + ingest.documentId(), e);
+        }
+    }
+    
+    private void flushLoop() {
+        List<PendingMessage> collected = new ArrayList<>(maxMessages);
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingMessage first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                collected.add(first);
+                
+                // Linger briefly so concurrent dispatches share round trips
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (collected.size() < maxMessages) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    collected.add(next);
+                }
+                
+                Map<String, List<PendingMessage>> bySession = new LinkedHashMap<>();
+                for (PendingMessage message : collected) {
+                    bySession.computeIfAbsent(message.message().getSessionId(), session -> new ArrayList<>()).add(message);
+                }
+                for (List<PendingMessage> session : bySession.values()) {
+                    sendSession(session);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(collected, e);
+                return;
+            } catch (Exception e) {
+                logger.error("Error sending batch to Service Bus: {}", e.getMessage(), e);
+                fail(collected, e);
+            } finally {
+                collected.clear();
+            }
+        }
+    }
+    
+    /**
+     * Send one session's messages, starting a new batch whenever the current one is full
+     */
+    private void sendSession(List<PendingMessage> messages) {
+        ServiceBusMessageBatch batch = senderClient.createMessageBatch();
+        List<PendingMessage> inBatch = new ArrayList<>();
+        for (PendingMessage message : messages) {
+            if (batch.tryAddMessage(message.message())) {
+                inBatch.add(message);
+                continue;
+            }
+            if (!inBatch.isEmpty()) {
+                sendBatch(batch, inBatch);
+                batch = senderClient.createMessageBatch();
+                inBatch = new ArrayList<>();
+            }
+            if (batch.tryAddMessage(message.message())) {
+                inBatch.add(message);
+            } else {
+                message.result().completeExceptionally(
+                    new IllegalArgumentException("Message exceeds the Service Bus batch size limit"));
+            }
+        }
+        if (!inBatch.isEmpty()) {
+            sendBatch(batch, inBatch);
+        }
+    }
+    
+    private void sendBatch(ServiceBusMessageBatch batch, List<PendingMessage> messages) {
+        try {
+            senderClient.sendMessages(batch);
+        } catch (Exception e) {
+            logger.error("Error sending {} messages to Service Bus: {}", messages.size(), e.getMessage(), e);
+            fail(messages, e);
+            return;
+        }
+        batchSize.record(messages.size());
+        for (PendingMessage message : messages) {
+            message.result().complete(null);
+        }
+        logger.info("Sent {} ingest messages to Service Bus queue {}", messages.size(), queueName);
+    }
+    
+    private static void fail(List<PendingMessage> messages, Exception cause) {
+        for (PendingMessage message : messages) {
+            message.result().completeExceptionally(cause);
+        }
+    }
+    
+    private record PendingMessage(ServiceBusMessage message, CompletableFuture<Void> result) {
+    }
 }
@@ -0,0 +1,48 @@
+package com.learningassistant.document.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Garbage-collects chunked uploads that have not been touched for a while: abandoned ones
+ * have their chunks discarded, and completed ones just lose their session record.
+ */
+@Component
+public class UploadSessionSweeper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionSweeper.class);
+    private static final int BATCH_SIZE = 100;
+    
+    private final ChunkedUploadService chunkedUploadService;
+    
+    @Value("${chunked-upload.abandon-after:PT24H}")
+    private Duration abandonAfter;
+    
+    public UploadSessionSweeper(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+    
+    @Scheduled(fixedDelayString = "${chunked-upload.sweep-interval-ms:600000}")
+    public void sweep() {
+        try {
+            LocalDateTime before = LocalDateTime.now().minus(abandonAfter);
+            int deleted;
+            int total = 0;
+            do {
+                deleted = chunkedUploadService.deleteInactiveSince(before, BATCH_SIZE);
+                total += deleted;
+            } while (deleted == BATCH_SIZE);
+            if (total > 0) {
+                logger.info("Removed {} inactive upload sessions", total);
+            }
+        } catch (Exception e) {
+            logger.error("Upload session sweep failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.learningassistant.document.service;
+
+/**
+ * Helpers for working on UTF-8 encoded text without decoding all of it. Character
+ * positions count UTF-16 code units, matching {@link String#length()}.
+ */
+final class Utf8Text {
+    
+    private Utf8Text() {
+    }
+    
+    /**
+     * Number of UTF-16 code units the encoded text decodes to.
+     */
+    static int charLength(byte[] utf8) {
+        return charsBetween(utf8, 0, utf8.length);
+    }
+    
+    /**
+     * Byte offset at which the given character position starts, starting the scan at
+     * {@code fromByte} which corresponds to character position {@code fromChar}.
+     * Positions past the end resolve to the array length.
+     */
+    static int byteOffset(byte[] utf8, int fromByte, int fromChar, int charPosition) {
+        int chars = fromChar;
+        int i = fromByte;
+        while (i < utf8.length && chars < charPosition) {
+            int width = sequenceWidth(utf8[i]);
+            chars += width == 4 ? 2 : 1;
+            i += width;
+        }
+        return Math.min(i, utf8.length);
+    }
+    
+    private static int charsBetween(byte[] utf8, int from, int to) {
+        int chars = 0;
+        int i = from;
+        while (i < to) {
+            int width = sequenceWidth(utf8[i]);
+            chars += width == 4 ? 2 : 1;
+            i += width;
+        }
+        return chars;
+    }
+    
+    private static int sequenceWidth(byte lead) {
+        if ((lead & 0x80) == 0) {
+            return 1;
+        }
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        }
+        if ((lead & 0xF0) == 0xE0) {
+            return 3;
+        }
+        if ((lead & 0xF8) == 0xF0) {
+            return 4;
+        }
+        // Stray continuation byte; decoding will replace it with one character
+        return 1;
+    }
+}
@@ -1,24 +1,60 @@
 package com.learningassistant.document.storage;
 
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobDownloadResponse;
+import com.azure.storage.blob.models.BlobHttpHeaders;
+import com.azure.storage.blob.models.BlobProperties;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import com.azure.storage.blob.options.BlobDownloadToFileOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.azure.storage.blob.options.BlockBlobCommitBlockListOptions;
 import com.azure.storage.blob.sas.BlobSasPermission;
 import com.azure.storage.blob.sas.BlobServiceSasSignatureValues;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @ConditionalOnProperty(name = "storage.type", havingValue = "azure")
@@ -32,7 +68,37 @@ public class AzureBlobStorageService implements StorageService {
     @Value("${storage.azure.container-name}")
     private String containerName;
     
+    // Transfer tuning: uploads above the single-shot limit are staged as parallel blocks,
+    // and downloads larger than one range are fetched as parallel ranges
+    @Value("${storage.azure.transfer.block-size-bytes:8388608}")
+    private long blockSizeBytes;
+    
+    @Value("${storage.azure.transfer.max-single-upload-bytes:8388608}")
+    private long maxSingleUploadBytes;
+    
+    @Value("${storage.azure.transfer.download-range-bytes:4194304}")
+    private long downloadRangeBytes;
+    
+    @Value("${storage.azure.transfer.max-concurrency:8}")
+    private int maxConcurrency;
+    
+    // Signed URLs are valid for sas-validity and reissued after sas-refresh-after, so a cached
+    // URL handed out always has most of its validity left
+    @Value("${storage.azure.sas-validity:P7D}")
+    private Duration sasValidity;
+    
+    @Value("${storage.azure.sas-refresh-after:P1D}")
+    private Duration sasRefreshAfter;
+    
+    @Value("${storage.azure.sas-cache-size:10000}")
+    private long sasCacheSize;
+    
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+    
     private BlobContainerClient containerClient;
+    private ExecutorService rangeDownloader;
+    private Cache<String, String> signedUrls;
     
     @Override
     public void init() {
@@ -43,6 +109,24 @@ public class AzureBlobStorageService implements StorageService {
             
             containerClient = blobServiceClient.getBlobContainerClient(containerName);
             
+            signedUrls = Caffeine.newBuilder()
+                    .expireAfterWrite(sasRefreshAfter)
+                    .maximumSize(sasCacheSize)
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, signedUrls, "blob.sas.url");
+            }
+            
+            if (rangeDownloader == null) {
+                AtomicInteger threadNumber = new AtomicInteger();
+                rangeDownloader = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                    Thread thread = new Thread(runnable, "blob-range-download-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            
             // Create container if it doesn't exist
             if (!containerClient.exists()) {
                 containerClient.create();
@@ -71,23 +155,103 @@ public class AzureBlobStorageService implements StorageService {
         // Generate unique blob name with user prefix
         String blobName = userId + "/" + UUID.randomUUID().toString() + extension;
         
+        return storeFile(file, userId, blobName);
+    }
+    
+    @Override
+    public String storeFile(MultipartFile file, String userId, String blobName) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Failed to store empty file");
+        }
+        
+        String originalFilename = file.getOriginalFilename();
         BlobClient blobClient = containerClient.getBlobClient(blobName);
         
-        // Upload file to blob storage
-        blobClient.upload(file.getInputStream(), file.getSize(), true);
+        String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
         
-        // Set metadata
-        blobClient.setMetadata(java.util.Map.of(
-            "originalFilename", originalFilename != null ? originalFilename : "unknown",
-            "userId", userId,
-            "contentType", file.getContentType() != null ? file.getContentType() : "application/octet-stream"
-        ));
+        // Stage blocks in parallel and set metadata and headers in the same commit,
+        // instead of a separate setMetadata round trip
+        try (InputStream in = file.getInputStream()) {
+            BlobParallelUploadOptions options = new BlobParallelUploadOptions(BinaryData.fromStream(in, file.getSize()))
+                    .setParallelTransferOptions(new ParallelTransferOptions()
+                            .setBlockSizeLong(blockSizeBytes)
+                            .setMaxSingleUploadSizeLong(maxSingleUploadBytes)
+                            .setMaxConcurrency(maxConcurrency))
+                    .setHeaders(new BlobHttpHeaders().setContentType(contentType))
+                    .setMetadata(Map.of(
+                        "originalFilename", originalFilename != null ? originalFilename : "unknown",
+                        "userId", userId,
+                        "contentType", contentType
+                    ));
+            blobClient.uploadWithResponse(options, null, Context.NONE);
+        }
         
         logger.info("Uploaded file: {} to blob: {}", originalFilename, blobName);
         
         return blobName;
     }
     
+    @Override
+    public String chunkedUploadPath(String userId, String fileName) {
+        String extension = "";
+        if (fileName != null && fileName.contains(".")) {
+            extension = fileName.substring(fileName.lastIndexOf("."));
+        }
+        return userId + "/" + UUID.randomUUID().toString() + extension;
+    }
+    
+    /**
+     * Each chunk is staged as an uncommitted block of the final blob
+     */
+    @Override
+    public void writeChunk(String blobName, String uploadId, int index, long offset, InputStream content, long length) throws IOException {
+        try {
+            containerClient.getBlobClient(blobName).getBlockBlobClient()
+                    .stageBlock(blockId(uploadId, index), content, length);
+        } catch (BlobStorageException e) {
+            throw new IOException("Failed to stage chunk " + index + " of " + blobName + ": " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Commit the staged blocks in chunk order; the blob becomes visible only now
+     */
+    @Override
+    public void completeChunkedUpload(String blobName, String uploadId, int chunkCount, String contentType) throws IOException {
+        List<String> blockIds = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            blockIds.add(blockId(uploadId, i));
+        }
+        try {
+            containerClient.getBlobClient(blobName).getBlockBlobClient().commitBlockListWithResponse(
+                    new BlockBlobCommitBlockListOptions(blockIds)
+                            .setHeaders(new BlobHttpHeaders().setContentType(
+                                    contentType != null ? contentType : "application/octet-stream")),
+                    null, Context.NONE);
+            logger.info("Committed {} blocks of chunked upload {} to blob: {}", chunkCount, uploadId, blobName);
+        } catch (BlobStorageException e) {
+            throw new IOException("Failed to commit chunked upload " + uploadId + ": " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void abortChunkedUpload(String blobName, String uploadId) {
+        // Uncommitted blocks cannot be deleted individually; the service discards them
+        // after a week if the blob is never committed
+        logger.debug("Abandoned chunked upload {} for blob: {}", uploadId, blobName);
+    }
+    
+    /**
+     * Block IDs of one blob must all have the same length; the upload ID is a fixed-length
+     * UUID and the index is zero-padded
+     */
+    private static String blockId(String uploadId, int index) {
+        String id = String.format("%s-%06d", uploadId, index);
+        return Base64.getEncoder().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+    
     @Override
     public Path loadFile(String blobName) {
         // For Azure Blob, return a temporary path (not typically used)
@@ -95,31 +259,141 @@ public class AzureBlobStorageService implements StorageService {
     }
     
     @Override
-    public String readFileAsText(String blobName) throws IOException {
+    public InputStream openFile(String blobName) throws IOException {
         try {
-            BlobClient blobClient = containerClient.getBlobClient(blobName);
-
-            if (!blobClient.exists()) {
-                throw new IOException("Blob not found: " + blobName);
+            return containerClient.getBlobClient(blobName).openInputStream();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new IOException("Blob not found: " + blobName, e);
             }
-
-            // Download blob content as byte array
-            byte[] content = blobClient.downloadContent().toBytes();
-
-            // Convert to string
-            String text = new String(content, java.nio.charset.StandardCharsets.UTF_8);
-
+            throw new IOException("Failed to open blob: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public String readFileAsText(String blobName) throws IOException {
+        try {
+            byte[] content = downloadBytes(containerClient.getBlobClient(blobName));
             logger.info("Read {} bytes from blob: {}", content.length, blobName);
-            return text;
+            return new String(content, StandardCharsets.UTF_8);
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new IOException("Blob not found: " + blobName, e);
+            }
+            logger.error("Failed to read blob as text: {}", blobName, e);
+            throw new IOException("Failed to read file content: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Failed to read blob as text: {}", blobName, e);
             throw new IOException("Failed to read file content: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Download a whole blob. The first range request also reports the total size, so small
+     * blobs take a single round trip; the rest of a large blob is fetched in parallel ranges
+     * pinned to the first response's ETag.
+     */
+    byte[] downloadBytes(BlobClient blobClient) throws IOException {
+        ByteArrayOutputStream firstRange = new ByteArrayOutputStream();
+        BlobDownloadResponse response;
+        try {
+            response = blobClient.downloadStreamWithResponse(
+                firstRange, new BlobRange(0, downloadRangeBytes), null, null, false, null, Context.NONE);
+        } catch (BlobStorageException e) {
+            // A range request against an empty blob is rejected as unsatisfiable
+            if (e.getStatusCode() == 416) {
+                return new byte[0];
+            }
+            throw e;
+        }
+        
+        long totalSize = totalSize(response.getDeserializedHeaders().getContentRange(), firstRange.size());
+        if (totalSize > Integer.MAX_VALUE - 8) {
+            throw new IOException("Blob too large to read into memory: " + totalSize + " bytes");
+        }
+        if (totalSize == firstRange.size()) {
+            return firstRange.toByteArray();
+        }
+        
+        byte[] content = new byte[(int) totalSize];
+        System.arraycopy(firstRange.toByteArray(), 0, content, 0, firstRange.size());
+        BlobRequestConditions sameVersion = new BlobRequestConditions()
+                .setIfMatch(response.getDeserializedHeaders().getETag());
+        
+        List<CompletableFuture<Void>> ranges = new ArrayList<>();
+        for (long offset = firstRange.size(); offset < totalSize; offset += downloadRangeBytes) {
+            long rangeOffset = offset;
+            long rangeLength = Math.min(downloadRangeBytes, totalSize - offset);
+            ranges.add(CompletableFuture.runAsync(() -> blobClient.downloadStreamWithResponse(
+                    new ArraySliceOutputStream(content, (int) rangeOffset),
+                    new BlobRange(rangeOffset, rangeLength), null, sameVersion, false, null, Context.NONE),
+                rangeDownloader));
+        }
+        try {
+            CompletableFuture.allOf(ranges.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            ranges.forEach(range -> range.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to download blob range", e.getCause());
+        }
+        return content;
+    }
+    
+    /**
+     * Download a blob to disk in parallel ranges without holding it in memory
+     */
+    @Override
+    public byte[] copyToLocalFile(String blobName, Path target) throws IOException {
+        try {
+            BlobDownloadToFileOptions options = new BlobDownloadToFileOptions(target.toString())
+                    .setParallelTransferOptions(new com.azure.storage.common.ParallelTransferOptions()
+                            .setBlockSizeLong(downloadRangeBytes)
+                            .setMaxConcurrency(maxConcurrency))
+                    .setOpenOptions(Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE, StandardOpenOption.READ));
+            BlobProperties properties = containerClient.getBlobClient(blobName)
+                    .downloadToFileWithResponse(options, null, Context.NONE)
+                    .getValue();
+            return properties.getContentMd5();
+        } catch (BlobStorageException e) {
+            if (e.getStatusCode() == 404) {
+                throw new IOException("Blob not found: " + blobName, e);
+            }
+            throw new IOException("Failed to download blob: " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Total blob size from a Content-Range header such as "bytes 0-4194303/10485760"
+     */
+    private static long totalSize(String contentRange, long fallback) {
+        if (contentRange == null) {
+            return fallback;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return fallback;
+        }
+        return Long.parseLong(contentRange.substring(slash + 1).trim());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (rangeDownloader != null) {
+            rangeDownloader.shutdownNow();
+        }
+    }
 
     @Override
     public void deleteFile(String blobName) {
         try {
+            signedUrls.invalidate(blobName);
             BlobClient blobClient = containerClient.getBlobClient(blobName);
             blobClient.delete();
             logger.info("Deleted blob: {}", blobName);
@@ -131,31 +405,7 @@ public class AzureBlobStorageService implements StorageService {
     @Override
     public String getFileUrl(String blobName, String userId) {
         try {
-            // 1.  SAS definition
-            BlobSasPermission permission = new BlobSasPermission()
-                    .setReadPermission(true);
-
-            OffsetDateTime expiry = OffsetDateTime.now(ZoneId.of("UTC")).plusDays(7);
-            OffsetDateTime start  = OffsetDateTime.now(ZoneId.of("UTC")).minusMinutes(5);
-
-            BlobServiceSasSignatureValues sasValues =
-                    new BlobServiceSasSignatureValues(expiry, permission)
-                            .setStartTime(start);
-
-            // 2.  generate SAS token
-            String sasToken = containerClient
-                    .getBlobClient(blobName)
-                    .generateSas(sasValues);   // <-- correct method
-
-            // 3.  build full URL
-            String url = containerClient
-                    .getBlobClient(blobName)
-                    .getBlobUrl()
-                    + "?" + sasToken;
-
-            logger.info("[CRITICAL] Generated SAS URL for blob {}: {}", blobName, url);
-            return url;
-
+            return signedUrls.get(blobName, this::signUrl);
         } catch (Exception e) {
             logger.error("[ERROR] Failed to create SAS for blob {}", blobName, e);
             // fall back to plain blob URL (will fail if container is private)
@@ -163,8 +413,59 @@ public class AzureBlobStorageService implements StorageService {
         }
     }
     
+    /**
+     * Clients download blobs straight from storage using the cached SAS URL
+     */
+    @Override
+    public Optional<String> getDirectDownloadUrl(String blobName, String userId) {
+        return Optional.of(getFileUrl(blobName, userId));
+    }
+    
+    /**
+     * Read-only SAS URL for one blob. Signing reuses the shared-key credential the container
+     * client was built with.
+     */
+    private String signUrl(String blobName) {
+        BlobClient blobClient = containerClient.getBlobClient(blobName);
+        
+        OffsetDateTime now = OffsetDateTime.now(ZoneId.of("UTC"));
+        OffsetDateTime expiry = now.plus(sasValidity);
+        BlobServiceSasSignatureValues sasValues =
+                new BlobServiceSasSignatureValues(expiry, new BlobSasPermission().setReadPermission(true))
+                        .setStartTime(now.minusMinutes(5)); // tolerate clock skew
+        
+        String url = blobClient.getBlobUrl() + "?" + blobClient.generateSas(sasValues);
+        logger.debug("Generated SAS URL for blob {} valid until {}", blobName, expiry);
+        return url;
+    }
+    
     @Override
     public String getStorageType() {
         return "azure";
     }
+    
+    /**
+     * Writes a downloaded range straight into its slot of the destination array
+     */
+    private static final class ArraySliceOutputStream extends OutputStream {
+        
+        private final byte[] target;
+        private int position;
+        
+        ArraySliceOutputStream(byte[] target, int offset) {
+            this.target = target;
+            this.position = offset;
+        }
+        
+        @Override
+        public void write(int b) {
+            target[position++] = (byte) b;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, target, position, len);
+            position += len;
+        }
+    }
 }
@@ -0,0 +1,432 @@
+package com.learningassistant.document.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read-through disk cache in front of remote blob storage.
+ * <p>
+ * Blobs read through {@link #readFileAsText} or {@link #loadFile} are kept in a local
+ * directory bounded by total bytes, evicting the least recently used first. Downloads are
+ * checked against the backend's MD5 and, for content-addressed blobs, the SHA-256 in their
+ * name before they are admitted; an entry not verified that way is checked before it is
+ * first served. Concurrent misses on the same blob share one download. Writes and deletes
+ * go straight to the delegate.
+ * <p>
+ * {@link #loadFile} hands each caller its own hard link to the cached file, so evicting the
+ * entry while a download is being served cannot delete the file under it. Links are
+ * removed once older than the lease time; a reader that already opened the file keeps it.
+ */
+@Service
+@Primary
+@ConditionalOnExpression("'${storage.type:local}' == 'azure' && ${storage.cache.enabled:true}")
+public class CachingStorageService implements StorageService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CachingStorageService.class);
+    
+    // Content-addressed blob paths end in the SHA-256 of their content
+    private static final Pattern CONTENT_HASH_NAME = Pattern.compile("(?:^|/)([0-9a-f]{64})(?:\\.[^/]*)?$");
+    
+    private final StorageService delegate;
+    private final Path cacheDirectory;
+    private final Path leaseDirectory;
+    private final long maxBytes;
+    private final Duration leaseTime;
+    
+    // Access-ordered index of cached blobs, guarded by itself
+    private final LinkedHashMap<String, CachedBlob> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    
+    private final Map<String, CompletableFuture<CachedBlob>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean initialized = new AtomicBoolean();
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter checksumFailures;
+    
+    public CachingStorageService(AzureBlobStorageService delegate,
+                                 @Value("${storage.cache.directory:${java.io.tmpdir}/document-blob-cache}") String cacheDirectory,
+                                 @Value("${storage.cache.max-bytes:2147483648}") long maxBytes,
+                                 @Value("${storage.cache.lease-time:PT10M}") Duration leaseTime,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cacheDirectory = Paths.get(cacheDirectory);
+        this.leaseDirectory = this.cacheDirectory.resolve("leases");
+        this.maxBytes = maxBytes;
+        this.leaseTime = leaseTime;
+        
+        hits = meterRegistry.counter("storage.cache.requests", "result", "hit");
+        misses = meterRegistry.counter("storage.cache.requests", "result", "miss");
+        evictions = meterRegistry.counter("storage.cache.evictions");
+        checksumFailures = meterRegistry.counter("storage.cache.checksum.failures");
+        Gauge.builder("storage.cache.size", this, cache -> cache.cachedBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    @Override
+    public void init() {
+        delegate.init();
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Entries are not indexed across restarts, so start from an empty directory
+            FileSystemUtils.deleteRecursively(cacheDirectory);
+            Files.createDirectories(leaseDirectory);
+            logger.info("Blob disk cache at {} (max {} bytes)", cacheDirectory, maxBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize blob cache directory", e);
+        }
+    }
+    
+    @Override
+    public String storeFile(MultipartFile file, String userId) throws IOException {
+        return delegate.storeFile(file, userId);
+    }
+    
+    @Override
+    public String storeFile(MultipartFile file, String userId, String path) throws IOException {
+        return delegate.storeFile(file, userId, path);
+    }
+    
+    /**
+     * Local copy of the blob, as a link of the caller's own that stays valid for the lease
+     * time whether or not the cache entry is evicted meanwhile
+     */
+    @Override
+    public Path loadFile(String fileName) {
+        try {
+            return lease(fileName);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load file: " + fileName, e);
+        }
+    }
+    
+    /**
+     * Streams from the delegate; a one-off read of the whole file is not worth a cache slot
+     */
+    @Override
+    public InputStream openFile(String fileName) throws IOException {
+        return delegate.openFile(fileName);
+    }
+    
+    @Override
+    public String readFileAsText(String fileName) throws IOException {
+        CachedBlob blob = fetch(fileName);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(blob.file());
+        } catch (IOException e) {
+            // Evicted between lookup and read
+            evict(fileName, blob);
+            content = Files.readAllBytes(fetch(fileName).file());
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public void deleteFile(String fileName) {
+        evict(fileName, null);
+        delegate.deleteFile(fileName);
+    }
+    
+    @Override
+    public String chunkedUploadPath(String userId, String fileName) {
+        return delegate.chunkedUploadPath(userId, fileName);
+    }
+    
+    @Override
+    public void writeChunk(String path, String uploadId, int index, long offset, InputStream content, long length) throws IOException {
+        delegate.writeChunk(path, uploadId, index, offset, content, length);
+    }
+    
+    @Override
+    public void completeChunkedUpload(String path, String uploadId, int chunkCount, String contentType) throws IOException {
+        delegate.completeChunkedUpload(path, uploadId, chunkCount, contentType);
+    }
+    
+    @Override
+    public void abortChunkedUpload(String path, String uploadId) {
+        delegate.abortChunkedUpload(path, uploadId);
+    }
+    
+    @Override
+    public String getFileUrl(String fileName, String userId) {
+        return delegate.getFileUrl(fileName, userId);
+    }
+    
+    @Override
+    public Optional<String> getDirectDownloadUrl(String fileName, String userId) {
+        return delegate.getDirectDownloadUrl(fileName, userId);
+    }
+    
+    @Override
+    public String getStorageType() {
+        return delegate.getStorageType();
+    }
+    
+    /**
+     * Remove leases older than the lease time. Readers that opened the file before keep
+     * their handle; the space is freed once they close it.
+     */
+    @Scheduled(fixedDelayString = "${storage.cache.lease-sweep-ms:60000}")
+    public void sweepLeases() {
+        if (!initialized.get()) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - leaseTime.toMillis();
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(leaseDirectory, "*.lease")) {
+            for (Path lease : leases) {
+                // The link shares the cached file's timestamps, so its age is in the name
+                String name = lease.getFileName().toString();
+                try {
+                    if (Long.parseLong(name.substring(0, name.indexOf('-'))) < expiredBefore) {
+                        deleteQuietly(lease);
+                    }
+                } catch (RuntimeException e) {
+                    deleteQuietly(lease);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep blob cache leases: {}", e.getMessage());
+        }
+    }
+    
+    long cachedBytes() {
+        synchronized (index) {
+            return cachedBytes;
+        }
+    }
+    
+    private CachedBlob fetch(String fileName) throws IOException {
+        CachedBlob cached;
+        synchronized (index) {
+            cached = index.get(fileName);
+        }
+        if (cached != null && cached.verifiedOrCheck()) {
+            hits.increment();
+            return cached;
+        }
+        if (cached != null) {
+            checksumFailures.increment();
+            logger.warn("Cached copy of {} failed its checksum, downloading again", fileName);
+            evict(fileName, cached);
+        }
+        
+        // Only the first concurrent miss downloads; the others wait for its result
+        CompletableFuture<CachedBlob> download = new CompletableFuture<>();
+        CompletableFuture<CachedBlob> existing = inFlight.putIfAbsent(fileName, download);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        
+        misses.increment();
+        try {
+            CachedBlob blob = download(fileName);
+            download.complete(blob);
+            return blob;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(fileName, download);
+        }
+    }
+    
+    private Path lease(String fileName) throws IOException {
+        Path lease = leaseDirectory.resolve(System.currentTimeMillis() + "-" + UUID.randomUUID() + ".lease");
+        CachedBlob blob = fetch(fileName);
+        try {
+            Files.createLink(lease, blob.file());
+        } catch (NoSuchFileException e) {
+            // Evicted between lookup and link
+            evict(fileName, blob);
+            Files.createLink(lease, fetch(fileName).file());
+        } catch (UnsupportedOperationException e) {
+            // No hard links on this file system; the caller gets a copy instead
+            Files.copy(blob.file(), lease);
+        }
+        return lease;
+    }
+    
+    private CachedBlob download(String fileName) throws IOException {
+        Path target = cacheDirectory.resolve(sha256Hex(fileName.getBytes(StandardCharsets.UTF_8)) + ".blob");
+        Path tempFile = Files.createTempFile(cacheDirectory, "download-", ".tmp");
+        try {
+            byte[] expectedMd5 = delegate.copyToLocalFile(fileName, tempFile);
+            
+            Digests digests = digest(tempFile);
+            if (expectedMd5 != null && !Arrays.equals(expectedMd5, digests.md5())) {
+                checksumFailures.increment();
+                throw new IOException("MD5 mismatch downloading " + fileName);
+            }
+            Matcher contentHash = CONTENT_HASH_NAME.matcher(fileName);
+            if (contentHash.find() && !contentHash.group(1).equals(digests.sha256())) {
+                checksumFailures.increment();
+                throw new IOException("SHA-256 mismatch downloading " + fileName);
+            }
+            
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // Just hashed above, so the first read need not check it again
+            CachedBlob blob = new CachedBlob(target, Files.size(target), digests.sha256(), true);
+            admit(fileName, blob);
+            return blob;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+    
+    private void admit(String fileName, CachedBlob blob) {
+        synchronized (index) {
+            CachedBlob previous = index.put(fileName, blob);
+            if (previous != null) {
+                cachedBytes -= previous.size();
+            }
+            cachedBytes += blob.size();
+            
+            Iterator<Map.Entry<String, CachedBlob>> eldest = index.entrySet().iterator();
+            while (cachedBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, CachedBlob> entry = eldest.next();
+                if (entry.getValue() == blob) {
+                    // Keep the blob just fetched even if it alone exceeds the budget
+                    continue;
+                }
+                eldest.remove();
+                cachedBytes -= entry.getValue().size();
+                deleteQuietly(entry.getValue().file());
+                evictions.increment();
+            }
+        }
+    }
+    
+    /**
+     * Drop the entry for fileName, or only if it is still the given one when expected is set
+     */
+    private void evict(String fileName, CachedBlob expected) {
+        synchronized (index) {
+            CachedBlob current = index.get(fileName);
+            if (current == null || (expected != null && current != expected)) {
+                return;
+            }
+            index.remove(fileName);
+            cachedBytes -= current.size();
+            deleteQuietly(current.file());
+        }
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cached blob {}: {}", file, e.getMessage());
+        }
+    }
+    
+    private static Digests digest(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, read);
+                sha256.update(buffer, 0, read);
+            }
+            return new Digests(md5.digest(), HexFormat.of().formatHex(sha256.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest algorithm not available", e);
+        }
+    }
+    
+    private static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private record Digests(byte[] md5, String sha256) {
+    }
+    
+    /**
+     * A cached blob. Its checksum is re-checked before it is first served, unless it was
+     * verified as it was downloaded.
+     */
+    private static final class CachedBlob {
+        
+        private final Path file;
+        private final long size;
+        private final String sha256;
+        private volatile boolean verified;
+        
+        CachedBlob(Path file, long size, String sha256, boolean verified) {
+            this.file = file;
+            this.size = size;
+            this.sha256 = sha256;
+            this.verified = verified;
+        }
+        
+        Path file() {
+            return file;
+        }
+        
+        long size() {
+            return size;
+        }
+        
+        boolean verifiedOrCheck() {
+            if (verified) {
+                return true;
+            }
+            try {
+                verified = Files.size(file) == size && digest(file).sha256().equals(sha256);
+            } catch (IOException e) {
+                verified = false;
+            }
+            return verified;
+        }
+    }
+}
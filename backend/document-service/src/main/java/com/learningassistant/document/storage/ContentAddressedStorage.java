@@ -0,0 +1,264 @@
+package com.learningassistant.document.storage;
+
+import com.learningassistant.document.model.StoredBlob;
+import com.learningassistant.document.repository.StoredBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deduplicating layer on top of {@link StorageService}. Each distinct content is stored
+ * once under a path derived from its SHA-256 and reference-counted by the documents
+ * that point to it. Files are only deleted by the sweep, under the blob's row lock.
+ */
+@Component
+public class ContentAddressedStorage {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ContentAddressedStorage.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+    private static final int SWEEP_BATCH_SIZE = 100;
+    
+    private final StorageService storageService;
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${storage.content-addressed:true}")
+    private boolean enabled;
+    
+    // Must comfortably exceed the time between an upload writing its file and registering
+    // it, since a blob swept in that window would be registered without a file
+    @Value("${storage.released-blob-retention:PT1H}")
+    private Duration releasedRetention;
+    
+    public ContentAddressedStorage(StorageService storageService, StoredBlobRepository storedBlobRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.storageService = storageService;
+        this.storedBlobRepository = storedBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Store an uploaded file, skipping the write when identical content is already stored.
+     * The returned content holds one reference that must be released if the caller fails
+     * to persist the document pointing to it.
+     */
+    public StoredContent store(MultipartFile file, String userId) throws IOException {
+        if (!enabled) {
+            return new StoredContent(storageService.storeFile(file, userId), null, false);
+        }
+        
+        // The hash has to be known before writing, otherwise the write cannot be skipped.
+        // Multipart files are spooled locally, so this pass does not touch remote storage.
+        String contentHash = hash(file);
+        
+        Optional<String> existingPath = reference(contentHash);
+        if (existingPath.isPresent()) {
+            logger.info("Reusing stored blob {} for {}", contentHash, file.getOriginalFilename());
+            return new StoredContent(existingPath.get(), contentHash, true);
+        }
+        
+        String filePath = storageService.storeFile(file, userId, blobPath(contentHash, file.getOriginalFilename()));
+        StoredContent stored = register(contentHash, filePath, file.getSize());
+        if (!stored.filePath().equals(filePath)) {
+            storageService.deleteFile(filePath);
+        }
+        return stored;
+    }
+    
+    /**
+     * Take over a file that is already in storage, such as a completed chunked upload. If
+     * identical content is stored elsewhere, the returned content points at that blob and
+     * is marked deduplicated; the caller's file is then left in place for the caller to
+     * delete once the document pointing at the blob has committed. Either way the returned
+     * content holds one reference, as with {@link #store}.
+     */
+    public StoredContent adopt(String filePath, long fileSize) throws IOException {
+        if (!enabled) {
+            return new StoredContent(filePath, null, false);
+        }
+        
+        String contentHash;
+        try (InputStream in = storageService.openFile(filePath)) {
+            contentHash = hash(in);
+        }
+        
+        // A retried completion finds the blob it registered before under the same path
+        Optional<String> existingPath = reference(contentHash);
+        if (existingPath.isPresent()) {
+            boolean elsewhere = !existingPath.get().equals(filePath);
+            if (elsewhere) {
+                logger.info("Reusing stored blob {} for {}", contentHash, filePath);
+            }
+            return new StoredContent(existingPath.get(), contentHash, elsewhere);
+        }
+        return register(contentHash, filePath, fileSize);
+    }
+    
+    /**
+     * Whether a blob is registered at the path, so the file must not be deleted outside
+     * {@link #release}
+     */
+    public boolean isRegistered(String filePath) {
+        return enabled && storedBlobRepository.existsByFilePath(filePath);
+    }
+    
+    /**
+     * Register a newly written file with one reference, or reference the blob that a
+     * concurrent upload of the same content registered first
+     */
+    private StoredContent register(String contentHash, String filePath, long fileSize) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                storedBlobRepository.register(contentHash, filePath, fileSize);
+                return new StoredContent(filePath, contentHash, false);
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent upload of the same content registered it first
+                Optional<String> registeredPath = reference(contentHash);
+                if (registeredPath.isPresent()) {
+                    return new StoredContent(registeredPath.get(), contentHash, true);
+                }
+                if (attempt >= MAX_REGISTER_ATTEMPTS) {
+                    throw new IllegalStateException("Could not register blob " + contentHash, e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Drop one reference to a stored file. Once nothing references it, the blob is left
+     * for {@link #sweepReleased()} to delete, so an upload of the same content in the
+     * meantime can take it back. Files stored before content addressing was enabled have
+     * no hash and are deleted directly.
+     */
+    public void release(String contentHash, String filePath) {
+        if (contentHash == null) {
+            storageService.deleteFile(filePath);
+            return;
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            if (storedBlobRepository.release(contentHash) == 0) {
+                logger.warn("Released blob {} that had no references", contentHash);
+            }
+            storedBlobRepository.markReleased(contentHash, LocalDateTime.now());
+        });
+    }
+    
+    /**
+     * Delete blobs released longer ago than the retention. Each file is deleted while its
+     * row is locked, and the row goes in the same transaction.
+     */
+    @Scheduled(fixedDelayString = "${storage.blob-sweep-interval-ms:600000}")
+    public void sweepReleased() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime before = LocalDateTime.now().minus(releasedRetention);
+            List<String> released;
+            int deleted = 0;
+            do {
+                released = storedBlobRepository.findReleasedBefore(before, PageRequest.of(0, SWEEP_BATCH_SIZE));
+                for (String contentHash : released) {
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status -> deleteReleased(contentHash, before)))) {
+                        deleted++;
+                    }
+                }
+            } while (released.size() == SWEEP_BATCH_SIZE);
+            
+            if (deleted > 0) {
+                logger.info("Deleted {} unreferenced blobs", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Error sweeping released blobs: {}", e.getMessage(), e);
+        }
+    }
+    
+    private boolean deleteReleased(String contentHash, LocalDateTime before) {
+        return storedBlobRepository.findReleasedForUpdate(contentHash, before)
+                .map(blob -> {
+                    storageService.deleteFile(blob.getFilePath());
+                    storedBlobRepository.delete(blob);
+                    return true;
+                })
+                .orElse(false);
+    }
+    
+    /**
+     * Take a reference to a stored blob and return its path, if the blob exists
+     */
+    private Optional<String> reference(String contentHash) {
+        if (storedBlobRepository.acquire(contentHash) == 0) {
+            return Optional.empty();
+        }
+        StoredBlob blob = storedBlobRepository.findById(contentHash)
+                .orElseThrow(() -> new IllegalStateException("Blob vanished after acquire: " + contentHash));
+        return Optional.of(blob.getFilePath());
+    }
+    
+    /**
+     * Forget all blob references, used when every document is being removed
+     */
+    public void clear() {
+        storedBlobRepository.deleteAllInBatch();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    static String hash(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return hash(in);
+        }
+    }
+    
+    static String hash(InputStream content) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        
+        try (InputStream in = new DigestInputStream(content, digest)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // digest is updated as the stream is consumed
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    /**
+     * Blobs live under blobs/{first two hash chars}/{hash}{extension}. The extension is
+     * kept because the ingest service picks its parser from the document URL.
+     */
+    static String blobPath(String contentHash, String originalFilename) {
+        String extension = "";
+        if (originalFilename != null && originalFilename.contains(".")) {
+            extension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
+        }
+        return "blobs/" + contentHash.substring(0, 2) + "/" + contentHash + extension;
+    }
+}
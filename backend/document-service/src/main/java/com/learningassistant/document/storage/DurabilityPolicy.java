@@ -0,0 +1,17 @@
+package com.learningassistant.document.storage;
+
+/**
+ * How hard a local write works to survive a crash before the upload is acknowledged
+ */
+public enum DurabilityPolicy {
+    /** Rely on the OS to flush page cache eventually */
+    NONE,
+    /** fsync each file and its directory before returning */
+    FSYNC,
+    /** fsync like FSYNC, but batch concurrent writes so directories are synced once per batch */
+    GROUP_COMMIT;
+    
+    public static DurabilityPolicy fromProperty(String value) {
+        return DurabilityPolicy.valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,132 @@
+package com.learningassistant.document.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes written temp files in batches. Writers hand over a temp file and its destination
+ * and wait; a single thread collects requests for a short window, fsyncs each file, renames
+ * it into place, then fsyncs every touched directory once for the whole batch.
+ */
+class GroupCommitter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+    
+    private final BlockingQueue<CommitRequest> requests = new LinkedBlockingQueue<>();
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Thread committer;
+    private volatile boolean running = true;
+    
+    GroupCommitter(long windowMs, int maxBatch) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatch = maxBatch;
+        this.committer = new Thread(this::run, "local-storage-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+    
+    /**
+     * Durably move tempFile to destination; blocks until the batch holding it is committed
+     */
+    void commit(Path tempFile, Path destination) throws IOException {
+        CommitRequest request = new CommitRequest(tempFile, destination, new CompletableFuture<>());
+        requests.add(request);
+        try {
+            request.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for group commit", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+    
+    void shutdown() {
+        running = false;
+        committer.interrupt();
+    }
+    
+    private void run() {
+        List<CommitRequest> batch = new ArrayList<>();
+        while (running) {
+            try {
+                CommitRequest first = requests.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    CommitRequest next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        
+        IOException stopped = new IOException("Group committer stopped");
+        CommitRequest leftover;
+        while ((leftover = requests.poll()) != null) {
+            leftover.done().completeExceptionally(stopped);
+        }
+    }
+    
+    private void commitBatch(List<CommitRequest> batch) {
+        Set<Path> directories = new LinkedHashSet<>();
+        List<CommitRequest> moved = new ArrayList<>(batch.size());
+        for (CommitRequest request : batch) {
+            try {
+                LocalFileWriter.fsync(request.tempFile());
+                Files.move(request.tempFile(), request.destination(), StandardCopyOption.ATOMIC_MOVE);
+                directories.add(request.destination().getParent());
+                moved.add(request);
+            } catch (IOException e) {
+                request.done().completeExceptionally(e);
+            }
+        }
+        
+        IOException directoryFailure = null;
+        for (Path directory : directories) {
+            try {
+                LocalFileWriter.fsyncDirectory(directory);
+            } catch (IOException e) {
+                logger.warn("Failed to fsync directory {}: {}", directory, e.getMessage());
+                directoryFailure = e;
+            }
+        }
+        for (CommitRequest request : moved) {
+            if (directoryFailure != null) {
+                request.done().completeExceptionally(directoryFailure);
+            } else {
+                request.done().complete(null);
+            }
+        }
+    }
+    
+    private record CommitRequest(Path tempFile, Path destination, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.learningassistant.document.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe local file writes: content goes to a temp file in the destination directory
+ * through a {@link FileChannel} and is renamed into place atomically, so readers never see a
+ * partial file. The durability policy decides what is fsynced before the write returns.
+ */
+class LocalFileWriter {
+    
+    private final DurabilityPolicy policy;
+    private final GroupCommitter groupCommitter;
+    
+    LocalFileWriter(DurabilityPolicy policy, long groupCommitWindowMs, int groupCommitMaxBatch) {
+        this.policy = policy;
+        this.groupCommitter = policy == DurabilityPolicy.GROUP_COMMIT
+            ? new GroupCommitter(groupCommitWindowMs, groupCommitMaxBatch)
+            : null;
+    }
+    
+    DurabilityPolicy getPolicy() {
+        return policy;
+    }
+    
+    void write(InputStream content, Path destination) throws IOException {
+        Path directory = destination.getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(content)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, 1 << 20)) > 0) {
+                    position += transferred;
+                }
+                if (policy == DurabilityPolicy.FSYNC) {
+                    channel.force(true);
+                }
+            }
+            
+            if (policy == DurabilityPolicy.GROUP_COMMIT) {
+                groupCommitter.commit(tempFile, destination);
+            } else {
+                Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE);
+                if (policy == DurabilityPolicy.FSYNC) {
+                    fsyncDirectory(directory);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+    
+    /**
+     * Move a fully written file into place under the durability policy
+     */
+    void publish(Path file, Path destination) throws IOException {
+        Path directory = destination.getParent();
+        Files.createDirectories(directory);
+        if (policy == DurabilityPolicy.GROUP_COMMIT) {
+            groupCommitter.commit(file, destination);
+            return;
+        }
+        if (policy == DurabilityPolicy.FSYNC) {
+            fsync(file);
+        }
+        Files.move(file, destination, StandardCopyOption.ATOMIC_MOVE);
+        if (policy == DurabilityPolicy.FSYNC) {
+            fsyncDirectory(directory);
+        }
+    }
+    
+    void close() {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+        }
+    }
+    
+    static void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+    
+    /**
+     * Make a rename durable. Not every platform lets a directory be opened; there the
+     * rename is left to the file system's own ordering.
+     */
+    static void fsyncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (UnsupportedOperationException | AccessDeniedException e) {
+            // e.g. Windows, which cannot open directories as channels
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.learningassistant.document.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves files stored in the legacy flat {userId}/{file} layout into the sharded layout and
+ * rewrites their documents' paths. Each file is moved before its row is updated, so an
+ * interrupted run is picked up again on the next start. Best run while the outbox is drained,
+ * since queued ingest events carry the old path.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalLayoutMigration implements ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalLayoutMigration.class);
+    private static final int BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final Path rootLocation;
+    private final boolean enabled;
+    
+    public LocalLayoutMigration(JdbcTemplate jdbcTemplate,
+                                @Value("${storage.local.upload-dir}") String uploadDir,
+                                @Value("${storage.local.migrate-layout:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rootLocation = Paths.get(uploadDir);
+        this.enabled = enabled;
+    }
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        
+        int migrated = 0;
+        int missing = 0;
+        String lastId = "";
+        List<Map<String, Object>> rows;
+        do {
+            // Legacy paths have exactly one separator; blobs/ paths are already sharded by hash
+            rows = jdbcTemplate.queryForList(
+                "SELECT id, file_path FROM documents " +
+                "WHERE id > ? AND file_path NOT LIKE 'blobs/%' AND file_path LIKE '%/%' AND file_path NOT LIKE '%/%/%' " +
+                "AND (storage_location = 'local' OR storage_location IS NULL) " +
+                "ORDER BY id LIMIT " + BATCH_SIZE,
+                lastId);
+            for (Map<String, Object> row : rows) {
+                String id = (String) row.get("id");
+                String oldPath = (String) row.get("file_path");
+                lastId = id;
+                try {
+                    if (migrate(id, oldPath)) {
+                        migrated++;
+                    } else {
+                        missing++;
+                    }
+                } catch (IOException e) {
+                    logger.error("Failed to migrate file {} of document {}: {}", oldPath, id, e.getMessage());
+                }
+            }
+        } while (rows.size() == BATCH_SIZE);
+        
+        if (migrated > 0 || missing > 0) {
+            logger.info("Moved {} files into the sharded layout; {} files were missing", migrated, missing);
+        }
+    }
+    
+    private boolean migrate(String documentId, String oldPath) throws IOException {
+        int separator = oldPath.indexOf('/');
+        String newPath = LocalStorageService.shardedPath(oldPath.substring(0, separator), oldPath.substring(separator + 1));
+        Path source = rootLocation.resolve(oldPath);
+        Path target = rootLocation.resolve(newPath);
+        
+        if (Files.exists(source)) {
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            LocalFileWriter.fsyncDirectory(target.getParent());
+            LocalFileWriter.fsyncDirectory(source.getParent());
+        } else if (!Files.exists(target)) {
+            logger.warn("File {} of document {} not found, leaving its path unchanged", oldPath, documentId);
+            return false;
+        }
+        
+        jdbcTemplate.update("UPDATE documents SET file_path = ? WHERE id = ? AND file_path = ?",
+            newPath, documentId, oldPath);
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package com.learningassistant.document.storage;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,10 +9,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Service
@@ -21,9 +29,21 @@ public class LocalStorageService implements StorageService {
     private static final Logger logger = LoggerFactory.getLogger(LocalStorageService.class);
     
     private final Path rootLocation;
+    private final LocalFileWriter writer;
     
-    public LocalStorageService(@Value("${storage.local.upload-dir}") String uploadDir) {
+    public LocalStorageService(@Value("${storage.local.upload-dir}") String uploadDir,
+                               @Value("${storage.local.durability:fsync}") String durability,
+                               @Value("${storage.local.group-commit.window-ms:5}") long groupCommitWindowMs,
+                               @Value("${storage.local.group-commit.max-batch:64}") int groupCommitMaxBatch) {
         this.rootLocation = Paths.get(uploadDir);
+        this.writer = new LocalFileWriter(
+            DurabilityPolicy.fromProperty(durability), groupCommitWindowMs, groupCommitMaxBatch);
+        logger.info("Local storage durability policy: {}", writer.getPolicy());
+    }
+    
+    @PreDestroy
+    public void close() {
+        writer.close();
     }
     
     @Override
@@ -53,23 +73,122 @@ public class LocalStorageService implements StorageService {
         
         // Generate unique filename
         String uniqueFilename = UUID.randomUUID().toString() + extension;
+        String path = shardedPath(userId, uniqueFilename);
+        
+        Path destinationFile = rootLocation.resolve(path);
+        try (var inputStream = file.getInputStream()) {
+            writer.write(inputStream, destinationFile);
+        }
         
-        // Create user-specific subdirectory
-        Path userDir = rootLocation.resolve(userId);
-        if (!Files.exists(userDir)) {
-            Files.createDirectories(userDir);
+        logger.info("Stored file: {} at {}", originalFilename, destinationFile);
+        
+        return path;
+    }
+    
+    /**
+     * Per-user path spread over two levels of 256 directories by the hash of the file name,
+     * so no single directory grows with the number of uploads.
+     */
+    static String shardedPath(String userId, String fileName) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fileName.getBytes(StandardCharsets.UTF_8));
+            String hex = HexFormat.of().formatHex(digest, 0, 2);
+            return userId + "/" + hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + fileName;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    @Override
+    public String storeFile(MultipartFile file, String userId, String path) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Failed to store empty file");
         }
         
-        Path destinationFile = userDir.resolve(uniqueFilename);
+        Path destinationFile = rootLocation.resolve(path);
+        if (Files.exists(destinationFile)) {
+            // Content-addressed paths never change content, so an existing file is reused
+            logger.info("File already present at {}", destinationFile);
+            return path;
+        }
         
-        // Copy file to destination
+        // Written to a temp file and renamed, so a partially written blob is never visible
         try (var inputStream = file.getInputStream()) {
-            Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
+            writer.write(inputStream, destinationFile);
         }
         
-        logger.info("Stored file: {} at {}", originalFilename, destinationFile);
+        logger.info("Stored file: {} at {}", file.getOriginalFilename(), destinationFile);
         
-        return userId + "/" + uniqueFilename;
+        return path;
+    }
+    
+    @Override
+    public String chunkedUploadPath(String userId, String fileName) {
+        String extension = "";
+        if (fileName != null && fileName.contains(".")) {
+            extension = fileName.substring(fileName.lastIndexOf("."));
+        }
+        return shardedPath(userId, UUID.randomUUID().toString() + extension);
+    }
+    
+    /**
+     * Chunks are written at their offset into a single part file, so completing the upload
+     * is a rename rather than a concatenation.
+     */
+    @Override
+    public void writeChunk(String path, String uploadId, int index, long offset, InputStream content, long length) throws IOException {
+        Path partFile = partFile(uploadId);
+        Files.createDirectories(partFile.getParent());
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            byte[] array = buffer.array();
+            long written = 0;
+            while (written < length) {
+                int read = content.read(array, 0, (int) Math.min(array.length, length - written));
+                if (read < 0) {
+                    break;
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+            }
+            if (written != length) {
+                throw new IOException("Chunk " + index + " ended after " + written + " of " + length + " bytes");
+            }
+            // An acknowledged chunk must survive a crash, or resuming would skip it
+            if (writer.getPolicy() != DurabilityPolicy.NONE) {
+                channel.force(false);
+            }
+        }
+    }
+    
+    @Override
+    public void completeChunkedUpload(String path, String uploadId, int chunkCount, String contentType) throws IOException {
+        Path partFile = partFile(uploadId);
+        Path destination = rootLocation.resolve(path);
+        if (!Files.exists(partFile)) {
+            // Published by an earlier attempt that failed afterwards
+            if (Files.exists(destination)) {
+                return;
+            }
+            throw new IOException("No chunks stored for upload " + uploadId);
+        }
+        writer.publish(partFile, destination);
+        logger.info("Assembled chunked upload {} at {}", uploadId, path);
+    }
+    
+    @Override
+    public void abortChunkedUpload(String path, String uploadId) {
+        try {
+            Files.deleteIfExists(partFile(uploadId));
+        } catch (IOException e) {
+            logger.error("Failed to delete chunks of upload: {}", uploadId, e);
+        }
+    }
+    
+    private Path partFile(String uploadId) {
+        return rootLocation.resolve(".chunked").resolve(uploadId + ".part");
     }
     
     @Override
@@ -2,7 +2,11 @@ package com.learningassistant.document.storage;
 
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
 
 public interface StorageService {
     
@@ -11,11 +15,23 @@ public interface StorageService {
      */
     String storeFile(MultipartFile file, String userId) throws IOException;
     
+    /**
+     * Store a file under a caller-chosen path, used for content-addressed blobs
+     */
+    String storeFile(MultipartFile file, String userId, String path) throws IOException;
+    
     /**
      * Load a file as a Path
      */
     Path loadFile(String fileName);
     
+    /**
+     * Open a stream over a stored file's content. The caller closes it.
+     */
+    default InputStream openFile(String fileName) throws IOException {
+        return Files.newInputStream(loadFile(fileName));
+    }
+    
     /**
      * Read file content as text
      */
@@ -31,6 +47,44 @@ public interface StorageService {
      */
     String getFileUrl(String fileName, String userId);
     
+    /**
+     * Path at which a chunked upload of the given file will be stored once completed
+     */
+    String chunkedUploadPath(String userId, String fileName);
+    
+    /**
+     * Write one chunk of a chunked upload in place. Chunks may arrive in any order and may
+     * be written again; offset is the chunk's position in the assembled file.
+     */
+    void writeChunk(String path, String uploadId, int index, long offset, InputStream content, long length) throws IOException;
+    
+    /**
+     * Publish the file assembled from an upload's chunks at path, without copying them again
+     */
+    void completeChunkedUpload(String path, String uploadId, int chunkCount, String contentType) throws IOException;
+    
+    /**
+     * Discard the chunks of an upload that will not be completed
+     */
+    void abortChunkedUpload(String path, String uploadId);
+    
+    /**
+     * Copy a file's content to a local path, replacing it if present.
+     * @return the MD5 the backend recorded for the content, or null if it has none
+     */
+    default byte[] copyToLocalFile(String fileName, Path target) throws IOException {
+        Files.copy(loadFile(fileName), target, StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+    
+    /**
+     * URL a client can download the file from directly, bypassing this service.
+     * Empty when files must be served from {@link #loadFile(String)}.
+     */
+    default Optional<String> getDirectDownloadUrl(String fileName, String userId) {
+        return Optional.empty();
+    }
+    
     /**
      * Initialize storage
      */
@@ -0,0 +1,11 @@
+package com.learningassistant.document.storage;
+
+/**
+ * Result of storing an uploaded file.
+ *
+ * @param filePath     storage path of the file
+ * @param contentHash  SHA-256 of the content, or null when content addressing is disabled
+ * @param deduplicated true if an identical blob already existed and no write was made
+ */
+public record StoredContent(String filePath, String contentHash, boolean deduplicated) {
+}
@@ -0,0 +1,5 @@
+-- Hibernate creates enum columns with a check constraint listing the values known at the
+-- time and never widens it. Drop them so values added since can be stored
+-- (ProcessingStatus.DELETED, OutboxEventType.DOCUMENT_PURGE).
+ALTER TABLE documents DROP CONSTRAINT IF EXISTS documents_processing_status_check;
+ALTER TABLE outbox_events DROP CONSTRAINT IF EXISTS outbox_events_event_type_check;
@@ -0,0 +1,194 @@
+package com.learningassistant.document.admission;
+
+import com.learningassistant.document.exception.OverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AIMD limit changes against a fake clock, and queueing and Retry-After on rejection
+ */
+class AdaptiveLimiterTest {
+    
+    private static final Duration TARGET = Duration.ofMillis(100);
+    private static final long MIB = 1024 * 1024;
+    
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(10));
+    
+    @Test
+    void limitGrowsWhileBusyCallsStayUnderTarget() {
+        AdaptiveLimiter limiter = limiter(settings(4, 16, 0, Duration.ZERO, 0));
+        
+        for (int round = 0; round < 20; round++) {
+            List<AdaptiveLimiter.Permit> permits = acquire(limiter, (int) limiter.getLimit());
+            advance(TARGET.dividedBy(10));
+            permits.forEach(AdaptiveLimiter.Permit::close);
+        }
+        
+        assertTrue(limiter.getLimit() > 8, "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() <= 16);
+    }
+    
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() {
+        AdaptiveLimiter limiter = limiter(settings(8, 16, 0, Duration.ZERO, 0));
+        
+        for (int call = 0; call < 50; call++) {
+            try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+                advance(TARGET.dividedBy(10));
+            }
+        }
+        
+        assertEquals(8, limiter.getLimit());
+    }
+    
+    @Test
+    void slowCallsCutTheLimitOncePerTargetInterval() {
+        AdaptiveLimiter limiter = limiter(settings(10, 16, 0, Duration.ZERO, 0));
+        
+        List<AdaptiveLimiter.Permit> permits = acquire(limiter, 3);
+        advance(TARGET.multipliedBy(2));
+        permits.forEach(AdaptiveLimiter.Permit::close);
+        assertEquals(5, limiter.getLimit());
+        
+        // A slow call after the interval is a new congestion signal
+        advance(TARGET.multipliedBy(2));
+        try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+            advance(TARGET.multipliedBy(2));
+        }
+        assertEquals(2.5, limiter.getLimit());
+    }
+    
+    @Test
+    void limitStaysWithinItsBounds() {
+        AdaptiveLimiter limiter = limiter(settings(2, 2, 0, Duration.ZERO, 0));
+        
+        for (int call = 0; call < 5; call++) {
+            advance(TARGET.multipliedBy(2));
+            try (AdaptiveLimiter.Permit permit = limiter.acquire()) {
+                advance(TARGET.multipliedBy(2));
+            }
+        }
+        assertEquals(1, limiter.getLimit());
+        
+        for (int round = 0; round < 20; round++) {
+            List<AdaptiveLimiter.Permit> permits = acquire(limiter, (int) limiter.getLimit());
+            permits.forEach(AdaptiveLimiter.Permit::close);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+    
+    @Test
+    void largeTransfersAreJudgedPerReferenceSize() {
+        AdaptiveLimiter limiter = limiter(settings(10, 16, 0, Duration.ZERO, 8 * MIB));
+        
+        // 80 MiB in five target intervals is half the target per 8 MiB
+        try (AdaptiveLimiter.Permit permit = limiter.acquire(80 * MIB)) {
+            advance(TARGET.multipliedBy(5));
+        }
+        assertEquals(10, limiter.getLimit());
+        
+        // A small file is judged by its whole latency
+        try (AdaptiveLimiter.Permit permit = limiter.acquire(4 * MIB)) {
+            advance(TARGET.multipliedBy(2));
+        }
+        assertEquals(5, limiter.getLimit());
+    }
+    
+    @Test
+    void fullQueueIsRejectedAtOnce() throws Exception {
+        AdaptiveLimiter limiter = limiter(settings(1, 1, 1, Duration.ofSeconds(10), 0));
+        AdaptiveLimiter.Permit held = limiter.acquire();
+        
+        CompletableFuture<AdaptiveLimiter.Permit> waiting = CompletableFuture.supplyAsync(limiter::acquire);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getQueued() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, limiter.getQueued());
+        
+        assertThrows(OverloadedException.class, limiter::acquire);
+        assertEquals(Optional.empty(), limiter.tryAcquire());
+        
+        // The queued caller gets the permit once it is released
+        held.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+    
+    @Test
+    void queuedCallerIsRejectedWhenTheWaitRunsOut() {
+        AdaptiveLimiter limiter = limiter(settings(1, 1, 1, Duration.ofMillis(20), 0));
+        
+        try (AdaptiveLimiter.Permit held = limiter.acquire()) {
+            assertThrows(OverloadedException.class, limiter::acquire);
+            assertEquals(0, limiter.getQueued());
+        }
+        limiter.acquire().close();
+    }
+    
+    @Test
+    void retryAfterCoversTheCallsAhead() {
+        // Latency starts out estimated at half the target
+        AdaptiveLimiter limiter = limiter(new AdaptiveLimiter.StageSettings(
+            2, 1, 2, 0, Duration.ZERO, Duration.ofSeconds(4), 0.5, 0));
+        List<AdaptiveLimiter.Permit> permits = acquire(limiter, 2);
+        
+        // Two in flight plus the retry, two at a time, at 2s each
+        OverloadedException rejected = assertThrows(OverloadedException.class, limiter::acquire);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, rejected.getRetryAfterSeconds());
+        
+        permits.forEach(AdaptiveLimiter.Permit::close);
+    }
+    
+    @Test
+    void retryAfterIsBounded() {
+        AdaptiveLimiter slow = limiter(new AdaptiveLimiter.StageSettings(
+            1, 1, 1, 0, Duration.ZERO, Duration.ofMinutes(10), 0.5, 0));
+        try (AdaptiveLimiter.Permit held = slow.acquire()) {
+            assertEquals(30, assertThrows(OverloadedException.class, slow::acquire).getRetryAfterSeconds());
+        }
+        
+        AdaptiveLimiter fast = limiter(new AdaptiveLimiter.StageSettings(
+            1, 1, 1, 0, Duration.ZERO, Duration.ofMillis(10), 0.5, 0));
+        try (AdaptiveLimiter.Permit held = fast.acquire()) {
+            assertEquals(1, assertThrows(OverloadedException.class, fast::acquire).getRetryAfterSeconds());
+        }
+    }
+    
+    private AdaptiveLimiter limiter(AdaptiveLimiter.StageSettings settings) {
+        return new AdaptiveLimiter("test", settings, new SimpleMeterRegistry(), clock::get);
+    }
+    
+    private static AdaptiveLimiter.StageSettings settings(int initialLimit, int maxLimit, int maxQueued,
+                                                          Duration maxWait, long referenceBytes) {
+        return new AdaptiveLimiter.StageSettings(initialLimit, 1, maxLimit, maxQueued, maxWait, TARGET, 0.5,
+            referenceBytes);
+    }
+    
+    private static List<AdaptiveLimiter.Permit> acquire(AdaptiveLimiter limiter, int count) {
+        List<AdaptiveLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.acquire());
+        }
+        return permits;
+    }
+    
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+}
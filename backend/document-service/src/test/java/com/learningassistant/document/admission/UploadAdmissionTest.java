@@ -0,0 +1,43 @@
+package com.learningassistant.document.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UploadAdmissionTest {
+    
+    @Test
+    void databaseStageLeavesConnectionsInReserve() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("spring.datasource.hikari.maximum-pool-size", "6");
+        UploadAdmission admission = new UploadAdmission(environment, new SimpleMeterRegistry());
+        
+        // Half the pool is kept back by default, so three connections remain for uploads
+        assertEquals(3, admission.database().getLimit());
+        
+        // Busy fast calls cannot grow it past that share
+        for (int round = 0; round < 10; round++) {
+            List<AdaptiveLimiter.Permit> permits = List.of(
+                admission.database().acquire(), admission.database().acquire(), admission.database().acquire());
+            permits.forEach(AdaptiveLimiter.Permit::close);
+        }
+        assertEquals(3, admission.database().getLimit());
+    }
+    
+    @Test
+    void stageSettingsComeFromProperties() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("upload-admission.storage.initial-limit", "3")
+            .withProperty("upload-admission.storage.max-limit", "5")
+            .withProperty("upload-admission.ingest.initial-limit", "20");
+        UploadAdmission admission = new UploadAdmission(environment, new SimpleMeterRegistry());
+        
+        assertEquals(3, admission.storage().getLimit());
+        assertEquals(8, admission.ingest().getLimit());
+        assertEquals("storage", admission.storage().getStage());
+    }
+}
@@ -0,0 +1,139 @@
+package com.learningassistant.document.controller;
+
+import com.learningassistant.document.service.DocumentDownload;
+import com.learningassistant.document.service.DocumentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Conditional and range requests against the original-file download, served from local storage
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:document-download;MODE=PostgreSQL",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "storage.type=local",
+    "storage.local.upload-dir=target/document-download",
+    "outbox.poll-interval-ms=100000000"
+})
+class DocumentDownloadTest {
+    
+    private static final String DOCUMENT_ID = "doc-1";
+    private static final String CONTENT_HASH = "abc123";
+    private static final String ETAG = "\"" + CONTENT_HASH + "\"";
+    
+    @LocalServerPort
+    private int port;
+    
+    @MockBean
+    private DocumentService documentService;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final byte[] content = "Lecture slides on consensus. ".repeat(400).getBytes(StandardCharsets.UTF_8);
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = Paths.get("target/document-download/lecture.pdf");
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        when(documentService.getDocumentDownload(DOCUMENT_ID)).thenReturn(Optional.of(
+            new DocumentDownload("lecture.pdf", "application/pdf", CONTENT_HASH, null, file)));
+    }
+    
+    @Test
+    void servesTheWholeFileWithItsETag() throws Exception {
+        HttpResponse<byte[]> response = get();
+        
+        assertEquals(200, response.statusCode());
+        assertEquals(ETAG, response.headers().firstValue("ETag").orElse(null));
+        assertEquals("bytes", response.headers().firstValue("Accept-Ranges").orElse(null));
+        assertArrayEquals(content, response.body());
+    }
+    
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        assertEquals(304, get("If-None-Match", ETAG).statusCode());
+        assertEquals(304, get("If-None-Match", "\"stale\", " + ETAG).statusCode());
+        assertEquals(304, get("If-None-Match", "W/" + ETAG).statusCode());
+        assertEquals(304, get("If-None-Match", "*").statusCode());
+    }
+    
+    @Test
+    void otherIfNoneMatchTagsGetTheFile() throws Exception {
+        HttpResponse<byte[]> response = get("If-None-Match", "\"" + CONTENT_HASH + "0\", \"stale\"");
+        
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(content, response.body());
+    }
+    
+    @Test
+    void servesRequestedRange() throws Exception {
+        HttpResponse<byte[]> response = get("Range", "bytes=100-4099");
+        
+        assertEquals(206, response.statusCode());
+        assertEquals("bytes 100-4099/" + content.length, response.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 4100), response.body());
+    }
+    
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        HttpResponse<byte[]> response = get("Range", "bytes=" + content.length + "-");
+        
+        assertEquals(416, response.statusCode());
+        assertEquals("bytes */" + content.length, response.headers().firstValue("Content-Range").orElse(null));
+    }
+    
+    @Test
+    void rangeIsHonouredOnlyWhileIfRangeMatches() throws Exception {
+        HttpResponse<byte[]> current = get("Range", "bytes=0-9", "If-Range", ETAG);
+        assertEquals(206, current.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), current.body());
+        
+        for (String stale : new String[] { "\"stale\"", "W/" + ETAG }) {
+            HttpResponse<byte[]> response = get("Range", "bytes=0-9", "If-Range", stale);
+            assertEquals(200, response.statusCode());
+            assertNull(response.headers().firstValue("Content-Range").orElse(null));
+            assertArrayEquals(content, response.body());
+        }
+    }
+    
+    @Test
+    void missingDocumentIsNotFound() throws Exception {
+        when(documentService.getDocumentDownload(DOCUMENT_ID)).thenReturn(Optional.empty());
+        
+        HttpResponse<byte[]> response = get();
+        
+        assertEquals(404, response.statusCode());
+        assertFalse(response.headers().firstValue("ETag").isPresent());
+    }
+    
+    private HttpResponse<byte[]> get(String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/documents/" + DOCUMENT_ID + "/download"));
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
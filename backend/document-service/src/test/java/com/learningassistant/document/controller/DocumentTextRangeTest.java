@@ -0,0 +1,80 @@
+package com.learningassistant.document.controller;
+
+import com.learningassistant.document.service.DocumentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Range requests on the text stream must come back identity-encoded even when the client
+ * accepts gzip, since Content-Range offsets refer to the uncompressed text.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:text-range;MODE=PostgreSQL",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "storage.type=local",
+    "storage.local.upload-dir=target/text-range",
+    "outbox.poll-interval-ms=100000000"
+})
+class DocumentTextRangeTest {
+    
+    private static final String DOCUMENT_ID = "doc-1";
+    
+    @LocalServerPort
+    private int port;
+    
+    @MockBean
+    private DocumentService documentService;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final byte[] text = "Lecture notes on distributed systems. ".repeat(500).getBytes(StandardCharsets.UTF_8);
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        when(documentService.getDocumentTextBytes(DOCUMENT_ID)).thenReturn(text);
+    }
+    
+    @Test
+    void rangeRequestIsNotCompressed() throws Exception {
+        HttpResponse<byte[]> response = get("bytes=100-4099");
+        
+        assertEquals(206, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Encoding").filter(encoding -> encoding.contains("gzip")).isEmpty());
+        assertEquals("bytes 100-4099/" + text.length, response.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(text, 100, 4100), response.body());
+    }
+    
+    @Test
+    void fullResponseIsStillCompressed() throws Exception {
+        HttpResponse<byte[]> response = get(null);
+        
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+    }
+    
+    private HttpResponse<byte[]> get(String range) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/documents/" + DOCUMENT_ID + "/text/stream"))
+                .header("Accept-Encoding", "gzip");
+        if (range != null) {
+            request.header("Range", range);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
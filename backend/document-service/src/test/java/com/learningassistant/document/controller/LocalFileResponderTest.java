@@ -0,0 +1,76 @@
+package com.learningassistant.document.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalFileResponderTest {
+    
+    private static final String ETAG = "\"abc123\"";
+    
+    @Test
+    void ifNoneMatchComparesEachListedTag() {
+        assertTrue(LocalFileResponder.noneMatchHit("\"abc123\"", ETAG));
+        assertTrue(LocalFileResponder.noneMatchHit("\"other\", \"abc123\"", ETAG));
+        assertTrue(LocalFileResponder.noneMatchHit(" \"other\",\"abc123\" ", ETAG));
+        assertFalse(LocalFileResponder.noneMatchHit("\"other\"", ETAG));
+        assertFalse(LocalFileResponder.noneMatchHit(null, ETAG));
+        assertFalse(LocalFileResponder.noneMatchHit("", ETAG));
+    }
+    
+    @Test
+    void ifNoneMatchDoesNotMatchOnSubstrings() {
+        assertFalse(LocalFileResponder.noneMatchHit("\"xabc123\"", ETAG));
+        assertFalse(LocalFileResponder.noneMatchHit("\"\"abc123\"\"", ETAG));
+        assertFalse(LocalFileResponder.noneMatchHit("\"abc\"", "\"ab\""));
+    }
+    
+    @Test
+    void ifNoneMatchComparesWeakly() {
+        assertTrue(LocalFileResponder.noneMatchHit("W/\"abc123\"", ETAG));
+        assertTrue(LocalFileResponder.noneMatchHit("\"other\", W/\"abc123\"", ETAG));
+        assertTrue(LocalFileResponder.noneMatchHit("\"abc123\"", "W/\"abc123\""));
+    }
+    
+    @Test
+    void ifNoneMatchStarMatchesAnyFile() {
+        assertTrue(LocalFileResponder.noneMatchHit("*", ETAG));
+        assertTrue(LocalFileResponder.noneMatchHit(" * ", ETAG));
+    }
+    
+    @Test
+    void ifRangeNeedsAStrongMatch() {
+        assertTrue(LocalFileResponder.rangeStillValid(null, ETAG));
+        assertTrue(LocalFileResponder.rangeStillValid("\"abc123\"", ETAG));
+        assertFalse(LocalFileResponder.rangeStillValid("W/\"abc123\"", ETAG));
+        assertFalse(LocalFileResponder.rangeStillValid("\"other\"", ETAG));
+        assertFalse(LocalFileResponder.rangeStillValid("Wed, 21 Oct 2015 07:28:00 GMT", ETAG));
+    }
+    
+    @Test
+    void parsesSingleRanges() {
+        assertArrayEquals(new long[] { 0, 99 }, LocalFileResponder.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 500, 999 }, LocalFileResponder.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] { 900, 999 }, LocalFileResponder.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] { 0, 999 }, LocalFileResponder.parseRange("bytes=-5000", 1000));
+        assertArrayEquals(new long[] { 990, 999 }, LocalFileResponder.parseRange("bytes=990-5000", 1000));
+    }
+    
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertArrayEquals(new long[0], LocalFileResponder.parseRange("bytes=1000-", 1000));
+        assertArrayEquals(new long[0], LocalFileResponder.parseRange("bytes=50-10", 1000));
+        assertArrayEquals(new long[0], LocalFileResponder.parseRange("bytes=-0", 1000));
+    }
+    
+    @Test
+    void ignoresRangesItDoesNotServe() {
+        assertNull(LocalFileResponder.parseRange(null, 1000));
+        assertNull(LocalFileResponder.parseRange("items=0-9", 1000));
+        assertNull(LocalFileResponder.parseRange("bytes=0-9, 20-29", 1000));
+        assertNull(LocalFileResponder.parseRange("bytes=a-b", 1000));
+    }
+}
@@ -0,0 +1,40 @@
+package com.learningassistant.document.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A full in-memory queue must reject sends, so the outbox backs off as it would against a
+ * throttled broker, and accept them again once drained.
+ */
+class InMemoryIngestQueueTest {
+    
+    @Test
+    void rejectsSendsWhileFullAndAcceptsThemOnceDrained() throws InterruptedException {
+        InMemoryIngestQueue queue = new InMemoryIngestQueue(2, false, 0, new SimpleMeterRegistry());
+        queue.init();
+        
+        queue.send(message("doc-1"));
+        queue.send(message("doc-2"));
+        assertThrows(IllegalStateException.class, () -> queue.send(message("doc-3")));
+        assertEquals(2, queue.size());
+        
+        assertEquals("doc-1", queue.poll(1, TimeUnit.SECONDS).documentId());
+        queue.send(message("doc-3"));
+        assertEquals("doc-2", queue.poll(1, TimeUnit.SECONDS).documentId());
+        assertEquals("doc-3", queue.poll(1, TimeUnit.SECONDS).documentId());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        
+        queue.shutdown();
+    }
+    
+    private static IngestMessage message(String documentId) {
+        return new IngestMessage(documentId, "user-1", "file:///" + documentId, documentId + ".pdf", "corr-" + documentId);
+    }
+}
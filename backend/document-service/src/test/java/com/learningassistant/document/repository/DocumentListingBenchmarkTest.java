@@ -0,0 +1,132 @@
+package com.learningassistant.document.repository;
+
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.DocumentText;
+import com.learningassistant.document.model.ProcessingStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the bytes the database returns for a user's document listing, which reads only
+ * the documents table, against the same listing also reading each document's stored text,
+ * as listings did while the text was a column of documents. Bytes are summed over the
+ * values in the result set, so they track what the query ships, not how rows serialize.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false"
+})
+class DocumentListingBenchmarkTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentListingBenchmarkTest.class);
+    
+    private static final String USER_ID = "benchmark-user";
+    private static final int DOCUMENTS = 50;
+    private static final int TEXT_CHARS = 64 * 1024;
+    
+    // The documents table holds exactly the columns the Document entity maps
+    private static final String LISTING =
+        "SELECT d.* FROM documents d WHERE d.user_id = ? AND d.processing_status <> ? ORDER BY d.uploaded_at DESC";
+    private static final String LISTING_WITH_TEXT =
+        "SELECT d.*, t.compressed_content FROM documents d LEFT JOIN document_texts t ON t.document_id = d.id " +
+        "WHERE d.user_id = ? AND d.processing_status <> ? ORDER BY d.uploaded_at DESC";
+    
+    @Autowired
+    private DocumentRepository documentRepository;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Document document = new Document(USER_ID, "lecture-" + i + ".pdf", "application/pdf", 1024L, "blobs/" + i);
+            entityManager.persist(document);
+            entityManager.persist(new DocumentText(document.getId(), text(random)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+    
+    @Test
+    void listingDoesNotReadDocumentText() {
+        long metadataOnly = payloadBytes(LISTING);
+        long withText = payloadBytes(LISTING_WITH_TEXT);
+        
+        logger.info("Listing {} documents returns {} bytes, {} with stored text ({}x less)",
+            DOCUMENTS, metadataOnly, withText, withText / Math.max(1, metadataOnly));
+        
+        assertEquals(DOCUMENTS, documentRepository.findByUserIdAndProcessingStatusNotOrderByUploadedAtDesc(
+            USER_ID, ProcessingStatus.DELETED).size());
+        assertTrue(metadataOnly * 20 < withText,
+            "Listing should read far less without document text: " + metadataOnly + " vs " + withText);
+    }
+    
+    /**
+     * Total size of every value the query returns
+     */
+    private long payloadBytes(String sql) {
+        Long total = jdbcTemplate.query(sql, (ResultSet rs) -> {
+            ResultSetMetaData columns = rs.getMetaData();
+            long bytes = 0;
+            while (rs.next()) {
+                for (int column = 1; column <= columns.getColumnCount(); column++) {
+                    bytes += valueBytes(rs, column);
+                }
+            }
+            return bytes;
+        }, USER_ID, ProcessingStatus.DELETED.name());
+        return total != null ? total : 0;
+    }
+    
+    private static long valueBytes(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (value instanceof Clob || value instanceof String) {
+            return rs.getString(column).getBytes(StandardCharsets.UTF_8).length;
+        }
+        // Numbers, booleans and timestamps travel as fixed-width values
+        return Long.BYTES;
+    }
+    
+    /**
+     * Random words, which compress less than real text, so the comparison does not rest on
+     * how well the text compresses
+     */
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder(TEXT_CHARS);
+        while (text.length() < TEXT_CHARS) {
+            int letters = 2 + random.nextInt(8);
+            for (int i = 0; i < letters; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(' ');
+        }
+        return text.toString();
+    }
+}
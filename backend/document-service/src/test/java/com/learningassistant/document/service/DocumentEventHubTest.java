@@ -0,0 +1,189 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.model.ProcessingStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay from Last-Event-ID, resync when the replay window no longer covers the client, and
+ * disconnecting a subscriber whose bounded buffer fills up.
+ */
+class DocumentEventHubTest {
+
+    private static final String USER_ID = "user-1";
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\S+)");
+    private static final Pattern EVENT_NAME = Pattern.compile("event:(\\S+)");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private CountDownLatch sendGate = new CountDownLatch(0);
+    private DocumentEventHub hub;
+
+    @AfterEach
+    void tearDown() {
+        sendGate.countDown();
+        if (hub != null) {
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void reconnectReplaysOnlyEventsAfterLastEventId() throws Exception {
+        hub = newHub(10, 10);
+        RecordingEmitter live = subscribe(null);
+        assertConnected(live);
+        List<String> ids = publishAndCollectIds(live, 3);
+
+        RecordingEmitter reconnected = subscribe(ids.get(0));
+
+        assertConnected(reconnected);
+        assertEquals(ids.get(1), eventId(next(reconnected)));
+        assertEquals(ids.get(2), eventId(next(reconnected)));
+        assertNull(reconnected.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void idsOutsideTheReplayWindowAskForResync() throws Exception {
+        hub = newHub(10, 2);
+        RecordingEmitter live = subscribe(null);
+        assertConnected(live);
+        List<String> ids = publishAndCollectIds(live, 4);
+
+        // Only the last two events are kept, so the client may have missed the second one
+        RecordingEmitter agedOut = subscribe(ids.get(0));
+        assertConnected(agedOut);
+        assertEquals(DocumentEventHub.RESYNC_EVENT, eventName(next(agedOut)));
+
+        // An ID from before a restart cannot be replayed either
+        RecordingEmitter restarted = subscribe("previousboot-4");
+        assertConnected(restarted);
+        assertEquals(DocumentEventHub.RESYNC_EVENT, eventName(next(restarted)));
+
+        RecordingEmitter covered = subscribe(ids.get(1));
+        assertConnected(covered);
+        assertEquals(ids.get(2), eventId(next(covered)));
+        assertEquals(ids.get(3), eventId(next(covered)));
+    }
+
+    @Test
+    void subscriberIsDisconnectedWhenItsBufferFills() {
+        hub = newHub(3, 3);
+        // Sends block, so events pile up in the subscriber's buffer
+        sendGate = new CountDownLatch(1);
+        subscribe(null);
+        assertEquals(1.0, meterRegistry.get("document.events.subscribers").gauge().value());
+
+        for (int i = 0; i < 5; i++) {
+            publish("doc-" + i);
+        }
+
+        assertEquals(1.0, meterRegistry.counter("document.events.overflow").count());
+        assertEquals(0.0, meterRegistry.get("document.events.subscribers").gauge().value());
+        assertEquals(5.0, meterRegistry.counter("document.events.published").count());
+    }
+
+    @Test
+    void replaySizeMustFitInTheBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> newHub(2, 3));
+    }
+
+    private DocumentEventHub newHub(int bufferSize, int replaySize) {
+        return new DocumentEventHub(60_000, bufferSize, replaySize, 60_000, 3000, 2, meterRegistry) {
+            @Override
+            SseEmitter newEmitter(long timeoutMs) {
+                RecordingEmitter emitter = new RecordingEmitter(timeoutMs);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        hub.subscribe(USER_ID, lastEventId);
+        return emitters.get(emitters.size() - 1);
+    }
+
+    private void publish(String documentId) {
+        hub.onStatusChanged(new DocumentStatusChangedEvent(USER_ID, documentId, ProcessingStatus.COMPLETED,
+            LocalDateTime.now()));
+    }
+
+    private List<String> publishAndCollectIds(RecordingEmitter emitter, int count) throws InterruptedException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            publish("doc-" + i);
+            String event = next(emitter);
+            assertEquals(DocumentEventHub.STATUS_EVENT, eventName(event));
+            ids.add(eventId(event));
+        }
+        return ids;
+    }
+
+    private static void assertConnected(RecordingEmitter emitter) throws InterruptedException {
+        assertTrue(next(emitter).contains(":connected"));
+    }
+
+    private static String next(RecordingEmitter emitter) throws InterruptedException {
+        String event = emitter.events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "expected another event");
+        return event;
+    }
+
+    private static String eventId(String event) {
+        return group(EVENT_ID, event);
+    }
+
+    private static String eventName(String event) {
+        return group(EVENT_NAME, event);
+    }
+
+    private static String group(Pattern pattern, String event) {
+        Matcher matcher = pattern.matcher(event);
+        assertTrue(matcher.find(), () -> pattern + " in " + event);
+        return matcher.group(1);
+    }
+
+    /**
+     * Records the text of each event instead of writing it to a response
+     */
+    private class RecordingEmitter extends SseEmitter {
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        RecordingEmitter(long timeoutMs) {
+            super(timeoutMs);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                sendGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            events.add(text.toString());
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.client.RagIngestClient;
+import com.learningassistant.document.dto.DocumentResponse;
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.DocumentText;
+import com.learningassistant.document.model.OutboxEvent;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.model.OutboxStatus;
+import com.learningassistant.document.model.ProcessingStatus;
+import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.DocumentTextRepository;
+import com.learningassistant.document.repository.OutboxEventRepository;
+import com.learningassistant.document.repository.StoredBlobRepository;
+import com.learningassistant.document.storage.ContentAddressedStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deleting a document tombstones it and queues a purge in the outbox; the dispatcher runs
+ * the reaper, which keeps the tombstone until the RAG entry is gone and then removes the
+ * rows and releases the blob. Tombstones whose purge ran out of attempts are queued again.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:document-purge;MODE=PostgreSQL",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "storage.type=local",
+    "storage.local.upload-dir=target/document-purge",
+    "storage.content-addressed=true",
+    "storage.released-blob-retention=PT0S",
+    "storage.blob-sweep-interval-ms=100000000",
+    "outbox.poll-interval-ms=100000000",
+    "outbox.max-attempts=2",
+    "document-reaper.retry-stranded-after=PT0S",
+    "document-reaper.sweep-interval-ms=100000000",
+    "ingest.transport=memory",
+    "ingest.memory.consume=false"
+})
+class DocumentPurgeFlowTest {
+
+    private static final String USER_ID = "user-1";
+    private static final Path UPLOAD_DIR = Paths.get("target/document-purge");
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private DocumentReaper documentReaper;
+
+    @Autowired
+    private ContentAddressedStorage contentAddressedStorage;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @MockBean
+    private RagIngestClient ragIngestClient;
+
+    @BeforeEach
+    void setUp() {
+        reset(ragIngestClient);
+        outboxEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void tombstoneStaysUntilTheRagEntryIsDeleted() {
+        Document document = ingested("purge-me.pdf", "lecture notes to purge");
+        String ragId = document.getRagDocumentId();
+        Path file = UPLOAD_DIR.resolve(document.getFilePath());
+        assertTrue(Files.exists(file));
+
+        documentService.deleteDocument(document.getId());
+
+        assertTrue(documentService.getDocumentById(document.getId()).isEmpty());
+        assertEquals(ProcessingStatus.DELETED,
+            documentRepository.findById(document.getId()).orElseThrow().getProcessingStatus());
+
+        // The RAG service is down: the purge is retried later and nothing is removed yet
+        when(ragIngestClient.deleteDocument(ragId, USER_ID)).thenReturn(false);
+        outboxDispatcher.drain();
+
+        OutboxEvent purge = latestPurge(document.getId());
+        assertEquals(OutboxStatus.PENDING, purge.getStatus());
+        assertEquals(1, purge.getAttempts());
+        assertNotNull(purge.getLastError());
+        assertTrue(documentRepository.existsById(document.getId()));
+        assertTrue(documentTextRepository.findById(document.getId()).isPresent());
+
+        when(ragIngestClient.deleteDocument(ragId, USER_ID)).thenReturn(true);
+        makeDue(purge);
+        outboxDispatcher.drain();
+
+        assertEquals(OutboxStatus.DISPATCHED, latestPurge(document.getId()).getStatus());
+        assertFalse(documentRepository.existsById(document.getId()));
+        assertTrue(documentTextRepository.findById(document.getId()).isEmpty());
+        verify(ragIngestClient, times(2)).deleteDocument(ragId, USER_ID);
+
+        // The blob outlives the document only until the sweep
+        assertEquals(0, storedBlobRepository.findById(document.getContentHash()).orElseThrow().getReferenceCount());
+        contentAddressedStorage.sweepReleased();
+        assertFalse(storedBlobRepository.existsById(document.getContentHash()));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void purgeThatRanOutOfAttemptsIsQueuedAgain() {
+        Document document = ingested("stranded.pdf", "lecture notes left stranded");
+        String ragId = document.getRagDocumentId();
+        documentService.deleteDocument(document.getId());
+
+        when(ragIngestClient.deleteDocument(ragId, USER_ID)).thenReturn(false);
+        outboxDispatcher.drain();
+        makeDue(latestPurge(document.getId()));
+        outboxDispatcher.drain();
+        assertEquals(OutboxStatus.FAILED, latestPurge(document.getId()).getStatus());
+        assertTrue(documentRepository.existsById(document.getId()));
+
+        documentReaper.requeueStranded();
+
+        OutboxEvent requeued = latestPurge(document.getId());
+        assertEquals(OutboxStatus.PENDING, requeued.getStatus());
+        assertEquals(0, requeued.getAttempts());
+
+        when(ragIngestClient.deleteDocument(ragId, USER_ID)).thenReturn(true);
+        outboxDispatcher.drain();
+        assertFalse(documentRepository.existsById(document.getId()));
+
+        // Nothing is left to queue
+        documentReaper.requeueStranded();
+        assertEquals(OutboxStatus.DISPATCHED, latestPurge(document.getId()).getStatus());
+    }
+
+    /**
+     * Upload a document, send its ingestion and record the RAG entry the ingest callback sets
+     */
+    private Document ingested(String fileName, String content) {
+        DocumentResponse uploaded = documentService.uploadDocument(
+            new MockMultipartFile("file", fileName, "application/pdf", content.getBytes(StandardCharsets.UTF_8)),
+            USER_ID);
+        outboxDispatcher.drain();
+
+        Document document = documentRepository.findById(uploaded.getDocumentId()).orElseThrow();
+        document.setRagDocumentId("rag-" + document.getId());
+        documentTextRepository.save(new DocumentText(document.getId(), content));
+        return documentRepository.save(document);
+    }
+
+    private OutboxEvent latestPurge(String documentId) {
+        List<OutboxEvent> purges = outboxEventRepository.findAll().stream()
+            .filter(event -> event.getEventType() == OutboxEventType.DOCUMENT_PURGE)
+            .filter(event -> event.getAggregateId().equals(documentId))
+            .toList();
+        assertFalse(purges.isEmpty(), "no purge queued for " + documentId);
+        return purges.stream().max(Comparator.comparing(OutboxEvent::getCreatedAt)).orElseThrow();
+    }
+
+    private void makeDue(OutboxEvent event) {
+        event.setNextAttemptAt(LocalDateTime.now());
+        outboxEventRepository.save(event);
+    }
+}
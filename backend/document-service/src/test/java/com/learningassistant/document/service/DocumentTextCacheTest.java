@@ -0,0 +1,118 @@
+package com.learningassistant.document.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Byte-bounded memory tier, spilling to and promoting from disk, and invalidation racing
+ * a spill that has not been written yet.
+ */
+class DocumentTextCacheTest {
+
+    private static final long MEMORY_BYTES = 1000;
+
+    @TempDir
+    Path spillDirectory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DocumentTextCache cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void memoryTierStaysWithinItsByteBudget() {
+        cache = newCache(false);
+        for (int i = 0; i < 20; i++) {
+            cache.put("doc-" + i, text('a', 300));
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.memoryBytes() <= MEMORY_BYTES, "memory tier holds " + cache.memoryBytes() + " bytes");
+        long cached = IntStream.range(0, 20)
+                .filter(i -> cache.getBytes("doc-" + i).isPresent())
+                .count();
+        assertTrue(cached > 0 && cached <= MEMORY_BYTES / 300);
+    }
+
+    @Test
+    void evictedTextSpillsToDiskAndIsPromotedBack() throws Exception {
+        cache = newCache(true);
+        String large = text('b', 1500);
+
+        // Larger than the whole memory tier, so it is evicted straight to the spill tier
+        cache.put("doc-1", large);
+        cache.cleanUp();
+        awaitSpillFile("doc-1");
+
+        Optional<String> promoted = cache.get("doc-1");
+        assertEquals(Optional.of(large), promoted);
+        assertEquals(1.0, meterRegistry.counter("document.text.spill", "result", "hit").count());
+    }
+
+    @Test
+    void invalidateCancelsASpillThatIsStillPending() throws Exception {
+        cache = newCache(true);
+        Object spillIndex = ReflectionTestUtils.getField(cache, "spillIndex");
+
+        // Holding the index lock keeps the spill writer from running, so the evicted entry
+        // stays pending until after the invalidate
+        synchronized (spillIndex) {
+            cache.put("doc-1", text('c', 1500));
+            cache.cleanUp();
+            cache.invalidate("doc-1");
+        }
+
+        // The writer is single-threaded, so once this spill is on disk the first one has run
+        cache.put("doc-2", text('d', 1500));
+        cache.cleanUp();
+        awaitSpillFile("doc-2");
+
+        assertEquals(Optional.empty(), cache.getBytes("doc-1"));
+        assertTrue(Files.notExists(spillDirectory.resolve("doc-1.txt")));
+
+        // Reads that loaded the text before the delete cannot put it back
+        cache.put("doc-1", "stale");
+        assertEquals(Optional.empty(), cache.getBytes("doc-1"));
+    }
+
+    private DocumentTextCache newCache(boolean spill) {
+        return new DocumentTextCache(MEMORY_BYTES, spill, spillDirectory.toString(), 1_000_000,
+            Duration.ofMinutes(10), meterRegistry);
+    }
+
+    private void awaitSpillFile(String documentId) throws InterruptedException, IOException {
+        Path file = spillDirectory.resolve(documentId + ".txt");
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (Files.notExists(file) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file), "spill file for " + documentId);
+        assertTrue(Files.size(file) > 0);
+    }
+
+    private static String text(char c, int bytes) {
+        byte[] text = new byte[bytes];
+        Arrays.fill(text, (byte) c);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,169 @@
+package com.learningassistant.document.service;
+
+import com.learningassistant.document.client.RagIngestClient;
+import com.learningassistant.document.dto.DocumentResponse;
+import com.learningassistant.document.model.Document;
+import com.learningassistant.document.model.OutboxEvent;
+import com.learningassistant.document.model.OutboxEventType;
+import com.learningassistant.document.model.OutboxStatus;
+import com.learningassistant.document.repository.DocumentRepository;
+import com.learningassistant.document.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+/**
+ * Leases on claimed outbox events. A dispatcher that stalls mid-delivery keeps its claim
+ * until the lease runs out; after that another drain, as on another replica, takes the
+ * event over, and the stalled dispatcher's late result is dropped at write-back.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:outbox-dispatcher;MODE=PostgreSQL",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "storage.type=local",
+    "storage.local.upload-dir=target/outbox-dispatcher",
+    "outbox.poll-interval-ms=100000000",
+    "outbox.lease-ms=1000",
+    "document-reaper.sweep-interval-ms=100000000",
+    "ingest.transport=memory",
+    "ingest.memory.consume=false"
+})
+class OutboxDispatcherTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final long LEASE_MS = 1000;
+    
+    @Autowired
+    private DocumentService documentService;
+    
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+    
+    @Autowired
+    private DocumentRepository documentRepository;
+    
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @MockBean
+    private RagIngestClient ragIngestClient;
+    
+    // The first RAG delete stalls until released; later ones succeed at once
+    private final AtomicInteger ragDeletes = new AtomicInteger();
+    private final CountDownLatch firstDeleteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstDelete = new CountDownLatch(1);
+    
+    @BeforeEach
+    void setUp() {
+        reset(ragIngestClient);
+        outboxEventRepository.deleteAllInBatch();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        releaseFirstDelete.countDown();
+    }
+    
+    @Test
+    void stalledClaimIsTakenOverOnlyAfterItsLease() throws Exception {
+        Document document = deleted("leased.pdf", true);
+        
+        CompletableFuture<Void> stalled = CompletableFuture.runAsync(outboxDispatcher::drain);
+        assertTrue(firstDeleteStarted.await(10, TimeUnit.SECONDS));
+        
+        // Still leased: another drain finds nothing due
+        outboxDispatcher.drain();
+        assertEquals(1, ragDeletes.get());
+        assertEquals(1, purge(document).getAttempts());
+        
+        Thread.sleep(LEASE_MS + 500);
+        outboxDispatcher.drain();
+        
+        assertEquals(2, ragDeletes.get());
+        OutboxEvent takenOver = purge(document);
+        assertEquals(OutboxStatus.DISPATCHED, takenOver.getStatus());
+        assertEquals(2, takenOver.getAttempts());
+        assertFalse(documentRepository.existsById(document.getId()));
+        
+        releaseFirstDelete.countDown();
+        stalled.get(10, TimeUnit.SECONDS);
+        assertEquals(OutboxStatus.DISPATCHED, purge(document).getStatus());
+    }
+    
+    @Test
+    void lateResultOfAnExpiredClaimIsDiscarded() throws Exception {
+        Document document = deleted("late.pdf", false);
+        
+        CompletableFuture<Void> stalled = CompletableFuture.runAsync(outboxDispatcher::drain);
+        assertTrue(firstDeleteStarted.await(10, TimeUnit.SECONDS));
+        Thread.sleep(LEASE_MS + 500);
+        outboxDispatcher.drain();
+        OutboxEvent dispatched = purge(document);
+        assertEquals(OutboxStatus.DISPATCHED, dispatched.getStatus());
+        
+        // The stalled delivery now fails; its write-back loses the version check
+        releaseFirstDelete.countDown();
+        stalled.get(10, TimeUnit.SECONDS);
+        
+        OutboxEvent after = purge(document);
+        assertEquals(OutboxStatus.DISPATCHED, after.getStatus());
+        assertEquals(2, after.getAttempts());
+        assertNull(after.getLastError());
+        assertEquals(dispatched.getVersion(), after.getVersion());
+        assertEquals(dispatched.getDispatchedAt(), after.getDispatchedAt());
+    }
+    
+    /**
+     * A tombstoned document with a RAG entry and its queued purge
+     */
+    private Document deleted(String fileName, boolean stalledDeleteSucceeds) {
+        DocumentResponse uploaded = documentService.uploadDocument(
+            new MockMultipartFile("file", fileName, "application/pdf", fileName.getBytes(StandardCharsets.UTF_8)),
+            USER_ID);
+        outboxDispatcher.drain();
+        
+        Document document = documentRepository.findById(uploaded.getDocumentId()).orElseThrow();
+        String ragId = "rag-" + document.getId();
+        document.setRagDocumentId(ragId);
+        documentRepository.save(document);
+        
+        when(ragIngestClient.deleteDocument(ragId, USER_ID)).thenAnswer(invocation -> {
+            if (ragDeletes.incrementAndGet() > 1) {
+                return true;
+            }
+            firstDeleteStarted.countDown();
+            releaseFirstDelete.await(10, TimeUnit.SECONDS);
+            return stalledDeleteSucceeds;
+        });
+        documentService.deleteDocument(document.getId());
+        return document;
+    }
+    
+    private OutboxEvent purge(Document document) {
+        return outboxEventRepository.findAll().stream()
+            .filter(event -> event.getEventType() == OutboxEventType.DOCUMENT_PURGE)
+            .filter(event -> event.getAggregateId().equals(document.getId()))
+            .findFirst()
+            .orElseThrow();
+    }
+}
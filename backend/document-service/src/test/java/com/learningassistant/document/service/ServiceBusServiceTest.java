@@ -0,0 +1,92 @@
+package com.learningassistant.document.service;
+
+import com.azure.messaging.servicebus.ServiceBusMessage;
+import com.azure.messaging.servicebus.ServiceBusMessageBatch;
+import com.azure.messaging.servicebus.ServiceBusSenderClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learningassistant.document.messaging.IngestMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent sends collected within the linger time go out as one batch per session id,
+ * and each send returns once its batch has been accepted.
+ */
+class ServiceBusServiceTest {
+
+    private final List<List<ServiceBusMessage>> sentBatches = Collections.synchronizedList(new ArrayList<>());
+    private ServiceBusService service;
+    private ExecutorService senders;
+
+    @BeforeEach
+    void setUp() {
+        // Each batch records what was added to it; a send hands that list over
+        Map<ServiceBusMessageBatch, List<ServiceBusMessage>> contents = Collections.synchronizedMap(new IdentityHashMap<>());
+        ServiceBusSenderClient client = mock(ServiceBusSenderClient.class);
+        when(client.createMessageBatch()).thenAnswer(invocation -> {
+            List<ServiceBusMessage> added = new ArrayList<>();
+            ServiceBusMessageBatch batch = mock(ServiceBusMessageBatch.class, add -> {
+                if (add.getMethod().getName().equals("tryAddMessage")) {
+                    return added.add(add.getArgument(0));
+                }
+                return null;
+            });
+            contents.put(batch, added);
+            return batch;
+        });
+        doAnswer(send -> sentBatches.add(contents.get(send.<ServiceBusMessageBatch>getArgument(0))))
+                .when(client).sendMessages(any(ServiceBusMessageBatch.class));
+
+        service = new ServiceBusService(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxMessages", 100);
+        ReflectionTestUtils.setField(service, "lingerMs", 500L);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        ReflectionTestUtils.setField(service, "sendTimeoutMs", 10_000L);
+        service.start(client);
+        senders = Executors.newFixedThreadPool(6);
+    }
+
+    @AfterEach
+    void tearDown() {
+        senders.shutdownNow();
+        service.cleanup();
+    }
+
+    @Test
+    void concurrentSendsShareOneBatchPerSession() {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[6];
+        for (int i = 0; i < sends.length; i++) {
+            IngestMessage message = new IngestMessage("doc-" + i, i % 2 == 0 ? "user-a" : "user-b",
+                "https://blob/doc-" + i, "doc-" + i + ".pdf", "corr-" + i);
+            sends[i] = CompletableFuture.runAsync(() -> service.send(message), senders);
+        }
+        CompletableFuture.allOf(sends).join();
+
+        assertEquals(2, sentBatches.size());
+        for (List<ServiceBusMessage> batch : sentBatches) {
+            Set<String> sessions = batch.stream().map(ServiceBusMessage::getSessionId).collect(Collectors.toSet());
+            assertEquals(1, sessions.size());
+            assertEquals(3, batch.size());
+        }
+    }
+}
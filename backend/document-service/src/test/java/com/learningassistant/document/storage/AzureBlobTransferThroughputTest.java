@@ -0,0 +1,152 @@
+package com.learningassistant.document.storage;
+
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures upload and download throughput of the single-shot and tuned (parallel block and
+ * range) transfer modes against Azurite or any Blob-compatible endpoint. Skipped unless
+ * AZURITE_CONNECTION_STRING is set, e.g. to "UseDevelopmentStorage=true".
+ */
+class AzureBlobTransferThroughputTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AzureBlobTransferThroughputTest.class);
+    
+    private static final int PAYLOAD_BYTES = 48 * 1024 * 1024;
+    private static final long RANGE_BYTES = 4L * 1024 * 1024;
+    
+    @TempDir
+    Path tempDir;
+    
+    private String connectionString;
+    private String containerName;
+    
+    @BeforeEach
+    void setUp() {
+        connectionString = System.getenv("AZURITE_CONNECTION_STRING");
+        assumeTrue(connectionString != null && !connectionString.isBlank(),
+            "AZURITE_CONNECTION_STRING not set");
+        containerName = "throughput-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (connectionString != null && containerName != null) {
+            BlobContainerClient container = new BlobServiceClientBuilder()
+                    .connectionString(connectionString)
+                    .buildClient()
+                    .getBlobContainerClient(containerName);
+            if (container.exists()) {
+                container.delete();
+            }
+        }
+    }
+    
+    @Test
+    void tunedTransfersRoundTripAndReportThroughput() throws Exception {
+        byte[] payload = new byte[PAYLOAD_BYTES];
+        new Random(42).nextBytes(payload);
+        MockMultipartFile file = new MockMultipartFile("file", "payload.bin", "application/octet-stream", payload);
+        
+        // Single PUT and single GET, as before the tuning
+        AzureBlobStorageService singleShot = service(Long.MAX_VALUE / 2, 1, Integer.MAX_VALUE - 16);
+        Result baseline = measure(singleShot, file, payload, "single-shot.bin");
+        
+        AzureBlobStorageService tuned = service(8L * 1024 * 1024, 8, RANGE_BYTES);
+        Result parallel = measure(tuned, file, payload, "tuned.bin");
+        
+        // The payload spans many ranges, so the tuned downloads fetch it in parallel
+        assertTrue(PAYLOAD_BYTES > 8 * RANGE_BYTES);
+        Path copy = tempDir.resolve("tuned.bin");
+        tuned.copyToLocalFile("tuned.bin", copy);
+        assertArrayEquals(payload, Files.readAllBytes(copy));
+        
+        logger.info("single-shot: upload {} MB/s, download {} MB/s",
+            String.format("%.1f", baseline.uploadMbps), String.format("%.1f", baseline.downloadMbps));
+        logger.info("tuned: upload {} MB/s, download {} MB/s",
+            String.format("%.1f", parallel.uploadMbps), String.format("%.1f", parallel.downloadMbps));
+        
+        tuned.shutdown();
+        singleShot.shutdown();
+    }
+    
+    @Test
+    void emptyAndMissingBlobs() throws Exception {
+        AzureBlobStorageService tuned = service(8L * 1024 * 1024, 8, RANGE_BYTES);
+        MockMultipartFile empty = new MockMultipartFile("file", "empty.txt", "text/plain", new byte[0]);
+        
+        BlobClient blob = new BlobServiceClientBuilder().connectionString(connectionString).buildClient()
+                .getBlobContainerClient(containerName).getBlobClient("empty.txt");
+        blob.upload(empty.getInputStream(), 0, true);
+        assertEquals("", tuned.readFileAsText("empty.txt"));
+        
+        try {
+            tuned.readFileAsText("missing.txt");
+            throw new AssertionError("Expected a missing blob to fail");
+        } catch (IOException expected) {
+            assertEquals("Blob not found: missing.txt", expected.getMessage());
+        }
+        tuned.shutdown();
+    }
+    
+    private AzureBlobStorageService service(long maxSingleUpload, int concurrency, long rangeBytes) {
+        AzureBlobStorageService service = new AzureBlobStorageService();
+        ReflectionTestUtils.setField(service, "connectionString", connectionString);
+        ReflectionTestUtils.setField(service, "containerName", containerName);
+        ReflectionTestUtils.setField(service, "blockSizeBytes", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "maxSingleUploadBytes", maxSingleUpload);
+        ReflectionTestUtils.setField(service, "downloadRangeBytes", rangeBytes);
+        ReflectionTestUtils.setField(service, "maxConcurrency", concurrency);
+        ReflectionTestUtils.setField(service, "sasValidity", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "sasRefreshAfter", Duration.ofDays(1));
+        ReflectionTestUtils.setField(service, "sasCacheSize", 100L);
+        service.init();
+        return service;
+    }
+    
+    private Result measure(AzureBlobStorageService service, MockMultipartFile file, byte[] payload, String blobName)
+            throws Exception {
+        long start = System.nanoTime();
+        service.storeFile(file, "throughput", blobName);
+        long uploadNanos = System.nanoTime() - start;
+        
+        BlobClient blob = new BlobServiceClientBuilder().connectionString(connectionString).buildClient()
+                .getBlobContainerClient(containerName).getBlobClient(blobName);
+        assertEquals("throughput", blob.getProperties().getMetadata().get("userId"));
+        
+        start = System.nanoTime();
+        byte[] downloaded = service.downloadBytes(blob);
+        long downloadNanos = System.nanoTime() - start;
+        assertArrayEquals(payload, downloaded);
+        
+        return new Result(mbps(payload.length, uploadNanos), mbps(payload.length, downloadNanos));
+    }
+    
+    private static double mbps(long bytes, long nanos) {
+        return (bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+    }
+    
+    private record Result(double uploadMbps, double downloadMbps) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.learningassistant.document.storage;
+
+import com.learningassistant.document.model.StoredBlob;
+import com.learningassistant.document.repository.StoredBlobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reference counting of deduplicated blobs: a blob's file must outlive every reference
+ * to it, including references taken while its last previous one is being released.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:content-addressed;MODE=PostgreSQL",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "storage.type=local",
+    "storage.local.upload-dir=target/content-addressed",
+    "storage.content-addressed=true",
+    "storage.released-blob-retention=PT0S",
+    "storage.blob-sweep-interval-ms=100000000",
+    "outbox.poll-interval-ms=100000000"
+})
+class ContentAddressedStorageTest {
+    
+    private static final String USER_ID = "user-1";
+    private static final Path UPLOAD_DIR = Paths.get("target/content-addressed");
+    
+    @Autowired
+    private ContentAddressedStorage storage;
+    
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+    
+    @BeforeEach
+    void setUp() {
+        storedBlobRepository.deleteAllInBatch();
+    }
+    
+    @Test
+    void duplicateUploadsShareOneBlobUntilSwept() throws Exception {
+        MockMultipartFile file = file("notes.pdf", "identical lecture notes");
+        
+        StoredContent first = storage.store(file, USER_ID);
+        StoredContent second = storage.store(file, USER_ID);
+        
+        assertFalse(first.deduplicated());
+        assertTrue(second.deduplicated());
+        assertEquals(first.filePath(), second.filePath());
+        assertEquals(2, blob(first).getReferenceCount());
+        
+        storage.release(first.contentHash(), first.filePath());
+        storage.sweepReleased();
+        assertEquals(1, blob(first).getReferenceCount());
+        assertTrue(Files.exists(UPLOAD_DIR.resolve(first.filePath())));
+        
+        storage.release(second.contentHash(), second.filePath());
+        assertEquals(0, blob(first).getReferenceCount());
+        assertNotNull(blob(first).getReleasedAt());
+        
+        storage.sweepReleased();
+        assertTrue(storedBlobRepository.findById(first.contentHash()).isEmpty());
+        assertFalse(Files.exists(UPLOAD_DIR.resolve(first.filePath())));
+    }
+    
+    @Test
+    void reuploadRevivesReleasedBlobBeforeSweep() throws Exception {
+        MockMultipartFile file = file("slides.pdf", "slides uploaded, deleted and uploaded again");
+        
+        StoredContent first = storage.store(file, USER_ID);
+        storage.release(first.contentHash(), first.filePath());
+        StoredContent again = storage.store(file, USER_ID);
+        storage.sweepReleased();
+        
+        assertTrue(again.deduplicated());
+        assertEquals(1, blob(again).getReferenceCount());
+        assertNull(blob(again).getReleasedAt());
+        assertTrue(Files.exists(UPLOAD_DIR.resolve(again.filePath())));
+    }
+    
+    @Test
+    void referenceTakenDuringReleaseKeepsFile() throws Exception {
+        MockMultipartFile file = file("shared.txt", "content " + UUID.randomUUID());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> churn = new ArrayList<>();
+            for (int worker = 0; worker < 3; worker++) {
+                churn.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        StoredContent content = storage.store(file, USER_ID);
+                        storage.release(content.contentHash(), content.filePath());
+                    }
+                    return null;
+                }));
+            }
+            
+            List<StoredContent> held = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                held.add(storage.store(file, USER_ID));
+            }
+            for (Future<?> future : churn) {
+                future.get();
+            }
+            storage.sweepReleased();
+            
+            StoredContent last = held.get(held.size() - 1);
+            assertEquals(held.size(), blob(last).getReferenceCount());
+            for (StoredContent content : held) {
+                assertTrue(Files.exists(UPLOAD_DIR.resolve(content.filePath())), "file of a live reference was deleted");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private StoredBlob blob(StoredContent content) {
+        return storedBlobRepository.findById(content.contentHash()).orElseThrow();
+    }
+    
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "application/octet-stream", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+package com.learningassistant.document.storage;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares local write throughput under each durability policy with concurrent uploaders.
+ * Files go under target/ rather than the system temp dir, which is often tmpfs and would
+ * make fsync free.
+ */
+class LocalStorageDurabilityBenchmarkTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageDurabilityBenchmarkTest.class);
+    
+    private static final int THREADS = 8;
+    private static final int FILES_PER_THREAD = 40;
+    private static final int FILE_BYTES = 64 * 1024;
+    
+    @Test
+    void compareDurabilityPolicies() throws Exception {
+        byte[] content = new byte[FILE_BYTES];
+        new Random(7).nextBytes(content);
+        MockMultipartFile file = new MockMultipartFile("file", "upload.pdf", "application/pdf", content);
+        
+        for (String policy : new String[] { "none", "fsync", "group-commit" }) {
+            Path root = Paths.get("target", "durability-benchmark", policy);
+            FileSystemUtils.deleteRecursively(root);
+            LocalStorageService storage = new LocalStorageService(root.toString(), policy, 5, 64);
+            storage.init();
+            
+            ExecutorService uploaders = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String userId = "user-" + t;
+                results.add(uploaders.submit(() -> {
+                    List<String> paths = new ArrayList<>();
+                    for (int i = 0; i < FILES_PER_THREAD; i++) {
+                        paths.add(storage.storeFile(file, userId));
+                    }
+                    return paths;
+                }));
+            }
+            List<String> paths = new ArrayList<>();
+            for (Future<List<String>> result : results) {
+                paths.addAll(result.get());
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            uploaders.shutdown();
+            storage.close();
+            
+            for (String path : paths) {
+                assertEquals(4, path.split("/").length, "Expected a sharded path: " + path);
+                assertEquals(FILE_BYTES, Files.size(root.resolve(path)));
+            }
+            try (var leftovers = Files.walk(root)) {
+                assertTrue(leftovers.noneMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+            }
+            
+            int files = THREADS * FILES_PER_THREAD;
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            logger.info("{}: {} files/s, {} MB/s", policy, String.format("%.0f", files / seconds),
+                String.format("%.1f", files * (double) FILE_BYTES / (1024 * 1024) / seconds));
+            FileSystemUtils.deleteRecursively(root);
+        }
+    }
+}
@@ -6,8 +6,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Map;
-
 /**
  * Client to communicate with the document-service
  */
@@ -26,22 +24,20 @@ public class DocumentServiceClient {
     }
     
     /**
-     * Fetch the full text content of a document by its ID
+     * Fetch the full text content of a document by its ID.
+     * Uses the plain-text stream endpoint so the text is not wrapped in a JSON document.
      */
     public String getDocumentText(String documentId) {
         try {
-            String url = documentServiceUrl + "/api/documents/" + documentId + "/text";
+            String url = documentServiceUrl + "/api/documents/" + documentId + "/text/stream";
             logger.info("Fetching document text from: {}", url);
             
-            // Call document-service endpoint
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+            String text = restTemplate.getForObject(url, String.class);
             
-            if (response == null || !response.containsKey("text")) {
+            if (text == null) {
                 throw new RuntimeException("Invalid response from document-service");
             }
             
-            String text = (String) response.get("text");
             logger.info("Retrieved {} characters from document: {}", text.length(), documentId);
             
             return text;
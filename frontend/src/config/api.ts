@@ -40,6 +40,7 @@ export const API_ENDPOINTS = {
     userDocuments: (userId: string) => `${DOCUMENT_SERVICE_URL}/api/documents/user/${userId}`,
     download: (id: string) => `${DOCUMENT_SERVICE_URL}/api/documents/${id}/download`,
     delete: (id: string) => `${DOCUMENT_SERVICE_URL}/api/documents/${id}`,
+    events: (userId: string) => `${DOCUMENT_SERVICE_URL}/api/documents/events/${userId}`,
   },
   
   // Chat Service
@@ -1,6 +1,6 @@
-import { useState, useCallback } from 'react';
+import { useState, useCallback, useEffect, useRef } from 'react';
 import { apiClient } from '@/services/api';
-import type { Document } from '@/services/api';
+import type { Document, DocumentStatus } from '@/services/api';
 
 export interface UseDocumentsReturn {
   documents: Document[];
@@ -13,12 +13,71 @@ export interface UseDocumentsReturn {
   deleteDocument: (documentId: string) => Promise<void>;
 }
 
+const STATUS_POLL_INTERVAL_MS = 2000;
+const MAX_STATUS_POLLS = 20; // 40 seconds
+const EVENT_STREAM_RETRY_MS = 30000;
+
+const isProcessing = (document: Document) =>
+  document.processingStatus === 'PENDING' || document.processingStatus === 'PROCESSING';
+
+const applyStatus = (document: Document, status?: DocumentStatus): Document =>
+  status ? { ...document, processingStatus: status.processingStatus, processedAt: status.processedAt } : document;
+
 export const useDocuments = (userId: string): UseDocumentsReturn => {
   const [documents, setDocuments] = useState<Document[]>([]);
   const [isUploading, setIsUploading] = useState(false);
   const [uploadProgress, setUploadProgress] = useState(0);
   const [isLoading, setIsLoading] = useState(false);
   const [error, setError] = useState<string | null>(null);
+  const [isStreaming, setIsStreaming] = useState(false);
+  // Latest streamed status per document, for uploads whose response arrives after their first event
+  const streamedStatuses = useRef(new Map<string, DocumentStatus>());
+
+  const pendingIds = documents.filter(isProcessing).map(d => d.documentId).join(',');
+
+  // Poll the status of every processing document in one batch request until none is left.
+  // Only used while the event stream below is not connected.
+  useEffect(() => {
+    if (!pendingIds || isStreaming) return;
+
+    const ids = pendingIds.split(',');
+    let polls = 0;
+    let cancelled = false;
+    let timer: ReturnType<typeof setTimeout>;
+
+    const poll = async () => {
+      if (polls++ >= MAX_STATUS_POLLS) {
+        console.warn('Document processing timeout');
+        return;
+      }
+
+      try {
+        const { statuses, notFound } = await apiClient.checkDocumentStatuses(ids);
+        if (cancelled) return;
+
+        if (statuses.some(status => status.processingStatus === 'FAILED')) {
+          setError('Document processing failed');
+        }
+        const byId = new Map(statuses.map(status => [status.documentId, status]));
+        const deleted = new Set(notFound);
+        setDocuments(prev => prev
+          .filter(d => !deleted.has(d.documentId))
+          .map(d => applyStatus(d, byId.get(d.documentId))));
+      } catch (err) {
+        console.error('Failed to check document statuses:', err);
+      }
+
+      if (!cancelled) {
+        timer = setTimeout(poll, STATUS_POLL_INTERVAL_MS);
+      }
+    };
+
+    timer = setTimeout(poll, STATUS_POLL_INTERVAL_MS);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [pendingIds, isStreaming]);
 
   const loadDocuments = useCallback(async () => {
     if (!userId) return;
@@ -35,6 +94,55 @@ export const useDocuments = (userId: string): UseDocumentsReturn => {
     }
   }, [userId]);
 
+  // Follow status changes over Server-Sent Events. The browser reconnects by itself and resumes
+  // from the last event it saw; if the stream is refused, fall back to polling and try again later.
+  useEffect(() => {
+    if (!userId || typeof EventSource === 'undefined') return;
+
+    let source: EventSource | null = null;
+    let lastEventId: string | undefined;
+    let retryTimer: ReturnType<typeof setTimeout>;
+    let closed = false;
+
+    const open = () => {
+      source = apiClient.openDocumentEvents(userId, lastEventId);
+      source.onopen = () => setIsStreaming(true);
+
+      source.addEventListener('document-status', event => {
+        const message = event as MessageEvent<string>;
+        lastEventId = message.lastEventId || lastEventId;
+        const status: DocumentStatus = JSON.parse(message.data);
+        streamedStatuses.current.set(status.documentId, status);
+        if (status.processingStatus === 'FAILED') {
+          setError('Document processing failed');
+        }
+        setDocuments(prev => status.processingStatus === 'DELETED'
+          ? prev.filter(d => d.documentId !== status.documentId)
+          : prev.map(d => d.documentId === status.documentId ? applyStatus(d, status) : d));
+      });
+
+      // The server could not replay everything since our last event
+      source.addEventListener('resync', () => {
+        loadDocuments();
+      });
+
+      source.onerror = () => {
+        setIsStreaming(false);
+        if (source?.readyState === EventSource.CLOSED && !closed) {
+          retryTimer = setTimeout(open, EVENT_STREAM_RETRY_MS);
+        }
+      };
+    };
+
+    open();
+    return () => {
+      closed = true;
+      clearTimeout(retryTimer);
+      source?.close();
+      setIsStreaming(false);
+    };
+  }, [userId, loadDocuments]);
+
   const uploadDocument = useCallback(async (file: File) => {
     if (!userId) return null;
 
@@ -53,45 +161,8 @@ export const useDocuments = (userId: string): UseDocumentsReturn => {
       clearInterval(progressInterval);
       setUploadProgress(100);
 
-      setDocuments(prev => [document, ...prev]);
-
-      // Poll for document processing status
-      const pollStatus = async (docId: string, attempts = 0): Promise<Document | null> => {
-        if (attempts > 20) { // Max 20 attempts (40 seconds)
-          console.warn('Document processing timeout');
-          return document;
-        }
-
-        try {
-          const status = await apiClient.checkDocumentStatus(docId);
-
-          if (status.processingStatus === 'COMPLETED') {
-            // Update document in list
-            setDocuments(prev =>
-              prev.map(d => d.documentId === docId ? status : d)
-            );
-            return status;
-          } else if (status.processingStatus === 'FAILED') {
-            setError('Document processing failed');
-            return null;
-          }
-
-          // Still processing, poll again
-          await new Promise(resolve => setTimeout(resolve, 2000));
-          return pollStatus(docId, attempts + 1);
-        } catch (err) {
-          console.error('Failed to check document status:', err);
-          return document;
-        }
-      };
-
-      // Poll for document processing status in background
-      // This polling happens separately from session creation
-      pollStatus(document.documentId).then(completedDoc => {
-        if (completedDoc) {
-          console.log('Document processing completed:', completedDoc);
-        }
-      });
+      // Later status changes arrive on the event stream, or are polled when it is not connected
+      setDocuments(prev => [applyStatus(document, streamedStatuses.current.get(document.documentId)), ...prev]);
 
       setTimeout(() => {
         setUploadProgress(0);
@@ -18,12 +18,23 @@ export interface Document {
   fileName: string;
   fileType: string;
   fileSize: number;
-  processingStatus: 'PENDING' | 'PROCESSING' | 'COMPLETED' | 'FAILED';
+  processingStatus: 'PENDING' | 'PROCESSING' | 'COMPLETED' | 'FAILED' | 'DELETED';
   uploadedAt: string;
   processedAt?: string;
   extractedText?: string; // Full text content of the document
 }
 
+export interface DocumentStatus {
+  documentId: string;
+  processingStatus: Document['processingStatus'];
+  processedAt?: string;
+}
+
+export interface DocumentStatusBatch {
+  statuses: DocumentStatus[];
+  notFound: string[];
+}
+
 export interface ChatSession {
   id: string;
   userId: string;
@@ -31,7 +42,10 @@ export interface ChatSession {
   title: string;
   createdAt: string;
   updatedAt: string;
+  // Only filled in when a single session is fetched; listings carry the summary fields
   messages: Message[];
+  messageCount?: number;
+  lastMessage?: Message;
   // Handle potential snake_case from backend
   document_ids?: string[];
 }
@@ -191,6 +205,24 @@ class APIClient {
     return this.request<Document>(`${API_ENDPOINTS.documents.base}/api/documents/${documentId}/status`);
   }
 
+  getDocumentDownloadUrl(documentId: string): string {
+    return `${API_ENDPOINTS.documents.base}/api/documents/${documentId}/download`;
+  }
+
+  async checkDocumentStatuses(documentIds: string[]): Promise<DocumentStatusBatch> {
+    return this.request<DocumentStatusBatch>(`${API_ENDPOINTS.documents.base}/api/documents/status/batch`, {
+      method: 'POST',
+      body: JSON.stringify({ ids: documentIds }),
+    });
+  }
+
+  // Streams status changes of the user's documents. The browser resends Last-Event-ID when it
+  // reconnects by itself; a new stream can only resume through the query parameter.
+  openDocumentEvents(userId: string, lastEventId?: string): EventSource {
+    const url = API_ENDPOINTS.documents.events(userId);
+    return new EventSource(lastEventId ? `${url}?lastEventId=${encodeURIComponent(lastEventId)}` : url);
+  }
+
   // Chat APIs
   async createChatSession(userId: string, documentIds: string[], title?: string): Promise<ChatSession> {
     return this.request<ChatSession>(API_ENDPOINTS.chat.createSession, {